@@ -0,0 +1,103 @@
+package fw.bench;
+
+import fw.xls.ExcelWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Generates the configuration and data files the benchmarks read, in a temporary
+ * project directory, so runs need neither network nor checked-in fixtures. The data is
+ * the same on every run: ROWS accounts with id, name, status and amount.
+ * <p>
+ * ConfigHolder looks for its files below user.dir, so {@link #init()} points user.dir
+ * at the temporary directory; call it before anything touches ConfigHolder.
+ */
+public final class Fixtures {
+    public static final int ROWS = 10_000;
+    private static final String[] STATUS = {"ACTIVE", "CLOSED", "PENDING", "ACTIVE"};
+
+    private static Path root;
+
+    private Fixtures() {
+    }
+
+    public static synchronized Path init() {
+        if (root != null)
+            return root;
+        try {
+            Path dir = Files.createTempDirectory("fw-bench");
+            Path config = Files.createDirectories(dir.resolve("src/test/resources/config"));
+            write(config.resolve("config.properties"),
+                    "test.env=bench\n"
+                    + "selenium.browser.name=Chrome\n"
+                    + "selenium.pool.enabled=false\n");
+            write(config.resolve("bench.properties"),
+                    "base.url=http://localhost\n"
+                    + "webdriver.lin.chrome.driver=/usr/local/bin/chromedriver\n"
+                    + "webdriver.win.chrome.driver=C:\\\\drivers\\\\chromedriver.exe\n");
+
+            writeCsv(dir.resolve("accounts.csv"));
+            writeJson(dir.resolve("accounts.json"));
+            writeXml(dir.resolve("accounts.xml"));
+            writeExcel(dir.resolve("accounts.xlsx"));
+
+            System.setProperty("user.dir", dir.toString());
+            root = dir;
+            return root;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create benchmark fixtures.", e);
+        }
+    }
+
+    public static String path(String file) {
+        return init().resolve(file).toString();
+    }
+
+    private static void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id,name,status,amount\n");
+            for (int i = 0; i < ROWS; i++)
+                out.write(i + ",Account " + i + "," + STATUS[i % STATUS.length] + "," + (i * 7 % 1000) + "\n");
+        }
+    }
+
+    private static void writeJson(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\"meta\": {\"version\": 1}, \"accounts\": [");
+            for (int i = 0; i < ROWS; i++) {
+                if (i > 0)
+                    out.write(",");
+                out.write("{\"id\": " + i + ", \"name\": \"Account " + i + "\", \"status\": \""
+                        + STATUS[i % STATUS.length] + "\", \"amount\": " + (i * 7 % 1000) + "}");
+            }
+            out.write("]}");
+        }
+    }
+
+    private static void writeXml(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<accounts>\n");
+            for (int i = 0; i < ROWS; i++)
+                out.write("  <account id=\"" + i + "\"><name>Account " + i + "</name><status>"
+                        + STATUS[i % STATUS.length] + "</status><amount>" + (i * 7 % 1000) + "</amount></account>\n");
+            out.write("</accounts>\n");
+        }
+    }
+
+    private static void writeExcel(Path file) {
+        try (ExcelWriter writer = new ExcelWriter(file.toString(), "accounts",
+                Arrays.asList("id", "name", "status", "amount"))) {
+            for (int i = 0; i < ROWS; i++)
+                writer.append(i, "Account " + i, STATUS[i % STATUS.length], i * 7 % 1000);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
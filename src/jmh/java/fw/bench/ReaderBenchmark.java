@@ -0,0 +1,82 @@
+package fw.bench;
+
+import fw.files.FileParser;
+import fw.json.JSONParser;
+import fw.xls.ExcelReader;
+import fw.xml.XMLParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Full passes over the same {@link Fixtures#ROWS} accounts in every supported format,
+ * counting the ACTIVE ones. Run with -prof gc to see allocation per pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+    private String excel;
+    private String json;
+    private String xml;
+    private String csv;
+
+    @Setup
+    public void setUp() {
+        excel = Fixtures.path("accounts.xlsx");
+        json = Fixtures.path("accounts.json");
+        xml = Fixtures.path("accounts.xml");
+        csv = Fixtures.path("accounts.csv");
+    }
+
+    @Benchmark
+    public long excel() {
+        try (ExcelReader reader = new ExcelReader(excel)) {
+            return reader.getSheet("accounts").rows()
+                    .filter(row -> "ACTIVE".equals(row.getString("status")))
+                    .count();
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public long json() {
+        try (Stream<Object> accounts = new JSONParser(json).elements("$.accounts")) {
+            return accounts.filter(account -> "ACTIVE".equals(((Map<String, Object>) account).get("status")))
+                    .count();
+        }
+    }
+
+    @Benchmark
+    public long xml() {
+        try (Stream<Map<String, String>> accounts = new XMLParser(xml).recordStream("/accounts/account")) {
+            return accounts.filter(account -> "ACTIVE".equals(account.get("status"))).count();
+        }
+    }
+
+    @Benchmark
+    public long csv() {
+        return FileParser.csv(csv).rows().filter(row -> row.fieldEquals("status", "ACTIVE")).count();
+    }
+
+    @Benchmark
+    public long csvParallel() {
+        return FileParser.csv(csv).withChunkSize(64 * 1024).parallelRows()
+                .filter(row -> row.fieldEquals("status", "ACTIVE")).count();
+    }
+}
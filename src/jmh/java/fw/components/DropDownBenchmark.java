@@ -0,0 +1,73 @@
+package fw.components;
+
+import fw.bench.Fixtures;
+import fw.core.FakeDriver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting the last option of a long list against the in-process FakeDriver: the
+ * bulk DropDown path with a cold and a warm option cache, and Selenium's Select for
+ * comparison. There is no browser, so the numbers show framework overhead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DropDownBenchmark {
+	@Param({"25", "250"})
+	public int options;
+
+	private WebElement select;
+	private DropDown warm;
+	private String last;
+
+	@Setup
+	public void setUp() {
+		Fixtures.init();
+		StringBuilder html = new StringBuilder("<select id='s'>");
+		for (int i = 0; i < options; i++)
+			html.append("<option value='value").append(i).append("'>Option ").append(i).append("</option>");
+		FakeDriver driver = new FakeDriver();
+		driver.loadHtml(html.append("</select>").toString());
+		select = driver.findElement(By.id("s"));
+		warm = new DropDown(select);
+		last = "VALUE" + (options - 1);
+	}
+
+	@Benchmark
+	public DropDown selectByValueCold() {
+		DropDown dropDown = new DropDown(select);
+		dropDown.selectByValue(last, false);
+		return dropDown;
+	}
+
+	@Benchmark
+	public DropDown selectByValueWarm() {
+		warm.selectByValue(last, false);
+		return warm;
+	}
+
+	@Benchmark
+	public DropDown seleniumSelectByValue() {
+		DropDown dropDown = new DropDown(select);
+		dropDown.selectByValue(last.toLowerCase());
+		return dropDown;
+	}
+}
@@ -0,0 +1,47 @@
+package fw.core;
+
+import fw.bench.Fixtures;
+import fw.enums.BrowserType;
+import fw.enums.OperatingSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Browser and driver binary resolution, which runs for every new session
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverFactoryBenchmark {
+    private DriverFactory factory;
+
+    @Setup
+    public void setUp() {
+        Fixtures.init();
+        factory = new DriverFactory();
+    }
+
+    @Benchmark
+    public BrowserType getBrowser() {
+        return factory.getBrowser();
+    }
+
+    @Benchmark
+    public String getPath() {
+        return factory.getPath(OperatingSystem.Linux, BrowserType.chrome);
+    }
+}
@@ -0,0 +1,56 @@
+package fw.utilities;
+
+import fw.bench.Fixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Property lookups as done on every driver start and wait: a key from the environment
+ * file, a key in different case, and a missing key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigHolderBenchmark {
+    private ConfigHolder config;
+
+    @Setup
+    public void setUp() {
+        Fixtures.init();
+        config = ConfigHolder.getInstance();
+    }
+
+    @Benchmark
+    public String getProperty() {
+        return config.getProperty("base.url");
+    }
+
+    @Benchmark
+    public String getPropertyOtherCase() {
+        return config.getProperty("Selenium.Browser.Name");
+    }
+
+    @Benchmark
+    public String getPropertyMissing() {
+        return config.getProperty("selenium.not.configured");
+    }
+
+    @Benchmark
+    public String getPropertyWithoutSystem() {
+        return config.getProperty("base.url", false);
+    }
+}
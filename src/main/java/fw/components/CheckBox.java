@@ -1,5 +1,136 @@
 package fw.components;
 
-public class CheckBox {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.openqa.selenium.WebElement;
+
+/**
+ * A single checkbox or a group of checkboxes, e.g. a permissions grid. The group is
+ * given as a container element (every checkbox inside it) or as a list of inputs.
+ * Reading the group and setting any number of boxes are one script call each; only
+ * boxes whose state must change are clicked.
+ * <p>
+ * Boxes are keyed by value. Where the same value occurs under different names, the
+ * state maps use "name=value" keys for those boxes; such qualified keys are accepted
+ * everywhere, and a plain key then applies to every box with that value.
+ *
+ * <pre>
+ * CheckBox permissions = new CheckBox(driver.findElement(By.id("permissions")));
+ * permissions.setState(Collections.singletonMap("users.delete", false));
+ * permissions.setState(Collections.singletonMap("orders=delete", true));
+ * </pre>
+ */
+public class CheckBox extends InputGroup {
+
+	/**
+	 * @param element a checkbox input, or a container of checkboxes
+	 */
+	public CheckBox(WebElement element) {
+		super(element, "checkbox");
+	}
+
+	public CheckBox(List<WebElement> checkboxes) {
+		super(checkboxes, "checkbox");
+	}
+
+	/**
+	 * Checked state of every box, by key, in document order
+	 *
+	 * @return
+	 */
+	public Map<String, Boolean> getState() {
+		return toMap(read());
+	}
+
+	/**
+	 * Sets the given boxes to the given state and leaves the rest alone
+	 *
+	 * @param state checked state by key or by name=key
+	 * @return the state of every box afterwards
+	 */
+	public Map<String, Boolean> setState(Map<String, Boolean> state) {
+		return toMap(apply(state, false));
+	}
+
+	/**
+	 * Checks every enabled box
+	 *
+	 * @return
+	 */
+	public Map<String, Boolean> checkAll() {
+		return setAll(true);
+	}
+
+	public Map<String, Boolean> uncheckAll() {
+		return setAll(false);
+	}
+
+	/**
+	 * Keys of the checked boxes
+	 *
+	 * @return
+	 */
+	public List<String> selectedValues() {
+		List<String> values = new ArrayList<>();
+		for (Map.Entry<String, Boolean> entry : getState().entrySet()) {
+			if (entry.getValue())
+				values.add(entry.getKey());
+		}
+		return values;
+	}
+
+	/**
+	 * Checks the given boxes and unchecks all others
+	 *
+	 * @param keys
+	 * @return
+	 */
+	public Map<String, Boolean> selectOnly(List<String> keys) {
+		Map<String, Boolean> state = new LinkedHashMap<>();
+		state.put(ALL, false);
+		for (String key : keys)
+			state.put(key, true);
+		return setState(state);
+	}
+
+	public boolean isChecked() {
+		return !selectedValues().isEmpty();
+	}
+
+	public void check() {
+		checkAll();
+	}
+
+	public void uncheck() {
+		uncheckAll();
+	}
+
+	private Map<String, Boolean> setAll(boolean checked) {
+		return setState(Collections.singletonMap(ALL, checked));
+	}
+
+	/**
+	 * Keys boxes by value, qualified with the name where the value occurs under
+	 * several names
+	 */
+	private static Map<String, Boolean> toMap(List<State> states) {
+		Map<String, String> names = new HashMap<>();
+		Set<String> ambiguous = new HashSet<>();
+		for (State box : states) {
+			String name = names.putIfAbsent(box.key, box.name);
+			if (name != null && !name.equals(box.name))
+				ambiguous.add(box.key);
+		}
+		Map<String, Boolean> map = new LinkedHashMap<>();
+		for (State box : states)
+			map.put(ambiguous.contains(box.key) && !box.name.isEmpty() ? box.name + "=" + box.key : box.key, box.checked);
+		return Collections.unmodifiableMap(map);
+	}
 }
@@ -1,40 +1,318 @@
 package fw.components;
 
-import org.openqa.selenium.By;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.Select;
 
+/**
+ * Select element whose options are read with a single script call and cached, so
+ * matching by text or value (case-insensitive, trimmed, regex, several at once) costs
+ * no WebDriver round-trip per option. Selecting is one more script call. Call
+ * {@link #refreshOptions()} after the option list changed.
+ */
 public class DropDown extends Select {
+	static final String OPTIONS_SCRIPT =
+			"var options = arguments[0].options, result = [];"
+			+ "for (var i = 0; i < options.length; i++) {"
+			+ "  var o = options[i], t = o.text;"
+			+ "  if (t == null || t === '') t = o.textContent;"
+			+ "  result.push({value: o.value, text: t == null ? '' : t.replace(/\\s+/g, ' ').replace(/^\\s+|\\s+$/g, ''),"
+			+ "    selected: o.selected, disabled: o.disabled}); }"
+			+ "return result;";
+
+	/**
+	 * Selects the options at the given indexes (and deselects the rest if asked to),
+	 * then fires input and change once. Changes nothing and returns 'disabled' or
+	 * 'hidden' if the select cannot be used, like a click would be refused, and false
+	 * if the option values no longer match the cached ones.
+	 */
+	static final String SELECT_SCRIPT =
+			"var select = arguments[0], indexes = arguments[1], values = arguments[2], exclusive = arguments[3];"
+			+ "if (select.disabled || (select.matches && select.matches(':disabled'))) return 'disabled';"
+			+ "var style = window.getComputedStyle(select);"
+			+ "if (style.visibility === 'hidden' || style.display === 'none' || !select.getClientRects().length) return 'hidden';"
+			+ "for (var i = 0; i < indexes.length; i++) {"
+			+ "  var o = select.options[indexes[i]];"
+			+ "  if (!o || o.value !== values[i]) return false; }"
+			+ "var changed = false;"
+			+ "if (exclusive) for (var i = 0; i < select.options.length; i++) {"
+			+ "  if (select.options[i].selected && indexes.indexOf(i) < 0) { select.options[i].selected = false; changed = true; } }"
+			+ "for (var i = 0; i < indexes.length; i++) {"
+			+ "  if (!select.options[indexes[i]].selected) { select.options[indexes[i]].selected = true; changed = true; } }"
+			+ "if (changed) {"
+			+ "  select.dispatchEvent(new Event('input', {bubbles: true}));"
+			+ "  select.dispatchEvent(new Event('change', {bubbles: true})); }"
+			+ "return true;";
+
 	private WebElement dropdown;
-	
+	private List<Option> options;
+
 	public DropDown(WebElement dropdown) {
 		super(dropdown);
 		this.dropdown = dropdown;
 	}
-	
+
+	/**
+	 * Reads the options again on next use
+	 *
+	 * @return
+	 */
+	public DropDown refreshOptions() {
+		options = null;
+		return this;
+	}
+
+	/**
+	 * All options as cached by the last read, in document order
+	 *
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Option> getOptionList() {
+		if (options == null) {
+			List<Option> list = new ArrayList<>();
+			for (Object item : (List<Object>) Scripts.execute(dropdown, OPTIONS_SCRIPT)) {
+				Map<String, Object> option = (Map<String, Object>) item;
+				list.add(new Option(list.size(), toString(option.get("value")), toString(option.get("text")),
+						Boolean.TRUE.equals(option.get("selected")), Boolean.TRUE.equals(option.get("disabled"))));
+			}
+			options = Collections.unmodifiableList(list);
+		}
+		return options;
+	}
+
+	public List<String> getOptionTexts() {
+		List<String> texts = new ArrayList<>();
+		for (Option option : getOptionList())
+			texts.add(option.getText());
+		return texts;
+	}
+
+	public List<String> getOptionValues() {
+		List<String> values = new ArrayList<>();
+		for (Option option : getOptionList())
+			values.add(option.getValue());
+		return values;
+	}
+
+	/**
+	 * Texts of the selected options, read fresh in one script call
+	 *
+	 * @return
+	 */
+	public List<String> getSelectedTexts() {
+		refreshOptions();
+		List<String> texts = new ArrayList<>();
+		for (Option option : getOptionList()) {
+			if (option.isSelected())
+				texts.add(option.getText());
+		}
+		return texts;
+	}
+
+	/**
+	 * Selects the option whose value attribute equals the given value; surrounding
+	 * whitespace is ignored
+	 *
+	 * @param value
+	 * @param caseSensitive
+	 */
 	public void selectByValue(String value, boolean caseSensitive) {
-		if(caseSensitive) {
-			super.selectByValue(value);
-			return;
-		}
-		
-		boolean isFound = false;
-		for(WebElement option : dropdown.findElements(By.xpath(".//option"))) {
-			String actValue = option.getText();
-			if(actValue == null || actValue.trim().isEmpty())
-				actValue = option.getAttribute("textContent");
-			
-			if(actValue == null || actValue.trim().isEmpty())
-				continue;
-			
-			if(actValue.equalsIgnoreCase(value)) {
-				super.selectByValue(actValue);
-				isFound = true;
+		String expected = normalize(value);
+		select(option -> matches(option.normalizedValue, expected, caseSensitive), false, "value '" + value + "'");
+	}
+
+	/**
+	 * Selects the option whose visible text equals the given text; whitespace is
+	 * normalized before comparing
+	 *
+	 * @param text
+	 * @param caseSensitive
+	 */
+	public void selectByVisibleText(String text, boolean caseSensitive) {
+		String expected = normalize(text);
+		select(option -> matches(option.normalizedText, expected, caseSensitive), false, "text '" + text + "'");
+	}
+
+	/**
+	 * Selects the options whose visible text matches the regular expression: all of them
+	 * on a multi-select, the first one otherwise
+	 *
+	 * @param regex
+	 */
+	public void selectMatching(String regex) {
+		Pattern pattern = Pattern.compile(regex);
+		select(option -> pattern.matcher(option.getText()).matches(), isMultiple(), "text matching '" + regex + "'");
+	}
+
+	/**
+	 * Selects exactly the options with the given visible texts on a multi-select and
+	 * deselects all others
+	 *
+	 * @param texts
+	 * @param caseSensitive
+	 */
+	public void selectByVisibleTexts(Collection<String> texts, boolean caseSensitive) {
+		if (!isMultiple())
+			throw new UnsupportedOperationException("You may only select several options of a multi-select.");
+		List<Option> matched = new ArrayList<>();
+		for (String text : texts) {
+			String expected = normalize(text);
+			Option option = find(candidate -> matches(candidate.normalizedText, expected, caseSensitive));
+			if (option == null)
+				throw new NoSuchElementException("Cannot locate option with text '" + text + "'.");
+			matched.add(option);
+		}
+		apply(matched, true);
+	}
+
+	private void select(Predicate<Option> condition, boolean all, String description) {
+		List<Option> matched = new ArrayList<>();
+		for (Option option : getOptionList()) {
+			if (condition.test(option)) {
+				matched.add(option);
+				if (!all)
+					break;
+			}
+		}
+		if (matched.isEmpty())
+			throw new NoSuchElementException("Cannot locate option with " + description + ".");
+		apply(matched, !isMultiple());
+	}
+
+	private Option find(Predicate<Option> condition) {
+		for (Option option : getOptionList()) {
+			if (condition.test(option))
+				return option;
+		}
+		return null;
+	}
+
+	private void apply(List<Option> matched, boolean exclusive) {
+		List<Integer> indexes = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+		for (Option option : matched) {
+			if (option.isDisabled())
+				throw new UnsupportedOperationException("Option '" + option.getText() + "' is disabled.");
+			indexes.add(option.getIndex());
+			values.add(option.getValue());
+		}
+		Object result = Scripts.execute(dropdown, SELECT_SCRIPT, indexes, values, exclusive);
+		if ("disabled".equals(result))
+			throw new UnsupportedOperationException("You may not select an option in a disabled select.");
+		if ("hidden".equals(result))
+			throw new UnsupportedOperationException("You may not select an option in a select that is not displayed.");
+		if (!Boolean.TRUE.equals(result))
+			throw new RuntimeException("Options of the drop down changed since they were read; call refreshOptions() and select again.");
+		// keep the cached selection in line without another read
+		List<Option> updated = new ArrayList<>();
+		for (Option option : options) {
+			boolean selected = indexes.contains(option.getIndex()) || (!exclusive && option.isSelected());
+			updated.add(new Option(option.getIndex(), option.getValue(), option.getText(), selected, option.isDisabled()));
+		}
+		options = Collections.unmodifiableList(updated);
+	}
+
+	/**
+	 * Both values must already be normalized
+	 */
+	private static boolean matches(String actual, String expected, boolean caseSensitive) {
+		if (actual == null || expected == null)
+			return false;
+		return caseSensitive ? actual.equals(expected) : actual.equalsIgnoreCase(expected);
+	}
+
+	/**
+	 * Trims and collapses runs of whitespace into one space; returns the value itself
+	 * if there is nothing to change, which is the common case
+	 */
+	static String normalize(String value) {
+		if (value == null)
+			return null;
+		int length = value.length();
+		boolean clean = length == 0 || (!Character.isWhitespace(value.charAt(0))
+				&& !Character.isWhitespace(value.charAt(length - 1)));
+		for (int i = 0; clean && i < length; i++) {
+			char c = value.charAt(i);
+			if (Character.isWhitespace(c) && (c != ' ' || Character.isWhitespace(value.charAt(i + 1))))
+				clean = false;
+		}
+		if (clean)
+			return value;
+
+		StringBuilder result = new StringBuilder(length);
+		boolean space = false;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = result.length() > 0;
+			} else {
+				if (space)
+					result.append(' ');
+				space = false;
+				result.append(c);
 			}
-			
-			if(isFound)
-				return;
 		}
-		
+		return result.toString();
+	}
+
+	private static String toString(Object value) {
+		return value == null ? "" : value.toString();
+	}
+
+	/**
+	 * One option as read by the bulk script
+	 */
+	public static class Option {
+		private final int index;
+		private final String value;
+		private final String text;
+		private final boolean selected;
+		private final boolean disabled;
+		private final String normalizedValue;
+		private final String normalizedText;
+
+		Option(int index, String value, String text, boolean selected, boolean disabled) {
+			this.index = index;
+			this.value = value;
+			this.text = text;
+			this.selected = selected;
+			this.disabled = disabled;
+			this.normalizedValue = normalize(value);
+			this.normalizedText = normalize(text);
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public boolean isSelected() {
+			return selected;
+		}
+
+		public boolean isDisabled() {
+			return disabled;
+		}
+
+		@Override
+		public String toString() {
+			return text + " [" + value + "]";
+		}
 	}
 }
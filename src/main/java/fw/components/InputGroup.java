@@ -0,0 +1,145 @@
+package fw.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebElement;
+
+/**
+ * Checkbox or radio inputs handled as one group: the state of every input is read,
+ * and the inputs that must change are clicked, within a single script call.
+ * <p>
+ * An input is identified by its value attribute, or by its id, label text or
+ * position when it has no value. The key may be qualified with the input name, as in
+ * "name=value", to tell apart inputs with the same value in different groups.
+ */
+abstract class InputGroup {
+	static final String ALL = "*";
+
+	/**
+	 * arguments: root element, list of inputs (empty to search the root), input type,
+	 * desired checked state by key ("*" for every enabled, displayed input not listed),
+	 * whether keys are always qualified as name=key; otherwise a qualified key takes
+	 * precedence over the plain one. Inputs are only clicked when every key is known and
+	 * every input that must change is enabled and displayed, like a click would be refused.
+	 */
+	static final String GROUP_SCRIPT =
+			"var root = arguments[0], list = arguments[1], type = arguments[2], desired = arguments[3] || {}, qualified = arguments[4];"
+			+ "var inputs = [];"
+			+ "if (list && list.length) inputs = Array.prototype.slice.call(list);"
+			+ "else if (root.tagName === 'INPUT') inputs = [root];"
+			+ "else inputs = Array.prototype.slice.call(root.querySelectorAll('input[type=' + type + ']'));"
+			+ "function keyOf(input, i) {"
+			+ "  var v = input.getAttribute('value');"
+			+ "  if (v != null && v !== '') return v;"
+			+ "  if (input.id) return input.id;"
+			+ "  var l = input.labels && input.labels.length ? input.labels[0].textContent : null;"
+			+ "  if (l != null && l.replace(/\\s+/g, '') !== '') return l.replace(/\\s+/g, ' ').replace(/^\\s+|\\s+$/g, '');"
+			+ "  return String(i); }"
+			+ "function refusal(input) {"
+			+ "  if (input.disabled) return 'disabled';"
+			+ "  for (var p = input.parentNode; p && p.tagName; p = p.parentNode) if (p.tagName === 'FIELDSET' && p.disabled) return 'disabled';"
+			+ "  var style = window.getComputedStyle(input);"
+			+ "  if (style.visibility === 'hidden' || style.display === 'none' || !input.getClientRects().length) return 'hidden';"
+			+ "  return null; }"
+			+ "var state = [], seen = {}, toClick = [], blocked = [], hidden = [];"
+			+ "for (var i = 0; i < inputs.length; i++) {"
+			+ "  var input = inputs[i], key = keyOf(input, i), name = input.name || '';"
+			+ "  var lookup = qualified || desired.hasOwnProperty(name + '=' + key) ? name + '=' + key : key;"
+			+ "  state.push({key: key, name: name, checked: input.checked, disabled: input.disabled});"
+			+ "  var explicit = desired.hasOwnProperty(lookup);"
+			+ "  var want = explicit ? desired[lookup] : desired.hasOwnProperty('*') ? desired['*'] : null;"
+			+ "  if (want === null) continue;"
+			+ "  var refused = explicit && input.checked === want ? null : refusal(input);"
+			+ "  if (!explicit && refused) continue;"
+			+ "  seen[explicit ? lookup : '*'] = true;"
+			+ "  if (input.checked === want) continue;"
+			+ "  if (refused === 'disabled') blocked.push(lookup); else if (refused) hidden.push(lookup); else toClick.push(i); }"
+			+ "var missing = [];"
+			+ "for (var k in desired) if (desired.hasOwnProperty(k) && k !== '*' && !seen[k]) missing.push(k);"
+			+ "if (missing.length || blocked.length || hidden.length)"
+			+ "  return {inputs: state, missing: missing, blocked: blocked, hidden: hidden, clicked: 0};"
+			+ "for (var c = 0; c < toClick.length; c++) {"
+			+ "  inputs[toClick[c]].click(); }"
+			// clicking a radio button also clears the others of its group
+			+ "for (var c = 0; c < inputs.length; c++) state[c].checked = inputs[c].checked;"
+			+ "return {inputs: state, missing: [], blocked: [], hidden: [], clicked: toClick.length};";
+
+	private final WebElement root;
+	private final List<WebElement> inputs;
+	private final String type;
+
+	InputGroup(WebElement root, String type) {
+		this.root = root;
+		this.inputs = null;
+		this.type = type;
+	}
+
+	InputGroup(List<WebElement> inputs, String type) {
+		if (inputs.isEmpty())
+			throw new IllegalArgumentException("The group needs at least one input.");
+		this.root = inputs.get(0);
+		this.inputs = new ArrayList<>(inputs);
+		this.type = type;
+	}
+
+	/**
+	 * Current state of every input in the group
+	 *
+	 * @return
+	 */
+	List<State> read() {
+		return apply(Collections.<String, Boolean>emptyMap(), false);
+	}
+
+	/**
+	 * Clicks the inputs whose checked state differs from the desired one and returns the
+	 * state afterwards. Nothing is clicked if a key is unknown or an input that must
+	 * change is disabled or not displayed.
+	 *
+	 * @param desired
+	 * @param qualified whether every key is given as name=key
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	List<State> apply(Map<String, Boolean> desired, boolean qualified) {
+		// an empty list rather than null, which not every driver passes to scripts
+		Map<String, Object> result = (Map<String, Object>) Scripts.execute(root, GROUP_SCRIPT,
+				inputs == null ? Collections.emptyList() : inputs, type, new HashMap<>(desired), qualified);
+
+		List<Object> missing = (List<Object>) result.get("missing");
+		if (missing != null && !missing.isEmpty())
+			throw new RuntimeException("No " + type + " found for " + missing + ".");
+		List<Object> blocked = (List<Object>) result.get("blocked");
+		if (blocked != null && !blocked.isEmpty())
+			throw new UnsupportedOperationException("You may not change a disabled " + type + " " + blocked + ".");
+		List<Object> hidden = (List<Object>) result.get("hidden");
+		if (hidden != null && !hidden.isEmpty())
+			throw new UnsupportedOperationException("You may not change a " + type + " that is not displayed " + hidden + ".");
+
+		List<State> states = new ArrayList<>();
+		for (Object item : (List<Object>) result.get("inputs")) {
+			Map<String, Object> input = (Map<String, Object>) item;
+			states.add(new State(String.valueOf(input.get("key")), String.valueOf(input.get("name")),
+					Boolean.TRUE.equals(input.get("checked")), Boolean.TRUE.equals(input.get("disabled"))));
+		}
+		return states;
+	}
+
+	static final class State {
+		final String key;
+		final String name;
+		final boolean checked;
+		final boolean disabled;
+
+		State(String key, String name, boolean checked, boolean disabled) {
+			this.key = key;
+			this.name = name;
+			this.checked = checked;
+			this.disabled = disabled;
+		}
+	}
+}
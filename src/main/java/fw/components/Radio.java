@@ -1,5 +1,96 @@
 package fw.components;
 
-public class Radio {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.openqa.selenium.WebElement;
+
+/**
+ * Radio buttons of a container, possibly spanning several radio groups (inputs with
+ * different names). Reading every group and selecting any number of buttons are one
+ * script call each; buttons that are already selected are not clicked.
+ */
+public class Radio extends InputGroup {
+
+	/**
+	 * @param element a radio input, or a container of radio inputs
+	 */
+	public Radio(WebElement element) {
+		super(element, "radio");
+	}
+
+	public Radio(List<WebElement> radios) {
+		super(radios, "radio");
+	}
+
+	/**
+	 * Keys of all buttons in document order
+	 *
+	 * @return
+	 */
+	public List<String> getValues() {
+		List<String> values = new ArrayList<>();
+		for (State radio : read())
+			values.add(radio.key);
+		return values;
+	}
+
+	/**
+	 * Selects the button with the given key
+	 *
+	 * @param value
+	 */
+	public void select(String value) {
+		apply(Collections.singletonMap(value, true), false);
+	}
+
+	/**
+	 * Key of the selected button, or null if none is selected. Use
+	 * {@link #selectedValues()} when the container holds several groups.
+	 *
+	 * @return
+	 */
+	public String selectedValue() {
+		for (State radio : read()) {
+			if (radio.checked)
+				return radio.key;
+		}
+		return null;
+	}
+
+	/**
+	 * Selected key of every radio group by group name; groups without a selection map to null
+	 *
+	 * @return
+	 */
+	public Map<String, String> selectedValues() {
+		return toSelected(read());
+	}
+
+	/**
+	 * Selects one button in each of the given groups
+	 *
+	 * @param state key to select by group name
+	 * @return the selected keys afterwards
+	 */
+	public Map<String, String> setState(Map<String, String> state) {
+		Map<String, Boolean> desired = new LinkedHashMap<>();
+		for (Map.Entry<String, String> entry : state.entrySet())
+			desired.put(entry.getKey() + "=" + entry.getValue(), true);
+		return toSelected(apply(desired, true));
+	}
+
+	private static Map<String, String> toSelected(List<State> radios) {
+		Map<String, String> selected = new LinkedHashMap<>();
+		for (State radio : radios) {
+			if (radio.checked)
+				selected.put(radio.name, radio.key);
+			else
+				selected.putIfAbsent(radio.name, null);
+		}
+		return Collections.unmodifiableMap(selected);
+	}
 }
@@ -0,0 +1,40 @@
+package fw.components;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+
+/**
+ * Runs component scripts in the browser that owns an element. Components use it to
+ * replace many per-element WebDriver calls with a single round-trip.
+ */
+final class Scripts {
+
+	private Scripts() {
+	}
+
+	static WebDriver driverOf(WebElement element) {
+		if (element instanceof WrapsDriver)
+			return ((WrapsDriver) element).getWrappedDriver();
+		throw new RuntimeException("Unable to find the driver of element '" + element + "'.");
+	}
+
+	/**
+	 * Runs the script with the element as arguments[0], followed by the given arguments
+	 *
+	 * @param element
+	 * @param script
+	 * @param args
+	 * @return
+	 */
+	static Object execute(WebElement element, String script, Object... args) {
+		WebDriver driver = driverOf(element);
+		if (!(driver instanceof JavascriptExecutor))
+			throw new RuntimeException("Driver '" + driver + "' does not support JavaScript execution.");
+		Object[] all = new Object[args.length + 1];
+		all[0] = element;
+		System.arraycopy(args, 0, all, 1, args.length);
+		return ((JavascriptExecutor) driver).executeScript(script, all);
+	}
+}
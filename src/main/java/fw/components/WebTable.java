@@ -1,18 +1,502 @@
 package fw.components;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
+import fw.core.Waiter;
+
+/**
+ * HTML table read in bulk: headers, cell text and optionally cell attributes are
+ * fetched with a single script call and cached, so lookups do not cost a WebDriver
+ * round-trip per cell. Call {@link #refresh()} after the table content changed, or
+ * {@link #sync()} to fetch only the rows a MutationObserver saw changing.
+ * Row and column indexes are 0-based and exclude the header row.
+ */
 public class WebTable {
+	static final String READ_SCRIPT =
+			"var table = arguments[0], names = arguments[1] || [];"
+			+ "function text(c) { var t = c.innerText; if (t == null || t === '') t = c.textContent;"
+			+ "  return t == null ? '' : t.replace(/\\s+/g, ' ').replace(/^\\s+|\\s+$/g, ''); }"
+			+ "var headerRow = table.tHead && table.tHead.rows.length ? table.tHead.rows[table.tHead.rows.length - 1] : null;"
+			+ "var body = [];"
+			+ "for (var i = 0; i < table.rows.length; i++) {"
+			+ "  var r = table.rows[i];"
+			+ "  if (r.parentNode !== table.tHead && r.parentNode !== table.tFoot) body.push(r); }"
+			+ "if (!headerRow && body.length && body[0].getElementsByTagName('td').length == 0"
+			+ "    && body[0].getElementsByTagName('th').length > 0) headerRow = body.shift();"
+			+ "var headers = [];"
+			+ "if (headerRow) for (var h = 0; h < headerRow.cells.length; h++) headers.push(text(headerRow.cells[h]));"
+			+ "var rows = [], attributes = [];"
+			+ "for (var i = 0; i < body.length; i++) {"
+			+ "  var cells = body[i].cells, row = [], attrRow = [];"
+			+ "  for (var c = 0; c < cells.length; c++) {"
+			+ "    row.push(text(cells[c]));"
+			+ "    if (names.length) { var a = {};"
+			+ "      for (var n = 0; n < names.length; n++) a[names[n]] = cells[c].getAttribute(names[n]);"
+			+ "      attrRow.push(a); } }"
+			+ "  rows.push(row); attributes.push(attrRow); }"
+			+ "return {headers: headers, rows: rows, attributes: names.length ? attributes : null};";
+
+	/**
+	 * Installs a MutationObserver on the table on first use and afterwards returns only
+	 * the rows it saw changing. Added or removed rows and header changes fall back to a
+	 * full read. The state is kept per token, so every WebTable on the same element
+	 * sees all changes since its own previous sync.
+	 */
+	static final String SYNC_SCRIPT =
+			"var table = arguments[0], names = arguments[1] || [], token = arguments[2];"
+			+ "var read = function() {" + READ_SCRIPT + "};"
+			+ "if (typeof MutationObserver === 'undefined') return {full: read(table, names), observed: false};"
+			+ "var states = table.__fwTableStates || (table.__fwTableStates = {});"
+			+ "var state = states[token];"
+			+ "if (!state) {"
+			+ "  state = states[token] = {dirty: [], structural: false};"
+			+ "  state.observer = new MutationObserver(function(mutations) {"
+			+ "    for (var i = 0; i < mutations.length; i++) {"
+			+ "      var node = mutations[i].target;"
+			+ "      if (mutations[i].type === 'childList' && (node === table || /^(TBODY|THEAD|TFOOT)$/.test(node.tagName))) {"
+			+ "        state.structural = true; continue; }"
+			+ "      while (node && node !== table && !(node.tagName === 'TR'"
+			+ "          && (node.parentNode === table || node.parentNode.parentNode === table))) node = node.parentNode;"
+			+ "      if (!node || node === table || node.parentNode.tagName === 'THEAD') { state.structural = true; continue; }"
+			+ "      if (state.dirty.indexOf(node) < 0) state.dirty.push(node);"
+			+ "    } });"
+			+ "  state.observer.observe(table, {subtree: true, childList: true, characterData: true, attributes: true});"
+			+ "  return {full: read(table, names), observed: true}; }"
+			+ "if (state.structural) { state.structural = false; state.dirty = []; return {full: read(table, names), observed: true}; }"
+			+ "if (!state.dirty.length) return {observed: true};"
+			+ "var dirty = state.dirty; state.dirty = [];"
+			+ "function text(c) { var t = c.innerText; if (t == null || t === '') t = c.textContent;"
+			+ "  return t == null ? '' : t.replace(/\\s+/g, ' ').replace(/^\\s+|\\s+$/g, ''); }"
+			+ "var body = [];"
+			+ "for (var i = 0; i < table.rows.length; i++) {"
+			+ "  var r = table.rows[i];"
+			+ "  if (r.parentNode !== table.tHead && r.parentNode !== table.tFoot) body.push(r); }"
+			+ "if (!(table.tHead && table.tHead.rows.length) && body.length && body[0].getElementsByTagName('td').length == 0"
+			+ "    && body[0].getElementsByTagName('th').length > 0) body.shift();"
+			+ "var changed = [];"
+			+ "for (var d = 0; d < dirty.length; d++) {"
+			+ "  var index = body.indexOf(dirty[d]);"
+			+ "  if (index < 0) return {full: read(table, names), observed: true};"
+			+ "  var cells = dirty[d].cells, row = [], attrRow = [];"
+			+ "  for (var c = 0; c < cells.length; c++) {"
+			+ "    row.push(text(cells[c]));"
+			+ "    if (names.length) { var a = {};"
+			+ "      for (var n = 0; n < names.length; n++) a[names[n]] = cells[c].getAttribute(names[n]);"
+			+ "      attrRow.push(a); } }"
+			+ "  changed.push({index: index, cells: row, attributes: names.length ? attrRow : null}); }"
+			+ "return {changed: changed, observed: true};";
+
 	private WebElement table;
-	
+	private final String syncToken = UUID.randomUUID().toString();
+	private final List<String> attributeNames = new ArrayList<>();
+	private List<String> headers;
+	private Map<String, Integer> columns;
+	private List<List<String>> rows;
+	private List<List<Map<String, String>>> attributes;
+	private final Map<Integer, Map<String, List<Integer>>> indexes = new HashMap<>();
+
 	public WebTable(WebElement table) {
 		this.table = table;
 	}
-	
+
+	/**
+	 * Also reads the given attributes of every cell, e.g. "class" or "data-id"
+	 *
+	 * @param names
+	 * @return
+	 */
+	public WebTable withAttributes(String... names) {
+		for (String name : names)
+			attributeNames.add(name);
+		this.rows = null;
+		return this;
+	}
+
+	/**
+	 * Reads the whole table again in one script call
+	 *
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public WebTable refresh() {
+		apply((Map<String, Object>) Scripts.execute(table, READ_SCRIPT, attributeNames));
+		return this;
+	}
+
+	/**
+	 * Brings the cached rows up to date at the cost of one small script call. The first
+	 * call installs a MutationObserver on the table; later calls transfer only rows whose
+	 * cells changed since the previous sync, and nothing if the table is unchanged.
+	 * Added or removed rows cause a full read. Browsers without MutationObserver always
+	 * get a full read.
+	 *
+	 * @return true if anything changed since the previous read
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean sync() {
+		Map<String, Object> result;
+		try {
+			result = (Map<String, Object>) Scripts.execute(table, SYNC_SCRIPT, attributeNames, syncToken);
+		} catch (StaleElementReferenceException e) {
+			throw new RuntimeException("Table element is no longer attached to the page; locate it again and use a new WebTable.", e);
+		}
+		if (result.get("full") != null) {
+			apply((Map<String, Object>) result.get("full"));
+			return true;
+		}
+		List<Object> changed = (List<Object>) result.get("changed");
+		if (changed == null || changed.isEmpty())
+			return false;
+		if (rows == null) {
+			refresh();
+			return true;
+		}
+
+		for (Object change : changed) {
+			Map<String, Object> row = (Map<String, Object>) change;
+			int index = ((Number) row.get("index")).intValue();
+			List<String> cells = toCells(row.get("cells"));
+			unindex(index);
+			rows.set(index, cells);
+			if (attributes != null && row.get("attributes") != null)
+				attributes.set(index, toAttributes(row.get("attributes")));
+			reindex(index);
+		}
+		return true;
+	}
+
+	/**
+	 * Builds hash indexes over the given columns so that {@link #findRow(String, String)}
+	 * and {@link #findRowsByValue(String, String)} answer without scanning. Columns are
+	 * also indexed on their first lookup; indexes follow {@link #sync()} updates.
+	 *
+	 * @param headers
+	 * @return
+	 */
+	public WebTable index(String... headers) {
+		ensureRead();
+		for (String header : headers)
+			getIndex(requireColumn(header));
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void apply(Map<String, Object> result) {
+		List<String> headerList = new ArrayList<>();
+		Map<String, Integer> index = new HashMap<>();
+		for (Object header : (List<Object>) result.get("headers")) {
+			String name = header == null ? "" : header.toString();
+			if (!name.isEmpty())
+				index.putIfAbsent(name.toLowerCase(Locale.ROOT), headerList.size());
+			headerList.add(name);
+		}
+
+		List<List<String>> rowList = new ArrayList<>();
+		for (Object row : (List<Object>) result.get("rows"))
+			rowList.add(toCells(row));
+
+		List<List<Map<String, String>>> attributeList = null;
+		if (result.get("attributes") != null) {
+			attributeList = new ArrayList<>();
+			for (Object row : (List<Object>) result.get("attributes"))
+				attributeList.add(toAttributes(row));
+		}
+
+		this.headers = Collections.unmodifiableList(headerList);
+		this.columns = index;
+		this.rows = rowList;
+		this.attributes = attributeList;
+		this.indexes.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> toCells(Object row) {
+		List<String> cells = new ArrayList<>();
+		for (Object cell : (List<Object>) row)
+			cells.add(cell == null ? "" : cell.toString());
+		return Collections.unmodifiableList(cells);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, String>> toAttributes(Object row) {
+		List<Map<String, String>> cells = new ArrayList<>();
+		for (Object cell : (List<Object>) row) {
+			Map<String, String> values = new HashMap<>();
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) cell).entrySet())
+				values.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().toString());
+			cells.add(values);
+		}
+		return cells;
+	}
+
+	private Map<String, List<Integer>> getIndex(int column) {
+		Map<String, List<Integer>> index = indexes.get(column);
+		if (index == null) {
+			index = new HashMap<>();
+			for (int i = 0; i < rows.size(); i++) {
+				String value = cell(i, column);
+				if (value != null)
+					index.computeIfAbsent(value, key -> new ArrayList<>()).add(i);
+			}
+			indexes.put(column, index);
+		}
+		return index;
+	}
+
+	private void unindex(int row) {
+		for (Map.Entry<Integer, Map<String, List<Integer>>> entry : indexes.entrySet()) {
+			String value = cell(row, entry.getKey());
+			List<Integer> matches = value == null ? null : entry.getValue().get(value);
+			if (matches != null) {
+				matches.remove(Integer.valueOf(row));
+				if (matches.isEmpty())
+					entry.getValue().remove(value);
+			}
+		}
+	}
+
+	private void reindex(int row) {
+		for (Map.Entry<Integer, Map<String, List<Integer>>> entry : indexes.entrySet()) {
+			String value = cell(row, entry.getKey());
+			if (value == null)
+				continue;
+			List<Integer> matches = entry.getValue().computeIfAbsent(value, key -> new ArrayList<>());
+			int position = Collections.binarySearch(matches, row);
+			if (position < 0)
+				matches.add(-position - 1, row);
+		}
+	}
+
+	private String cell(int row, int column) {
+		List<String> cells = rows.get(row);
+		return column < cells.size() ? cells.get(column) : null;
+	}
+
+	public List<String> getHeaders() {
+		ensureRead();
+		return headers;
+	}
+
 	public int getRowCount() {
-		int rows = 0;
-		
-		
-		return rows;
+		ensureRead();
+		return rows.size();
+	}
+
+	public int getColumnCount() {
+		ensureRead();
+		int count = headers.size();
+		for (List<String> row : rows)
+			count = Math.max(count, row.size());
+		return count;
+	}
+
+	/**
+	 * Index of the column with the given header, compared case-insensitive, or -1
+	 *
+	 * @param header
+	 * @return
+	 */
+	public int getColumnIndex(String header) {
+		ensureRead();
+		Integer index = header == null ? null : columns.get(header.trim().toLowerCase(Locale.ROOT));
+		return index == null ? -1 : index;
+	}
+
+	public String getCellText(int row, int column) {
+		ensureRead();
+		List<String> cells = rows.get(row);
+		return column >= 0 && column < cells.size() ? cells.get(column) : null;
+	}
+
+	public String getCellText(int row, String header) {
+		return getCellText(row, requireColumn(header));
+	}
+
+	/**
+	 * Attribute of a cell; only available for attributes requested with {@link #withAttributes(String...)}
+	 *
+	 * @param row
+	 * @param header
+	 * @param attribute
+	 * @return
+	 */
+	public String getCellAttribute(int row, String header, String attribute) {
+		ensureRead();
+		if (attributes == null || !attributeNames.contains(attribute))
+			throw new RuntimeException("Attribute '" + attribute + "' was not read. Request it with withAttributes().");
+		List<Map<String, String>> cells = attributes.get(row);
+		int column = requireColumn(header);
+		return column < cells.size() ? cells.get(column).get(attribute) : null;
+	}
+
+	/**
+	 * Cells of a row keyed by header
+	 *
+	 * @param row
+	 * @return
+	 */
+	public Map<String, String> getRow(int row) {
+		ensureRead();
+		Map<String, String> values = new LinkedHashMap<>();
+		List<String> cells = rows.get(row);
+		for (int i = 0; i < headers.size(); i++)
+			values.put(headers.get(i), i < cells.size() ? cells.get(i) : null);
+		return values;
+	}
+
+	public List<Map<String, String>> getRows() {
+		ensureRead();
+		List<Map<String, String>> values = new ArrayList<>();
+		for (int i = 0; i < rows.size(); i++)
+			values.add(getRow(i));
+		return values;
+	}
+
+	public List<String> getColumn(String header) {
+		ensureRead();
+		int column = requireColumn(header);
+		List<String> values = new ArrayList<>();
+		for (List<String> row : rows)
+			values.add(column < row.size() ? row.get(column) : null);
+		return values;
+	}
+
+	/**
+	 * Index of the first row whose cell under the header equals the value, or -1
+	 *
+	 * @param header
+	 * @param value
+	 * @return
+	 */
+	public int findRow(String header, String value) {
+		List<Integer> matches = findRowsByValue(header, value);
+		return matches.isEmpty() ? -1 : matches.get(0);
+	}
+
+	/**
+	 * Indexes of all rows whose cell under the header equals the value, answered from
+	 * the column's hash index
+	 *
+	 * @param header
+	 * @param value
+	 * @return
+	 */
+	public List<Integer> findRowsByValue(String header, String value) {
+		ensureRead();
+		List<Integer> matches = getIndex(requireColumn(header)).get(value);
+		return matches == null ? Collections.<Integer>emptyList() : Collections.unmodifiableList(matches);
+	}
+
+	/**
+	 * Indexes of all rows whose cell under the header matches the condition
+	 *
+	 * @param header
+	 * @param condition
+	 * @return
+	 */
+	public List<Integer> findRows(String header, Predicate<String> condition) {
+		ensureRead();
+		int column = requireColumn(header);
+		List<Integer> matches = new ArrayList<>();
+		for (int i = 0; i < rows.size(); i++) {
+			List<String> cells = rows.get(i);
+			if (condition.test(column < cells.size() ? cells.get(column) : null))
+				matches.add(i);
+		}
+		return matches;
+	}
+
+	/**
+	 * Rows of the given 0-based page of the rows read so far
+	 *
+	 * @param page
+	 * @param pageSize
+	 * @return
+	 */
+	public List<Map<String, String>> getPage(int page, int pageSize) {
+		ensureRead();
+		List<Map<String, String>> values = new ArrayList<>();
+		for (int i = page * pageSize; i < Math.min(rows.size(), (page + 1) * pageSize); i++)
+			values.add(getRow(i));
+		return values;
+	}
+
+	/**
+	 * Reads every page of a paginated table by clicking the "next" control until it is
+	 * missing or disabled. Each page costs one read script plus the click; the table is
+	 * left holding the last page. Waiting for the next page is bounded by selenium.wait.timeout.
+	 *
+	 * @param tableLocator locates the table again after paging, as pagers often re-render it
+	 * @param nextLocator
+	 * @param maxPages     safety limit
+	 * @return all rows of all pages, keyed by header
+	 */
+	public List<Map<String, String>> readAllPages(By tableLocator, By nextLocator, int maxPages) {
+		WebDriver driver = Scripts.driverOf(table);
+		List<Map<String, String>> all = new ArrayList<>();
+		refresh();
+		for (int page = 0; page < maxPages; page++) {
+			all.addAll(getRows());
+
+			List<WebElement> next = driver.findElements(nextLocator);
+			if (next.isEmpty() || !isEnabled(next.get(0)))
+				break;
+			String before = rows.isEmpty() ? null : rows.get(0).toString();
+			next.get(0).click();
+			waitForNewPage(driver, tableLocator, before);
+		}
+		return all;
+	}
+
+	private void waitForNewPage(WebDriver driver, By tableLocator, String firstRowBefore) {
+		try {
+			new Waiter(driver).until("next page of " + tableLocator, d -> {
+				try {
+					this.table = d.findElement(tableLocator);
+					refresh();
+				} catch (WebDriverException e) {
+					// table is being re-rendered
+					return false;
+				}
+				String first = rows.isEmpty() ? null : rows.get(0).toString();
+				return first == null || !first.equals(firstRowBefore);
+			});
+		} catch (TimeoutException e) {
+			throw new RuntimeException("Table did not change after moving to the next page.", e);
+		}
+	}
+
+	private boolean isEnabled(WebElement next) {
+		String classes = next.getAttribute("class");
+		return next.isDisplayed() && next.isEnabled()
+				&& (classes == null || !classes.toLowerCase(Locale.ROOT).contains("disabled"))
+				&& !"true".equals(next.getAttribute("aria-disabled"));
+	}
+
+	private int requireColumn(String header) {
+		int column = getColumnIndex(header);
+		if (column < 0)
+			throw new RuntimeException("Column '" + header + "' not found. Available columns: " + headers);
+		return column;
+	}
+
+	private void ensureRead() {
+		if (rows == null)
+			refresh();
 	}
 }
@@ -0,0 +1,312 @@
+package fw.core;
+
+import fw.utilities.ConfigHolder;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.FirefoxProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Browser settings read from the configuration. selenium.browser.profile=lean turns on
+ * the defaults for packing many sessions on one machine: headless, no images, web
+ * fonts or GPU, and a fixed 1366x768 viewport. Each setting can also be set on its own:
+ * <ul>
+ * <li>selenium.headless</li>
+ * <li>selenium.disable.images, selenium.disable.fonts, selenium.disable.gpu</li>
+ * <li>selenium.blocked.hosts - comma separated host names, e.g. *.doubleclick.net</li>
+ * <li>selenium.window.size - e.g. 1366x768; without it headed browsers are maximized</li>
+ * <li>selenium.profile.template - browser profile directory every session starts from.
+ * Chrome sessions get a copy of it, deleted when the session ends; remote Chrome
+ * sessions cannot use a local directory and start without it.</li>
+ * </ul>
+ */
+final class BrowserProfile {
+    private static final Logger LOG = Logger.getLogger(BrowserProfile.class.getName());
+    private static final Queue<Path> TEMP_PROFILES = new ConcurrentLinkedQueue<>();
+
+    private final boolean headless;
+    private final boolean noImages;
+    private final boolean noFonts;
+    private final boolean noGpu;
+    private final List<String> blockedHosts;
+    private final Dimension windowSize;
+    private final File template;
+
+    private BrowserProfile(ConfigHolder config) {
+        String profile = config.getProperty("selenium.browser.profile");
+        boolean lean = profile != null && profile.trim().equalsIgnoreCase("lean");
+
+        this.headless = getBoolean(config, "selenium.headless", lean);
+        this.noImages = getBoolean(config, "selenium.disable.images", lean);
+        this.noFonts = getBoolean(config, "selenium.disable.fonts", lean);
+        this.noGpu = getBoolean(config, "selenium.disable.gpu", lean);
+
+        List<String> hosts = new ArrayList<>();
+        String blocked = config.getProperty("selenium.blocked.hosts");
+        if (blocked != null) {
+            for (String host : blocked.split(",")) {
+                if (!host.trim().isEmpty())
+                    hosts.add(host.trim());
+            }
+        }
+        this.blockedHosts = Collections.unmodifiableList(hosts);
+
+        String size = config.getProperty("selenium.window.size");
+        if ((size == null || size.trim().isEmpty()) && lean)
+            size = "1366x768";
+        this.windowSize = size == null || size.trim().isEmpty() ? null : parseSize(size.trim());
+
+        String template = config.getProperty("selenium.profile.template");
+        if (template == null || template.trim().isEmpty()) {
+            this.template = null;
+        } else {
+            this.template = new File(template.trim());
+            if (!this.template.isDirectory())
+                throw new RuntimeException("Profile template '" + template + "' is not a directory. "
+                        + "Check property 'selenium.profile.template'.");
+        }
+    }
+
+    static BrowserProfile fromConfig(ConfigHolder config) {
+        return new BrowserProfile(config);
+    }
+
+    boolean isHeadless() {
+        return headless;
+    }
+
+    void apply(ChromeOptions options, Map<String, Object> prefs) {
+        options.setHeadless(headless);
+        if (windowSize != null)
+            options.addArguments("window-size=" + windowSize.getWidth() + "," + windowSize.getHeight());
+        else if (!headless)
+            options.addArguments("start-maximized");
+
+        if (noImages)
+            prefs.put("profile.managed_default_content_settings.images", 2);
+        if (noFonts)
+            options.addArguments("disable-remote-fonts");
+        if (noGpu && !headless)
+            // headless mode already passes --disable-gpu
+            options.addArguments("disable-gpu");
+        if (headless || noGpu)
+            options.addArguments("disable-dev-shm-usage", "mute-audio", "disable-background-networking");
+
+        if (!blockedHosts.isEmpty()) {
+            StringBuilder rules = new StringBuilder();
+            for (String host : blockedHosts) {
+                if (rules.length() > 0)
+                    rules.append(", ");
+                rules.append("MAP ").append(host).append(" ~NOTFOUND");
+            }
+            options.addArguments("host-resolver-rules=" + rules);
+        }
+    }
+
+    /**
+     * Starts a local Chrome session. With a profile template, the session runs on a
+     * copy of it that is deleted when the session is quit or its last window closed.
+     *
+     * @param options
+     * @return
+     */
+    WebDriver startChrome(ChromeOptions options) {
+        if (template == null)
+            return new ChromeDriver(options);
+        Path copy = copyTemplate("chrome-profile");
+        options.addArguments("user-data-dir=" + copy);
+        try {
+            return new ChromeSession(options, copy);
+        } catch (RuntimeException e) {
+            deleteTemporaryProfile(copy);
+            throw e;
+        }
+    }
+
+    void apply(FirefoxOptions options) {
+        FirefoxProfile profile = template == null ? new FirefoxProfile() : new FirefoxProfile(template);
+        if (noImages)
+            profile.setPreference("permissions.default.image", 2);
+        if (noFonts)
+            profile.setPreference("gfx.downloadable_fonts.enabled", false);
+        if (noGpu)
+            profile.setPreference("layers.acceleration.disabled", true);
+        if (!blockedHosts.isEmpty()) {
+            // a PAC script sends blocked hosts to a closed port and everything else direct
+            profile.setPreference("network.proxy.type", 2);
+            profile.setPreference("network.proxy.autoconfig_url", "data:text/javascript," + pacScript());
+        }
+        options.setProfile(profile);
+        options.setHeadless(headless);
+        if (windowSize != null)
+            options.addArguments("--width=" + windowSize.getWidth(), "--height=" + windowSize.getHeight());
+    }
+
+    /**
+     * Sets the configured viewport, or maximizes headed browsers when there is none
+     *
+     * @param driver
+     */
+    void applyWindow(WebDriver driver) {
+        if (windowSize != null)
+            driver.manage().window().setSize(windowSize);
+        else if (!headless)
+            driver.manage().window().maximize();
+    }
+
+    /**
+     * Deletes the profile copies made for Chrome sessions. Invoked on JVM shutdown.
+     */
+    static void deleteTemporaryProfiles() {
+        Path path;
+        while ((path = TEMP_PROFILES.poll()) != null)
+            deleteTemporaryProfile(path);
+    }
+
+    private static void deleteTemporaryProfile(Path path) {
+        TEMP_PROFILES.remove(path);
+        if (!Files.exists(path))
+            return;
+        try {
+            delete(path);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to delete temporary profile '" + path + "'.", e);
+        }
+    }
+
+    private String pacScript() {
+        StringBuilder script = new StringBuilder("function FindProxyForURL(url, host) {");
+        for (String host : blockedHosts)
+            script.append(" if (shExpMatch(host, '").append(host.replace("'", "")).append("')) return 'PROXY 127.0.0.1:9';");
+        return script.append(" return 'DIRECT'; }").toString();
+    }
+
+    /**
+     * Chrome cannot share a user data directory between sessions, so every session
+     * gets its own copy of the template
+     */
+    private Path copyTemplate(String prefix) {
+        try {
+            Path target = Files.createTempDirectory(prefix);
+            TEMP_PROFILES.add(target);
+            Path source = template.toPath();
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    // lock files of the browser that prepared the template must not be copied
+                    String name = file.getFileName().toString();
+                    if (!name.startsWith("Singleton") && !name.equals("lock") && !name.equals(".parentlock"))
+                        Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return target;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to copy profile template '" + template + "'.", e);
+        }
+    }
+
+    private static void delete(Path root) throws IOException {
+        if (!Files.exists(root))
+            return;
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Chrome session that deletes its profile copy once the browser is gone
+     */
+    private static final class ChromeSession extends ChromeDriver {
+        private final Path profile;
+
+        private ChromeSession(ChromeOptions options, Path profile) {
+            super(options);
+            this.profile = profile;
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                deleteTemporaryProfile(profile);
+            }
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (isEnded())
+                quit();
+        }
+
+        private boolean isEnded() {
+            try {
+                return getSessionId() == null || getWindowHandles().isEmpty();
+            } catch (WebDriverException e) {
+                return true;
+            }
+        }
+    }
+
+    private static Dimension parseSize(String size) {
+        List<String> parts = Arrays.asList(size.toLowerCase(Locale.ROOT).split("[x,*]"));
+        try {
+            if (parts.size() == 2)
+                return new Dimension(Integer.parseInt(parts.get(0).trim()), Integer.parseInt(parts.get(1).trim()));
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new RuntimeException("Value '" + size + "' for property 'selenium.window.size' is not a size like 1366x768.");
+    }
+
+    private static boolean getBoolean(ConfigHolder config, String key, boolean defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        value = value.trim();
+        return value.equalsIgnoreCase("true")
+                || value.equalsIgnoreCase("on")
+                || value.equalsIgnoreCase("yes");
+    }
+}
@@ -0,0 +1,352 @@
+package fw.core;
+
+import fw.utilities.LatencyHistogram;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.WrapsElement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of every WebDriver command. {@link #wrap(WebDriver)} returns a
+ * dynamic proxy of the driver; elements, navigation, window and frame handles
+ * obtained through it are proxied as well, and proxied elements passed back to the
+ * driver (scripts, frames, actions) are unwrapped first.
+ * <p>
+ * Recording is lock-free: per-command histograms, per-locator counters and per-test
+ * totals. Call {@link #startTest(String)} and {@link #endTest()} around each test to
+ * attribute commands to it; {@link #report()} lists the most expensive commands and
+ * locators and flags chatty tests.
+ */
+public final class CommandProfiler {
+    private static final Map<String, LatencyHistogram> COMMANDS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> LOCATORS = new ConcurrentHashMap<>();
+    private static final Map<String, TestProfile> TESTS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<TestProfile> CURRENT_TEST = new ThreadLocal<>();
+
+    /**
+     * Methods that only return a local helper object and do not talk to the browser
+     */
+    private static final Set<String> LOCAL_METHODS = new HashSet<>(Arrays.asList(
+            "manage", "navigate", "switchTo", "timeouts", "window", "ime", "logs",
+            "getWrappedDriver", "getWrappedElement", "getCoordinates", "getId",
+            "toString", "hashCode", "equals"));
+
+    private static volatile int chattyThreshold = 1000;
+
+    private CommandProfiler() {
+    }
+
+    /**
+     * Proxy of the driver that records every command; returns the driver itself if it is
+     * already profiled
+     *
+     * @param driver
+     * @return
+     */
+    public static WebDriver wrap(WebDriver driver) {
+        if (driver == null || isProfiled(driver))
+            return driver;
+        Handler handler = new Handler(driver, "", null);
+        WebDriver proxy = (WebDriver) proxy(driver, handler, WebDriver.class);
+        handler.driverProxy = proxy;
+        return proxy;
+    }
+
+    /**
+     * The driver behind a profiling proxy, or the argument if it is not one
+     *
+     * @param driver
+     * @return
+     */
+    public static WebDriver unwrap(WebDriver driver) {
+        return (WebDriver) unwrapValue(driver);
+    }
+
+    public static boolean isProfiled(Object object) {
+        return object != null && Proxy.isProxyClass(object.getClass())
+                && Proxy.getInvocationHandler(object) instanceof Handler;
+    }
+
+    /**
+     * Attributes the commands of the calling thread to the given test until {@link #endTest()}
+     *
+     * @param testName
+     */
+    public static void startTest(String testName) {
+        CURRENT_TEST.set(TESTS.computeIfAbsent(testName, TestProfile::new));
+    }
+
+    /**
+     * Stops attributing commands of the calling thread and returns the test's totals
+     *
+     * @return
+     */
+    public static TestProfile endTest() {
+        TestProfile test = CURRENT_TEST.get();
+        CURRENT_TEST.remove();
+        return test;
+    }
+
+    /**
+     * Tests with at least this many commands are always reported as chatty
+     *
+     * @param commands
+     */
+    public static void setChattyThreshold(int commands) {
+        chattyThreshold = commands;
+    }
+
+    public static Map<String, LatencyHistogram> getCommands() {
+        return Collections.unmodifiableMap(COMMANDS);
+    }
+
+    public static Map<String, LatencyHistogram> getLocators() {
+        return Collections.unmodifiableMap(LOCATORS);
+    }
+
+    public static Map<String, TestProfile> getTests() {
+        return Collections.unmodifiableMap(TESTS);
+    }
+
+    public static void reset() {
+        COMMANDS.clear();
+        LOCATORS.clear();
+        TESTS.clear();
+    }
+
+    /**
+     * Commands and locators by total time with their share of all command time, and
+     * tests that issue far more commands than the others: more than twice the average,
+     * or more than the chatty threshold
+     *
+     * @return
+     */
+    public static String report() {
+        String nl = System.lineSeparator();
+        long totalMillis = 0;
+        for (LatencyHistogram histogram : COMMANDS.values())
+            totalMillis += histogram.getTotalMillis();
+
+        StringBuilder report = new StringBuilder("WebDriver commands (total ").append(totalMillis).append(" ms)").append(nl);
+        for (Map.Entry<String, LatencyHistogram> entry : byTotal(COMMANDS))
+            appendLine(report, entry.getKey(), entry.getValue(), totalMillis);
+
+        report.append(nl).append("Locators").append(nl);
+        List<Map.Entry<String, LatencyHistogram>> locators = byTotal(LOCATORS);
+        for (Map.Entry<String, LatencyHistogram> entry : locators.subList(0, Math.min(50, locators.size())))
+            appendLine(report, entry.getKey(), entry.getValue(), totalMillis);
+
+        List<TestProfile> tests = new ArrayList<>(TESTS.values());
+        if (!tests.isEmpty()) {
+            long commands = 0;
+            for (TestProfile test : tests)
+                commands += test.getCommandCount();
+            double average = commands / (double) tests.size();
+            tests.sort((a, b) -> Long.compare(b.getCommandCount(), a.getCommandCount()));
+
+            report.append(nl).append("Tests (average ").append(String.format(Locale.ROOT, "%.0f", average))
+                    .append(" commands)").append(nl);
+            for (TestProfile test : tests) {
+                boolean chatty = test.getCommandCount() >= chattyThreshold
+                        || (tests.size() > 1 && test.getCommandCount() > 2 * average);
+                report.append(chatty ? "  CHATTY " : "         ").append(test.getName())
+                        .append(": ").append(test.getCommandCount()).append(" commands, ")
+                        .append(test.getTotalMillis()).append(" ms").append(nl);
+            }
+        }
+        return report.toString();
+    }
+
+    private static List<Map.Entry<String, LatencyHistogram>> byTotal(Map<String, LatencyHistogram> histograms) {
+        List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().getTotalMillis(), a.getValue().getTotalMillis()));
+        return entries;
+    }
+
+    private static void appendLine(StringBuilder report, String name, LatencyHistogram histogram, long totalMillis) {
+        double share = totalMillis == 0 ? 0 : 100.0 * histogram.getTotalMillis() / totalMillis;
+        report.append(String.format(Locale.ROOT, "  %-40s %6.1f%% total=%dms ", name, share, histogram.getTotalMillis()))
+                .append(histogram).append(System.lineSeparator());
+    }
+
+    private static void record(String command, By locator, long nanos) {
+        histogram(COMMANDS, command).record(nanos);
+        if (locator != null)
+            histogram(LOCATORS, locator.toString()).record(nanos);
+        TestProfile test = CURRENT_TEST.get();
+        if (test != null) {
+            test.commands.increment();
+            test.nanos.add(nanos);
+        }
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String key) {
+        // plain get first: it never locks, computeIfAbsent may
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, name -> new LatencyHistogram());
+    }
+
+    private static Object proxy(Object target, Handler handler, Class<?> required) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        interfaces.add(required);
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass())
+            collectInterfaces(type, interfaces);
+        if (target instanceof WebElement) {
+            interfaces.add(WrapsDriver.class);
+            interfaces.add(WrapsElement.class);
+        }
+        return Proxy.newProxyInstance(CommandProfiler.class.getClassLoader(), visible(interfaces), handler);
+    }
+
+    private static void collectInterfaces(Class<?> type, Set<Class<?>> interfaces) {
+        for (Class<?> candidate : type.getInterfaces()) {
+            if (Modifier.isPublic(candidate.getModifiers()) && interfaces.add(candidate))
+                collectInterfaces(candidate, interfaces);
+        }
+    }
+
+    private static Class<?>[] visible(Set<Class<?>> interfaces) {
+        List<Class<?>> result = new ArrayList<>();
+        ClassLoader loader = CommandProfiler.class.getClassLoader();
+        for (Class<?> type : interfaces) {
+            try {
+                if (Class.forName(type.getName(), false, loader) == type)
+                    result.add(type);
+            } catch (ClassNotFoundException e) {
+                // not visible to the proxy's class loader
+            }
+        }
+        return result.toArray(new Class<?>[0]);
+    }
+
+    private static Object unwrapValue(Object value) {
+        if (isProfiled(value))
+            return ((Handler) Proxy.getInvocationHandler(value)).target;
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<?>) value)
+                list.add(unwrapValue(item));
+            return list;
+        }
+        if (value instanceof Object[]) {
+            Object[] array = ((Object[]) value).clone();
+            for (int i = 0; i < array.length; i++)
+                array[i] = unwrapValue(array[i]);
+            return array;
+        }
+        return value;
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Object target;
+        private final String prefix;
+        private WebDriver driverProxy;
+
+        private Handler(Object target, String prefix, WebDriver driverProxy) {
+            this.target = target;
+            this.prefix = prefix;
+            this.driverProxy = driverProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getWrappedElement") && target instanceof WebElement && method.getParameterCount() == 0)
+                return target;
+            if (name.equals("getWrappedDriver") && target instanceof WebElement && method.getParameterCount() == 0)
+                return driverProxy;
+            if (name.equals("equals") && method.getParameterCount() == 1)
+                return target.equals(unwrapValue(args[0]));
+
+            Object[] actualArgs = args == null ? null : (Object[]) unwrapValue(args);
+            boolean local = LOCAL_METHODS.contains(name);
+            long start = local ? 0 : System.nanoTime();
+            Object result;
+            try {
+                result = method.invoke(target, actualArgs);
+            } catch (InvocationTargetException e) {
+                if (!local)
+                    record(prefix + name, locatorOf(actualArgs), System.nanoTime() - start);
+                throw e.getCause();
+            }
+            if (!local)
+                record(prefix + name, locatorOf(actualArgs), System.nanoTime() - start);
+            return wrapResult(method, name, result);
+        }
+
+        private Object wrapResult(Method method, String name, Object result) {
+            if (result == null)
+                return null;
+            if (result instanceof WebElement && !isProfiled(result))
+                return proxy(result, new Handler(result, "", driverProxy), WebElement.class);
+            if (result instanceof List && method.getReturnType() == List.class) {
+                List<Object> list = new ArrayList<>(((List<?>) result).size());
+                for (Object item : (Collection<?>) result)
+                    list.add(item instanceof WebElement ? wrapResult(method, name, item) : item);
+                return list;
+            }
+            if (result instanceof WebDriver)
+                return driverProxy;
+            Class<?> type = method.getReturnType();
+            // navigation, options, timeouts, window and frame locators talk to the browser too
+            if (type.isInterface() && type.getName().startsWith("org.openqa.selenium.")
+                    && Modifier.isPublic(type.getModifiers()) && type.isInstance(result))
+                return proxy(result, new Handler(result, prefix + name + ".", driverProxy), type);
+            return result;
+        }
+
+        private static By locatorOf(Object[] args) {
+            return args != null && args.length > 0 && args[0] instanceof By ? (By) args[0] : null;
+        }
+    }
+
+    /**
+     * Command totals of one test
+     */
+    public static final class TestProfile {
+        private final String name;
+        private final LongAdder commands = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private TestProfile(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCommandCount() {
+            return commands.sum();
+        }
+
+        public long getTotalMillis() {
+            return nanos.sum() / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + getCommandCount() + " commands, " + getTotalMillis() + " ms";
+        }
+    }
+}
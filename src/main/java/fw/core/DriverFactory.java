@@ -5,9 +5,7 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
-import org.openqa.selenium.firefox.FirefoxProfile;
 import org.openqa.selenium.remote.DesiredCapabilities;
-import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.safari.SafariDriver;
 import org.openqa.selenium.safari.SafariOptions;
 
@@ -15,25 +13,99 @@ import fw.enums.BrowserType;
 import fw.enums.OperatingSystem;
 import fw.utilities.ConfigHolder;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class DriverFactory {
-    private WebDriver driver;
-    private ConfigHolder config = ConfigHolder.getInstance();
-    private OperatingSystem os;
+    private static final Logger LOG = Logger.getLogger(DriverFactory.class.getName());
+    private static final String FAKE_DRIVER = "fw.core.FakeDriver";
+    private static final Map<String, DriverPool> POOLS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "driver-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static ExecutorService prewarmExecutor;
+
+    static {
+        EVICTOR.scheduleWithFixedDelay(() -> {
+            for (DriverPool pool : POOLS.values())
+                pool.evictIdle();
+        }, 30, 30, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(DriverFactory::shutdown, "driver-pool-shutdown"));
+        ConfigHolder.getInstance().addChangeListener(DriverFactory::configChanged);
+    }
+
+    private static volatile LaunchSettings launchSettings;
+    private static HubBalancer balancer;
+    private static String balancerSpec;
+    private static FixtureServer fixtureServer;
+
+    private final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    private final ThreadLocal<BrowserType> driverType = new ThreadLocal<>();
+    private final ThreadLocal<DriverPool> lease = new ThreadLocal<>();
+    private final ConfigHolder config = ConfigHolder.getInstance();
     private String osShortName = null;
-    private boolean isGridExecution = false;
-    private String hub_url = null;
 
 
     /**
-     * Set up values for DriverFactory
+     * Launch settings of the current configuration, shared by all factories and
+     * resolved again after a configuration reload
+     *
+     * @return
+     */
+    private static LaunchSettings getLaunchSettings() {
+        LaunchSettings launch = launchSettings;
+        if (launch != null)
+            return launch;
+        synchronized (DriverFactory.class) {
+            if (launchSettings == null)
+                launchSettings = initialize();
+            return launchSettings;
+        }
+    }
+
+    /**
+     * Current launch settings for a pool of the given target. Fails once the
+     * configuration moved to another target; pools are kept per target.
      */
-    private void initialize() {
+    private static LaunchSettings getLaunchSettings(String target) {
+        LaunchSettings launch = getLaunchSettings();
+        if (!launch.getTarget().equals(target))
+            throw new IllegalStateException("Sessions are no longer started on '" + target
+                    + "', the configuration changed to '" + launch.getTarget() + "'.");
+        return launch;
+    }
+
+    /**
+     * Set up values for DriverFactory. The launch settings are resolved completely
+     * before they replace the previous ones, so sessions being started meanwhile
+     * never see half of them.
+     *
+     * @return
+     */
+    private static LaunchSettings initialize() {
+        ConfigHolder config = ConfigHolder.getInstance();
+        long start = System.nanoTime();
+
+        boolean isGridExecution = false;
+        String hubUrl = null;
+        HubBalancer hubs = null;
+        OperatingSystem os;
         String mode = config.getProperty("selenium.grid.execution");
         if (mode == null || mode.trim().isEmpty())
             mode = "local";
@@ -43,7 +115,7 @@ public class DriverFactory {
                 || mode.trim().equalsIgnoreCase("yes")
                 || mode.trim().equalsIgnoreCase("remote")
                 || mode.trim().equalsIgnoreCase("grid"))
-            this.isGridExecution = true;
+            isGridExecution = true;
 
         if (isGridExecution) {
             String hubURL = config.getProperty("selenium.grid.hub.url");
@@ -54,19 +126,53 @@ public class DriverFactory {
             if (hubURL == null || hubURL.trim().isEmpty())
                 throw new RuntimeException("If Grid mode is on, then HUB URL is required. " +
                         "Provide value for property 'selenium.grid.hub.url'.");
-            this.hub_url = hubURL;
+            hubUrl = hubURL.trim();
+            synchronized (DriverFactory.class) {
+                if (balancer == null || !hubUrl.equals(balancerSpec)) {
+                    balancer = HubBalancer.fromConfig(config);
+                    balancerSpec = hubUrl;
+                }
+                hubs = balancer;
+            }
 
             String osName = config.getProperty("selenium.remote.os.name",false);
             if(osName == null || osName.trim().isEmpty())
                 osName = config.getProperty("os.name",false);
             if(osName == null || osName.trim().isEmpty())
-                this.os = OperatingSystem.Any;
+                os = OperatingSystem.Any;
             else
-                this.os  = getMatchingOSName(osName);
+                os  = getMatchingOSName(osName);
         }else{
-            this.os = detectLocalRunningOS();
+            os = detectLocalRunningOS();
         }
+        LaunchSettings launch = new LaunchSettings(hubUrl, hubs, os, BrowserProfile.fromConfig(config));
+        DriverMetrics.recordSince("initialize", start);
+        return launch;
+    }
 
+    /**
+     * Applies configuration reloads: the launch settings are resolved again, idle
+     * pooled sessions started with the previous ones are quit and pools are resized.
+     * Invalid settings fail the listener, which the reload reports, and fail again
+     * when the next browser is started.
+     */
+    private static synchronized void configChanged(Set<String> changedKeys) {
+        launchSettings = null;
+        for (DriverPool pool : POOLS.values())
+            pool.clearIdle();
+        if (changedKeys.contains("selenium.pool.max.size")) {
+            String value = ConfigHolder.getInstance().getProperty("selenium.pool.max.size");
+            int maxSize;
+            try {
+                maxSize = value == null || value.trim().isEmpty()
+                        ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Value '" + value + "' for property 'selenium.pool.max.size' is not a number.");
+            }
+            for (DriverPool pool : POOLS.values())
+                pool.setMaxSize(maxSize);
+        }
+        getLaunchSettings();
     }
 
     public WebDriver getDriver() {
@@ -74,54 +180,321 @@ public class DriverFactory {
     }
 
     /**
-     * This method invokes the browser type as required
+     * This method invokes the browser type as required. The driver is bound to the
+     * calling thread, so one factory can serve tests running in parallel.
+     * When pooling is enabled (selenium.pool.enabled, on by default) the session is
+     * borrowed from a pool per browser and target (local or hub) and returned to it by
+     * {@link #closeBrowser()}.
      *
      * @param type
      * @return
      */
     public WebDriver getDriver(BrowserType type) {
-        this.initialize();
+        LaunchSettings launch = getLaunchSettings();
 
         if(type == null)
             type = this.getBrowser();
 
+        WebDriver current = this.driver.get();
+        if (current != null) {
+            if (type == this.driverType.get())
+                return current;
+            closeBrowser();
+        }
+
+        WebDriver newDriver;
+        if (isPoolingEnabled()) {
+            DriverPool pool = getPool(type, launch);
+            newDriver = pool.borrow();
+            this.lease.set(pool);
+        } else {
+            newDriver = createDriver(type, launch);
+        }
+        if (isEnabled("selenium.profiler.enabled", false)) {
+            CommandProfiler.setChattyThreshold(getIntProperty("selenium.profiler.chatty.threshold", 1000));
+            newDriver = CommandProfiler.wrap(newDriver);
+        }
+
+        this.driver.set(newDriver);
+        this.driverType.set(type);
+        return newDriver;
+    }
+
+    /**
+     * Returns the driver bound to the current thread, if any
+     *
+     * @return
+     */
+    public WebDriver getCurrentDriver() {
+        return this.driver.get();
+    }
+
+    /**
+     * Explicit wait for the driver bound to the current thread, configured from the
+     * selenium.wait.* properties
+     *
+     * @return
+     */
+    public Waiter getWaiter() {
+        WebDriver current = this.driver.get();
+        if (current == null)
+            throw new RuntimeException("No driver is bound to thread '" + Thread.currentThread().getName() + "'.");
+        return new Waiter(current);
+    }
+
+    /**
+     * Releases the driver bound to the current thread. Pooled drivers go back
+     * to their pool, others are closed.
+     */
+    public void closeBrowser(){
+        WebDriver current = CommandProfiler.unwrap(this.driver.get());
+        DriverPool pool = this.lease.get();
+        this.driver.remove();
+        this.driverType.remove();
+        this.lease.remove();
+
+        if (current == null)
+            return;
+        long start = System.nanoTime();
+        if (pool != null)
+            pool.release(current);
+        else
+            current.close();
+        DriverMetrics.recordSince("session.close", start);
+    }
+
+    /**
+     * Quits the driver bound to the current thread instead of returning it to the pool.
+     * Use this when a test left the browser in an unusable state.
+     */
+    public void quitBrowser(){
+        WebDriver current = CommandProfiler.unwrap(this.driver.get());
+        DriverPool pool = this.lease.get();
+        this.driver.remove();
+        this.driverType.remove();
+        this.lease.remove();
+
+        if (current == null)
+            return;
+        long start = System.nanoTime();
+        if (pool != null)
+            pool.discard(current);
+        else
+            current.quit();
+        DriverMetrics.recordSince("session.quit", start);
+    }
+
+    /**
+     * If driver externally initialized, then set it manually
+     *
+     * @param driver
+     */
+    public void setDriver(WebDriver driver) {
+        this.driver.set(driver);
+        this.driverType.remove();
+        this.lease.remove();
+    }
+
+    /**
+     * Starts the configured number of sessions (selenium.prewarm.count) for the given
+     * browser in the background, e.g. from a @BeforeSuite method, so that the first
+     * tests do not wait for a browser to start.
+     *
+     * @param type
+     */
+    public void prewarm(BrowserType type) {
+        LaunchSettings launch = getLaunchSettings();
+        if (type == null)
+            type = this.getBrowser();
+        if (isPoolingEnabled())
+            getPool(type, launch);
+    }
+
+    /**
+     * Pools created so far, keyed by browser type for local sessions and by browser type
+     * and hub for grid sessions, e.g. {@code chrome} or {@code chrome@http://hub:4444/wd/hub}.
+     * Exposes hit/miss and wait time statistics.
+     *
+     * @return
+     */
+    public static Map<String, DriverPool> getPools() {
+        return Collections.unmodifiableMap(POOLS);
+    }
+
+    /**
+     * Quits every pooled browser session. Invoked automatically on JVM shutdown.
+     */
+    public static void shutdown() {
+        exportMetrics();
+        for (DriverPool pool : POOLS.values())
+            pool.close();
+        POOLS.clear();
+        synchronized (DriverFactory.class) {
+            if (prewarmExecutor != null)
+                prewarmExecutor.shutdownNow();
+            prewarmExecutor = null;
+        }
+        BrowserProfile.deleteTemporaryProfiles();
+        synchronized (DriverFactory.class) {
+            if (fixtureServer != null)
+                fixtureServer.close();
+            fixtureServer = null;
+        }
+    }
+
+    /**
+     * Starts a new browser session of the given type
+     *
+     * @param type
+     * @param launch
+     * @return
+     */
+    private WebDriver createDriver(BrowserType type, LaunchSettings launch) {
+        long start = System.nanoTime();
+        WebDriver driver;
+        try {
+            driver = launch(type, launch);
+        } catch (RuntimeException e) {
+            DriverMetrics.increment("session.failed." + type);
+            throw e;
+        }
+        DriverMetrics.recordSince("session.create." + type, start);
+        DriverMetrics.increment("session.created." + type);
+        return driver;
+    }
+
+    private WebDriver launch(BrowserType type, LaunchSettings launch) {
+        WebDriver driver = null;
         switch (type) {
             case firefox:
-                this.driver = getFirefoxDriver();
+                driver = getFirefoxDriver(launch);
                 break;
             case ie:
-                this.driver = getInternetExplorerDriver();
+                driver = getInternetExplorerDriver(launch);
                 break;
             case chrome:
-                this.driver = getChromeDriver();
+                driver = getChromeDriver(launch);
                 break;
             case safari:
-                this.driver = getSafariDriver();
+                driver = getSafariDriver(launch);
+                break;
+            case fake:
+                driver = getFakeDriver();
                 break;
         }
 
-        this.driver.manage().timeouts().implicitlyWait(10, TimeUnit.SECONDS);
-        this.driver.manage().window().maximize();
-        return this.driver;
+        // 10 s as always; Waiter turns it off while polling and restores this value
+        int implicitWait = getIntProperty("selenium.implicit.wait", 10);
+        if (implicitWait > 0)
+            driver.manage().timeouts().implicitlyWait(implicitWait, TimeUnit.SECONDS);
+        launch.getProfile().applyWindow(driver);
+        return driver;
     }
 
     /**
-     *
+     * Pool of the browser type on the target of the launch settings. The pool starts
+     * its sessions with the current settings of that target.
      */
-    public void closeBrowser(){
-        if(this.driver != null ){
-            this.driver.close();
-            this.driver =  null;
+    private DriverPool getPool(BrowserType type, LaunchSettings launch) {
+        String name = launch.isGrid() ? type + "@" + launch.getTarget() : type.name();
+        DriverPool pool = POOLS.get(name);
+        if (pool != null)
+            return pool;
+
+        synchronized (POOLS) {
+            pool = POOLS.get(name);
+            if (pool != null)
+                return pool;
+
+            String target = launch.getTarget();
+            pool = new DriverPool(name, () -> createDriver(type, getLaunchSettings(target)),
+                    getIntProperty("selenium.pool.max.size", Runtime.getRuntime().availableProcessors()),
+                    TimeUnit.SECONDS.toMillis(getIntProperty("selenium.pool.idle.timeout", 300)),
+                    TimeUnit.SECONDS.toMillis(getIntProperty("selenium.pool.borrow.timeout", 300)));
+            POOLS.put(name, pool);
+            registerGauges(name, pool);
         }
+
+        int prewarmCount = getIntProperty("selenium.prewarm.count", 0);
+        if (prewarmCount > 0)
+            pool.prewarm(prewarmCount, getPrewarmExecutor(getIntProperty("selenium.prewarm.threads", prewarmCount)));
+        return pool;
     }
 
     /**
-     * If driver externally initialized, then set it manually
+     * Hubs used for grid execution with their current load and circuit state, or null
+     * before the first grid session
      *
-     * @param driver
+     * @return
      */
-    public void setDriver(WebDriver driver) {
-        this.driver = driver;
+    public static synchronized HubBalancer getBalancer() {
+        return balancer;
+    }
+
+    private static void registerGauges(String name, DriverPool pool) {
+        DriverMetrics.registerGauge("pool." + name + ".active", pool::getActiveCount);
+        DriverMetrics.registerGauge("pool." + name + ".idle", pool::getIdleCount);
+        DriverMetrics.registerGauge("pool." + name + ".hit.rate", pool::getHitRate);
+        DriverMetrics.registerGauge("pool." + name + ".wait.millis", pool::getWaitTimeMillis);
+    }
+
+    /**
+     * Writes the driver metrics to the file named by selenium.metrics.export, if any
+     */
+    private static void exportMetrics() {
+        String path = ConfigHolder.getInstance().getProperty("selenium.metrics.export");
+        if (path != null && !path.trim().isEmpty()) {
+            try {
+                DriverMetrics.export(path.trim());
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Unable to export driver metrics to '" + path + "'.", e);
+            }
+        }
+
+        String report = ConfigHolder.getInstance().getProperty("selenium.profiler.report");
+        if (report != null && !report.trim().isEmpty() && !CommandProfiler.getCommands().isEmpty()) {
+            try {
+                Files.write(Paths.get(report.trim()), CommandProfiler.report().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to write command profile to '" + report + "'.", e);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getPrewarmExecutor(int threads) {
+        if (prewarmExecutor == null) {
+            prewarmExecutor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+                Thread thread = new Thread(r, "driver-prewarm");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prewarmExecutor;
+    }
+
+    private boolean isPoolingEnabled() {
+        return isEnabled("selenium.pool.enabled", true);
+    }
+
+    private boolean isEnabled(String key, boolean defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        value = value.trim();
+        return value.equalsIgnoreCase("true")
+                || value.equalsIgnoreCase("on")
+                || value.equalsIgnoreCase("yes");
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
     }
 
 
@@ -130,21 +503,17 @@ public class DriverFactory {
      *
      * @return
      */
-    private WebDriver getInternetExplorerDriver() {
+    private WebDriver getInternetExplorerDriver(LaunchSettings launch) {
         WebDriver driver = null;
-        try {
-            DesiredCapabilities capabilities = DesiredCapabilities.internetExplorer();
-            capabilities.setBrowserName("ie");
-            capabilities.setPlatform(this.getPlatform());
-            if (!isGridExecution) {
-                String path = getPath(this.os,BrowserType.ie);
-                System.setProperty("webdriver.ie.driver",path);
-                driver = new ChromeDriver(capabilities);
-            } else {
-                driver = new RemoteWebDriver(new URL(this.hub_url), capabilities);
-            }
-        }catch(MalformedURLException e){
-            throw new RuntimeException("Error occured while invoking remote web driver using the hub url'" + this.hub_url +"'.");
+        DesiredCapabilities capabilities = DesiredCapabilities.internetExplorer();
+        capabilities.setBrowserName("ie");
+        capabilities.setPlatform(this.getPlatform(launch.getOs()));
+        if (!launch.isGrid()) {
+            String path = getPath(launch.getOs(),BrowserType.ie);
+            System.setProperty("webdriver.ie.driver",path);
+            driver = new ChromeDriver(capabilities);
+        } else {
+            driver = launch.getBalancer().createSession(capabilities);
         }
         return driver;
     }
@@ -154,34 +523,30 @@ public class DriverFactory {
      *
      * @return
      */
-    private WebDriver getChromeDriver() {
+    private WebDriver getChromeDriver(LaunchSettings launch) {
         WebDriver driver = null;
-        try {
-            DesiredCapabilities capabilities = DesiredCapabilities.chrome();
-            capabilities.setBrowserName("ie");
-            capabilities.setPlatform(this.getPlatform());
-
-            //additional capabilties here
-            ChromeOptions options = new ChromeOptions();
-            options.addArguments("start-maximized");
-            options.addArguments("disable-extensions");
-
-            Map<String, Object> prefs = new HashMap<>();
-            prefs.put("profile.default_content_settings.popups", 0);
-
-            options.merge(capabilities);
-            options.setExperimentalOption("prefs", prefs);
-            options.setExperimentalOption("useAutomationExtension",false);
-
-            if (!isGridExecution) {
-                String path = getPath(this.os,BrowserType.chrome);
-                System.setProperty("webdriver.chrome.driver",path);
-                driver = new ChromeDriver(options);
-            } else {
-                driver = new RemoteWebDriver(new URL(this.hub_url), options);
-            }
-        }catch(MalformedURLException e){
-            throw new RuntimeException("Error occured while invoking remote web driver using the hub url'" + this.hub_url +"'.");
+        DesiredCapabilities capabilities = DesiredCapabilities.chrome();
+        capabilities.setBrowserName("ie");
+        capabilities.setPlatform(this.getPlatform(launch.getOs()));
+
+        //additional capabilties here
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("disable-extensions");
+
+        Map<String, Object> prefs = new HashMap<>();
+        prefs.put("profile.default_content_settings.popups", 0);
+        launch.getProfile().apply(options, prefs);
+
+        options.merge(capabilities);
+        options.setExperimentalOption("prefs", prefs);
+        options.setExperimentalOption("useAutomationExtension",false);
+
+        if (!launch.isGrid()) {
+            String path = getPath(launch.getOs(),BrowserType.chrome);
+            System.setProperty("webdriver.chrome.driver",path);
+            driver = launch.getProfile().startChrome(options);
+        } else {
+            driver = launch.getBalancer().createSession(options);
         }
         return driver;
     }
@@ -192,25 +557,21 @@ public class DriverFactory {
      *
      * @return
      */
-    private WebDriver getFirefoxDriver() {
+    private WebDriver getFirefoxDriver(LaunchSettings launch) {
         WebDriver driver = null;
-        try {
 
-            DesiredCapabilities capabilities = DesiredCapabilities.firefox();
-            capabilities.setCapability(FirefoxDriver.PROFILE,new FirefoxProfile());
+        DesiredCapabilities capabilities = DesiredCapabilities.firefox();
 
-            FirefoxOptions options = new FirefoxOptions();
-            options.merge(capabilities);
+        FirefoxOptions options = new FirefoxOptions();
+        options.merge(capabilities);
+        launch.getProfile().apply(options);
 
-            if (!isGridExecution) {
-                String path = getPath(this.os,BrowserType.safari);
-                System.setProperty("webdriver.gecko.driver",path);
-                driver = new FirefoxDriver(options);
-            } else {
-                driver = new RemoteWebDriver(new URL(this.hub_url),options);
-            }
-        }catch(MalformedURLException e){
-            throw new RuntimeException("Error occured while invoking remote web driver using the hub url'" + this.hub_url +"'.");
+        if (!launch.isGrid()) {
+            String path = getPath(launch.getOs(),BrowserType.safari);
+            System.setProperty("webdriver.gecko.driver",path);
+            driver = new FirefoxDriver(options);
+        } else {
+            driver = launch.getBalancer().createSession(options);
         }
         return driver;
     }
@@ -220,36 +581,74 @@ public class DriverFactory {
      *
      * @return
      */
-    private WebDriver getSafariDriver() {
+    private WebDriver getSafariDriver(LaunchSettings launch) {
         WebDriver driver = null;
-        try {
-            DesiredCapabilities capabilities = DesiredCapabilities.safari();
-            capabilities.setBrowserName("safari");
-            capabilities.setPlatform(this.getPlatform());
-
-            SafariOptions options = new SafariOptions();
-            options.merge(capabilities);
-
-            if (!isGridExecution) {
-                String path = getPath(this.os,BrowserType.ie);
-                System.setProperty("webdriver.safari.driver",path);
-                driver = new SafariDriver(options);
-            } else {
-                driver = new RemoteWebDriver(new URL(this.hub_url),options);
-            }
-        }catch(MalformedURLException e){
-            throw new RuntimeException("Error occured while invoking remote web driver using the hub url'" + this.hub_url +"'.");
+        DesiredCapabilities capabilities = DesiredCapabilities.safari();
+        capabilities.setBrowserName("safari");
+        capabilities.setPlatform(this.getPlatform(launch.getOs()));
+
+        SafariOptions options = new SafariOptions();
+        options.merge(capabilities);
+
+        if (!launch.isGrid()) {
+            String path = getPath(launch.getOs(),BrowserType.ie);
+            System.setProperty("webdriver.safari.driver",path);
+            driver = new SafariDriver(options);
+        } else {
+            driver = launch.getBalancer().createSession(options);
         }
         return driver;
     }
 
+    /**
+     * Initializes the in-process fake driver, also in grid mode. Relative URLs resolve
+     * against selenium.fake.base.url, or against a fixture server started for the
+     * directory in selenium.fake.fixtures. The fake driver is part of the test sources,
+     * so it is only available on a test class path.
+     *
+     * @return
+     */
+    private WebDriver getFakeDriver() {
+        String baseUrl = config.getProperty("selenium.fake.base.url");
+        if (baseUrl == null || baseUrl.trim().isEmpty()) {
+            String fixtures = config.getProperty("selenium.fake.fixtures");
+            if (fixtures != null && !fixtures.trim().isEmpty())
+                baseUrl = getFixtureServer(fixtures.trim()).getBaseUrl();
+        }
+        try {
+            return (WebDriver) Class.forName(FAKE_DRIVER).getConstructor(String.class)
+                    .newInstance(baseUrl == null || baseUrl.trim().isEmpty() ? null : baseUrl.trim());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Browser 'fake' needs '" + FAKE_DRIVER + "' of the test sources on the class path.");
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Unable to create the fake driver.", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to create the fake driver.", e);
+        }
+    }
+
+    private static synchronized FixtureServer getFixtureServer(String directory) {
+        if (fixtureServer == null)
+            fixtureServer = new FixtureServer(Paths.get(directory));
+        return fixtureServer;
+    }
+
     /**
      * Based on OS and Browser type, initializes the path for driver
      *
      * @param os
      * @return
      */
-    private String getPath(OperatingSystem os, BrowserType browser) {
+    String getPath(OperatingSystem os, BrowserType browser) {
+        long start = System.nanoTime();
+        try {
+            return findPath(os, browser);
+        } finally {
+            DriverMetrics.recordSince("driver.path", start);
+        }
+    }
+
+    private String findPath(OperatingSystem os, BrowserType browser) {
         String path = null;
 
         switch (browser) {
@@ -358,7 +757,7 @@ public class DriverFactory {
      *
      * @return
      */
-    private OperatingSystem getMatchingOSName(String osName) {
+    private static OperatingSystem getMatchingOSName(String osName) {
         if (osName == null)
             return null;
 
@@ -379,20 +778,20 @@ public class DriverFactory {
     }
 
 
-    private OperatingSystem detectLocalRunningOS() {
+    private static OperatingSystem detectLocalRunningOS() {
         String osName = System.getProperty("os.name");
-        return this.getMatchingOSName(osName);
+        return getMatchingOSName(osName);
     }
 
     /**
      *
      * @return
      */
-    private Platform getPlatform() {
-        if (this.os == null)
+    private Platform getPlatform(OperatingSystem os) {
+        if (os == null)
             return Platform.ANY;
 
-        switch (this.os) {
+        switch (os) {
             case Windows:
                 return Platform.WINDOWS;
             case Linux:
@@ -409,7 +808,7 @@ public class DriverFactory {
     }
 
 
-    private BrowserType getBrowser(){
+    BrowserType getBrowser(){
         String browser  = config.getProperty("selenium.browser.name");
         if(browser == null || browser.trim().isEmpty())
             browser  = config.getProperty("browser.name");
@@ -418,7 +817,9 @@ public class DriverFactory {
 
         browser = browser.toLowerCase().replace("[^a-z]","");
 
-        if(browser.contains("chrome"))
+        if(browser.contains("fake"))
+            return BrowserType.fake;
+        else if(browser.contains("chrome"))
             return BrowserType.chrome;
         else if(browser.contains("ie") || browser.contains("internetexplorer")
                 || browser.contains("iexplorer"))
@@ -0,0 +1,193 @@
+package fw.core;
+
+import com.google.gson.GsonBuilder;
+import fw.utilities.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Counters, latency histograms and gauges of the driver lifecycle. DriverFactory
+ * records:
+ * <ul>
+ * <li>histograms: initialize, driver.path, session.create.&lt;browser&gt;,
+ * session.close, session.quit</li>
+ * <li>counters: session.created.&lt;browser&gt;, session.failed.&lt;browser&gt;,
+ * session.failed.hub.&lt;hub url&gt;</li>
+ * <li>gauges: pool.&lt;browser&gt;.active, .idle, .hit.rate, .wait.millis</li>
+ * </ul>
+ * Values can be read at any time; {@link #toJson()} and {@link #toCsv()} give a
+ * snapshot of everything. If selenium.metrics.export names a file (.json or .csv) the
+ * snapshot is written there when the JVM shuts down.
+ */
+public final class DriverMetrics {
+    private static final Map<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private DriverMetrics() {
+    }
+
+    public static void increment(String counter) {
+        increment(counter, 1);
+    }
+
+    public static void increment(String counter, long delta) {
+        COUNTERS.computeIfAbsent(counter, key -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * Records a duration measured from the given System.nanoTime() value until now
+     *
+     * @param histogram
+     * @param startNanos
+     */
+    public static void recordSince(String histogram, long startNanos) {
+        record(histogram, System.nanoTime() - startNanos);
+    }
+
+    public static void record(String histogram, long nanos) {
+        getHistogram(histogram).record(nanos);
+    }
+
+    /**
+     * Registers a value that is read whenever a snapshot is taken; replaces an
+     * earlier gauge of the same name
+     *
+     * @param gauge
+     * @param value
+     */
+    public static void registerGauge(String gauge, DoubleSupplier value) {
+        GAUGES.put(gauge, value);
+    }
+
+    public static long getCounter(String counter) {
+        AtomicLong value = COUNTERS.get(counter);
+        return value == null ? 0 : value.get();
+    }
+
+    public static LatencyHistogram getHistogram(String histogram) {
+        return HISTOGRAMS.computeIfAbsent(histogram, key -> new LatencyHistogram());
+    }
+
+    public static double getGauge(String gauge) {
+        DoubleSupplier value = GAUGES.get(gauge);
+        return value == null ? Double.NaN : value.getAsDouble();
+    }
+
+    /**
+     * All current values, sorted by name: counters and gauges as numbers, histograms as
+     * maps of count, total, mean, p50, p95, p99 and max (in milliseconds)
+     *
+     * @return
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> counters = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet())
+            counters.put(entry.getKey(), entry.getValue().get());
+
+        Map<String, Object> histograms = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("totalMillis", histogram.getTotalMillis());
+            values.put("meanMillis", histogram.getMeanMillis());
+            values.put("p50Millis", histogram.getPercentileMillis(0.5));
+            values.put("p95Millis", histogram.getPercentileMillis(0.95));
+            values.put("p99Millis", histogram.getPercentileMillis(0.99));
+            values.put("maxMillis", histogram.getMaxMillis());
+            histograms.put(entry.getKey(), values);
+        }
+
+        Map<String, Object> gauges = new TreeMap<>();
+        for (Map.Entry<String, DoubleSupplier> entry : GAUGES.entrySet()) {
+            double value;
+            try {
+                value = entry.getValue().getAsDouble();
+            } catch (RuntimeException e) {
+                value = Double.NaN;
+            }
+            // JSON has no NaN or infinity
+            gauges.put(entry.getKey(), Double.isNaN(value) || Double.isInfinite(value) ? null : value);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timestamp", System.currentTimeMillis());
+        snapshot.put("counters", counters);
+        snapshot.put("histograms", histograms);
+        snapshot.put("gauges", gauges);
+        return snapshot;
+    }
+
+    public static String toJson() {
+        return new GsonBuilder().setPrettyPrinting().serializeNulls().create().toJson(snapshot());
+    }
+
+    /**
+     * One line per value: type,name,field,value
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static String toCsv() {
+        Map<String, Object> snapshot = snapshot();
+        StringBuilder csv = new StringBuilder("type,name,field,value\n");
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) snapshot.get("counters")).entrySet())
+            csv.append("counter,").append(quote(entry.getKey())).append(",value,").append(entry.getValue()).append('\n');
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) snapshot.get("histograms")).entrySet()) {
+            for (Map.Entry<String, Object> field : ((Map<String, Object>) entry.getValue()).entrySet())
+                csv.append("histogram,").append(quote(entry.getKey())).append(',').append(field.getKey())
+                        .append(',').append(field.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) snapshot.get("gauges")).entrySet())
+            csv.append("gauge,").append(quote(entry.getKey())).append(",value,").append(entry.getValue() == null ? "" : entry.getValue()).append('\n');
+        return csv.toString();
+    }
+
+    /**
+     * Writes the snapshot as CSV if the file name ends with .csv, as JSON otherwise
+     *
+     * @param path
+     */
+    public static void export(String path) {
+        File file = new File(path);
+        if (file.getAbsoluteFile().getParentFile() != null)
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        String content = path.toLowerCase().endsWith(".csv") ? toCsv() : toJson();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write driver metrics to '" + path + "'.", e);
+        }
+    }
+
+    /**
+     * Clears counters and histograms; gauges stay registered
+     */
+    public static void reset() {
+        COUNTERS.clear();
+        HISTOGRAMS.clear();
+    }
+
+    public static Map<String, DoubleSupplier> getGauges() {
+        return Collections.unmodifiableMap(GAUGES);
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
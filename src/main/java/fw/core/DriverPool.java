@@ -0,0 +1,431 @@
+package fw.core;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of live WebDriver sessions for a single browser type.
+ * Sessions are borrowed by a test thread and returned once the test is done,
+ * so browsers started by one test can be reused by the next one.
+ * Optionally a number of sessions is kept started ahead of demand, see {@link #prewarm(int, Executor)}.
+ */
+public class DriverPool {
+    private final String name;
+    private final Supplier<WebDriver> factory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final LinkedList<PooledDriver> idle = new LinkedList<>();
+    private int maxSize;
+    private int total = 0;
+    private long idleTimeoutMillis;
+    private long borrowTimeoutMillis;
+    private boolean closed = false;
+    private int warming = 0;
+    private int waiting = 0;
+    private int prewarmCount = 0;
+    private Executor prewarmExecutor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /**
+     * @param name              used in error messages only
+     * @param factory           starts a new browser session
+     * @param maxSize           maximum number of live sessions (idle + borrowed)
+     * @param idleTimeoutMillis idle sessions older than this are quit by {@link #evictIdle()}
+     * @param borrowTimeoutMillis how long {@link #borrow()} waits for a free slot
+     */
+    public DriverPool(String name, Supplier<WebDriver> factory, int maxSize,
+                      long idleTimeoutMillis, long borrowTimeoutMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1, but was " + maxSize);
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    /**
+     * Hands out an idle, healthy session or starts a new one if the pool is not full.
+     * Blocks while the pool is exhausted.
+     *
+     * @return
+     */
+    public WebDriver borrow() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledDriver candidate = null;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed)
+                        throw new IllegalStateException("Driver pool '" + name + "' is closed.");
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pollFirst();
+                        break;
+                    }
+                    // a session being warmed up is usually ready sooner than a new one
+                    if (waiting >= warming && total < maxSize) {
+                        total++;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        throw new RuntimeException("Timed out after " + borrowTimeoutMillis + " ms waiting for a '"
+                                + name + "' browser session. All " + maxSize + " sessions are in use.");
+                    long start = System.nanoTime();
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } finally {
+                        waiting--;
+                        waitNanos.addAndGet(System.nanoTime() - start);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a '" + name + "' browser session.", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (candidate == null) {
+                misses.incrementAndGet();
+                long start = System.nanoTime();
+                WebDriver created = create();
+                waitNanos.addAndGet(System.nanoTime() - start);
+                topUp();
+                return created;
+            }
+
+            if (isHealthy(candidate.driver)) {
+                hits.incrementAndGet();
+                topUp();
+                return candidate.driver;
+            }
+
+            discard(candidate.driver);
+        }
+    }
+
+    /**
+     * Keeps {@code count} idle sessions started ahead of demand. Sessions are
+     * launched on the given executor and replenished whenever one is borrowed.
+     *
+     * @param count
+     * @param executor
+     */
+    public void prewarm(int count, Executor executor) {
+        lock.lock();
+        try {
+            this.prewarmCount = Math.max(0, count);
+            this.prewarmExecutor = executor;
+        } finally {
+            lock.unlock();
+        }
+        topUp();
+    }
+
+    /**
+     * Returns a session to the pool. Cookies are cleared so the next borrower starts clean.
+     *
+     * @param driver
+     */
+    public void release(WebDriver driver) {
+        if (driver == null)
+            return;
+        try {
+            driver.manage().deleteAllCookies();
+            driver.get("about:blank");
+        } catch (Exception e) {
+            discard(driver);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed || total > maxSize) {
+                total--;
+                available.signal();
+            } else {
+                idle.addFirst(new PooledDriver(driver));
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        quietQuit(driver);
+    }
+
+    /**
+     * Quits a session which is known to be broken and frees its slot.
+     *
+     * @param driver
+     */
+    public void discard(WebDriver driver) {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        quietQuit(driver);
+    }
+
+    /**
+     * Quits sessions which have been idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        List<WebDriver> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Iterator<PooledDriver> it = idle.iterator();
+            int keep = prewarmCount;
+            while (it.hasNext()) {
+                PooledDriver pooled = it.next();
+                if (keep > 0) {
+                    keep--;
+                    continue;
+                }
+                if (now - pooled.lastUsed > idleTimeoutMillis) {
+                    it.remove();
+                    total--;
+                    expired.add(pooled.driver);
+                }
+            }
+            if (!expired.isEmpty())
+                available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (WebDriver driver : expired)
+            quietQuit(driver);
+    }
+
+    /**
+     * Quits every idle session, e.g. because the settings they were started with
+     * changed. Borrowed sessions stay in use; prewarmed ones are started again.
+     */
+    public void clearIdle() {
+        List<WebDriver> drivers = new ArrayList<>();
+        lock.lock();
+        try {
+            for (PooledDriver pooled : idle)
+                drivers.add(pooled.driver);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (WebDriver driver : drivers)
+            quietQuit(driver);
+        topUp();
+    }
+
+    /**
+     * Changes the maximum size. Surplus sessions are quit as they are returned.
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1, but was " + maxSize);
+        List<WebDriver> surplus = new ArrayList<>();
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            while (total > maxSize && !idle.isEmpty()) {
+                surplus.add(idle.pollLast().driver);
+                total--;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (WebDriver driver : surplus)
+            quietQuit(driver);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return total - idle.size() - warming;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of borrows served by an already started session
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of borrows which had to start a browser on the calling thread
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Total time borrowers spent waiting for a session, including starting one on a miss
+     *
+     * @return
+     */
+    public long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    /**
+     * Quits every idle session and rejects further borrows. Borrowed sessions
+     * are quit when they are returned.
+     */
+    public void close() {
+        List<WebDriver> drivers = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledDriver pooled : idle)
+                drivers.add(pooled.driver);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (WebDriver driver : drivers)
+            quietQuit(driver);
+    }
+
+    /**
+     * Schedules background launches until idle plus warming sessions reach the prewarm count.
+     */
+    private void topUp() {
+        int launches = 0;
+        Executor executor;
+        lock.lock();
+        try {
+            executor = prewarmExecutor;
+            if (closed || executor == null)
+                return;
+            while (idle.size() + warming < prewarmCount && total < maxSize) {
+                total++;
+                warming++;
+                launches++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < launches; i++)
+            executor.execute(this::warmUp);
+    }
+
+    private void warmUp() {
+        WebDriver warmed = null;
+        try {
+            warmed = factory.get();
+        } catch (RuntimeException e) {
+            // the next miss reports the problem on the test thread
+        }
+
+        lock.lock();
+        try {
+            warming--;
+            if (warmed != null && !closed) {
+                idle.addLast(new PooledDriver(warmed));
+                warmed = null;
+            } else {
+                total--;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (warmed != null)
+            quietQuit(warmed);
+    }
+
+    private WebDriver create() {
+        try {
+            return factory.get();
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A session is considered healthy if the browser still answers a cheap command.
+     */
+    private boolean isHealthy(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void quietQuit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            // session is already gone
+        }
+    }
+
+    private static class PooledDriver {
+        private final WebDriver driver;
+        private final long lastUsed = System.currentTimeMillis();
+
+        private PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+}
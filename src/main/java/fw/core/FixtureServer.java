@@ -0,0 +1,194 @@
+package fw.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server for HTML fixtures, usable by the fake driver and by real browsers
+ * alike. Serves the files of a directory and pages added with
+ * {@link #serve(String, String)}, on a free port of the loopback address.
+ *
+ * <pre>
+ * try (FixtureServer server = new FixtureServer(Paths.get("src/test/resources/fixtures"))) {
+ *     driver.get(server.getUrl("tables/orders.html"));
+ * }
+ * </pre>
+ */
+public class FixtureServer implements AutoCloseable {
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json; charset=utf-8");
+        CONTENT_TYPES.put("xml", "application/xml; charset=utf-8");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("csv", "text/csv; charset=utf-8");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+    }
+
+    private final Path root;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, byte[]> pages = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Serves only pages added with {@link #serve(String, String)}
+     */
+    public FixtureServer() {
+        this(null);
+    }
+
+    /**
+     * @param root directory whose files are served; may be null
+     */
+    public FixtureServer(Path root) {
+        if (root != null && !Files.isDirectory(root))
+            throw new RuntimeException("Fixture directory '" + root + "' does not exist.");
+        this.root = root == null ? null : root.toAbsolutePath().normalize();
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to start the fixture server.", e);
+        }
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fixture-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Serves the markup at the given path, in preference to a file of the same name
+     *
+     * @param path
+     * @param html
+     * @return
+     */
+    public FixtureServer serve(String path, String html) {
+        pages.put(normalizePath(path), html.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    public String getUrl(String path) {
+        return getBaseUrl() + normalizePath(path);
+    }
+
+    /**
+     * Requests answered so far, including those answered with 404
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                send(exchange, 405, "text/plain; charset=utf-8", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String path = normalizePath(exchange.getRequestURI().getPath());
+            byte[] page = pages.get(path);
+            if (page != null) {
+                send(exchange, 200, CONTENT_TYPES.get("html"), page);
+                return;
+            }
+
+            Path file = resolve(path);
+            if (file == null) {
+                send(exchange, 404, "text/plain; charset=utf-8", ("Not found: /" + path).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            send(exchange, 200, contentType(file.getFileName().toString()), Files.readAllBytes(file));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * File under the root for the path, or null; paths leaving the root are refused
+     */
+    private Path resolve(String path) {
+        if (root == null)
+            return null;
+        Path file = root.resolve(path).normalize();
+        if (!file.startsWith(root))
+            return null;
+        if (Files.isDirectory(file))
+            file = file.resolve("index.html");
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static String contentType(String name) {
+        int dot = name.lastIndexOf('.');
+        String type = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        return type == null ? "application/octet-stream" : type;
+    }
+
+    /**
+     * Path without leading slash, with . and .. segments resolved
+     */
+    private static String normalizePath(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (segment.equals("..")) {
+                if (!segments.isEmpty())
+                    segments.remove(segments.size() - 1);
+            } else if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+}
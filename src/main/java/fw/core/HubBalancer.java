@@ -0,0 +1,393 @@
+package fw.core;
+
+import fw.utilities.ConfigHolder;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spreads remote sessions over several grid hubs. selenium.grid.hub.url takes a comma
+ * separated list; each hub may carry a weight and a session cap:
+ *
+ * <pre>
+ * selenium.grid.hub.url=http://hub1:4444/wd/hub;weight=2;max=20, http://hub2:4444/wd/hub
+ * </pre>
+ * <p>
+ * selenium.grid.strategy picks the hub: least-busy (default) takes the lowest
+ * sessions-to-weight ratio, weighted picks at random in proportion to the weights.
+ * Hubs at their cap are skipped; when all are full the caller waits for a session to
+ * end, up to selenium.grid.acquire.timeout seconds.
+ * <p>
+ * A failed session start is retried on another hub up to selenium.grid.retry.count
+ * times, waiting selenium.grid.retry.backoff ms, doubled after each attempt. After
+ * selenium.grid.breaker.failures consecutive failures a hub is left out for
+ * selenium.grid.breaker.open seconds, then gets one trial session. While every hub
+ * is left out, session requests fail at once instead of waiting.
+ */
+public class HubBalancer {
+    private final List<Hub> hubs;
+    private final boolean weighted;
+    private final int retries;
+    private final long backoffMillis;
+    private final int breakerFailures;
+    private final long breakerOpenMillis;
+    private final long acquireTimeoutMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    HubBalancer(List<Hub> hubs, boolean weighted, int retries, long backoffMillis,
+                int breakerFailures, long breakerOpenMillis, long acquireTimeoutMillis) {
+        if (hubs.isEmpty())
+            throw new IllegalArgumentException("At least one hub is required.");
+        this.hubs = Collections.unmodifiableList(new ArrayList<>(hubs));
+        this.weighted = weighted;
+        this.retries = Math.max(0, retries);
+        this.backoffMillis = Math.max(0, backoffMillis);
+        this.breakerFailures = Math.max(1, breakerFailures);
+        this.breakerOpenMillis = breakerOpenMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        for (Hub hub : this.hubs) {
+            DriverMetrics.registerGauge("hub." + hub.getUrl() + ".active", hub::getActiveSessions);
+            DriverMetrics.registerGauge("hub." + hub.getUrl() + ".available", () -> hub.isAvailable() ? 1 : 0);
+        }
+    }
+
+    /**
+     * Reads the hubs and balancing settings from the configuration
+     *
+     * @param config
+     * @return
+     */
+    public static HubBalancer fromConfig(ConfigHolder config) {
+        String spec = config.getProperty("selenium.grid.hub.url");
+        if (spec == null || spec.trim().isEmpty())
+            throw new RuntimeException("If Grid mode is on, then HUB URL is required. " +
+                    "Provide value for property 'selenium.grid.hub.url'.");
+        int defaultCap = getInt(config, "selenium.grid.hub.max.sessions", 0);
+
+        List<Hub> hubs = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            if (!entry.trim().isEmpty())
+                hubs.add(parseHub(entry.trim(), defaultCap));
+        }
+
+        String strategy = config.getProperty("selenium.grid.strategy");
+        boolean weighted = strategy != null && strategy.trim().equalsIgnoreCase("weighted");
+        if (strategy != null && !strategy.trim().isEmpty() && !weighted
+                && !strategy.trim().equalsIgnoreCase("least-busy"))
+            throw new RuntimeException("Unknown grid strategy '" + strategy + "'. Use 'least-busy' or 'weighted'.");
+
+        return new HubBalancer(hubs, weighted,
+                getInt(config, "selenium.grid.retry.count", 2),
+                getInt(config, "selenium.grid.retry.backoff", 1000),
+                getInt(config, "selenium.grid.breaker.failures", 3),
+                TimeUnit.SECONDS.toMillis(getInt(config, "selenium.grid.breaker.open", 60)),
+                TimeUnit.SECONDS.toMillis(getInt(config, "selenium.grid.acquire.timeout", 300)));
+    }
+
+    public List<Hub> getHubs() {
+        return hubs;
+    }
+
+    /**
+     * Starts a remote session on the best available hub, retrying on other hubs. The
+     * hub's slot is given back when the session is quit or its last window closed.
+     *
+     * @param capabilities
+     * @return
+     */
+    public WebDriver createSession(Capabilities capabilities) {
+        WebDriverException last = null;
+        long backoff = backoffMillis;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0)
+                sleep(backoff);
+            if (attempt > 0)
+                backoff *= 2;
+
+            Hub hub = acquire();
+            try {
+                WebDriver session = new HubSession(this, hub, capabilities);
+                hub.succeeded();
+                return session;
+            } catch (WebDriverException e) {
+                last = e;
+                hub.failed(breakerFailures, breakerOpenMillis);
+                DriverMetrics.increment("session.failed.hub." + hub.getUrl());
+                release(hub);
+            }
+        }
+        throw new RuntimeException("Unable to start a session on any of the hubs " + hubs + " after "
+                + (retries + 1) + " attempts.", last);
+    }
+
+    /**
+     * Takes a slot on the best hub, waiting while every usable hub is at its cap
+     */
+    private Hub acquire() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        lock.lock();
+        try {
+            while (true) {
+                Hub hub = select();
+                if (hub != null) {
+                    hub.active++;
+                    if (hub.openUntil != 0)
+                        hub.trial = true;
+                    return hub;
+                }
+                if (allOpen())
+                    throw new RuntimeException("All grid hubs failed repeatedly and are left out for now: " + hubs + ".");
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new RuntimeException("No grid hub had a free slot within "
+                            + TimeUnit.MILLISECONDS.toSeconds(acquireTimeoutMillis) + " seconds: " + hubs + ".");
+                // also wake up when an open circuit may have become half-open
+                released.awaitNanos(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a grid hub.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Best hub below its cap. A hub whose break is over gets the next session as its
+     * trial, before any load-based choice, so that its circuit can close again.
+     */
+    private Hub select() {
+        List<Hub> candidates = new ArrayList<>();
+        Hub recovering = null;
+        for (Hub hub : hubs) {
+            if (!hub.hasCapacity() || !hub.isAvailable())
+                continue;
+            if (hub.openUntil == 0)
+                candidates.add(hub);
+            else if (recovering == null)
+                recovering = hub;
+        }
+        if (recovering != null || candidates.isEmpty())
+            return recovering;
+
+        if (weighted) {
+            int total = 0;
+            for (Hub hub : candidates)
+                total += hub.weight;
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            for (Hub hub : candidates) {
+                pick -= hub.weight;
+                if (pick < 0)
+                    return hub;
+            }
+        }
+
+        Hub best = null;
+        for (Hub hub : candidates) {
+            if (best == null || (hub.active + 1) / (double) hub.weight < (best.active + 1) / (double) best.weight)
+                best = hub;
+        }
+        return best;
+    }
+
+    private boolean allOpen() {
+        for (Hub hub : hubs) {
+            if (hub.isAvailable() || hub.trial)
+                return false;
+        }
+        return true;
+    }
+
+    void release(Hub hub) {
+        lock.lock();
+        try {
+            hub.active = Math.max(0, hub.active - 1);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Hub parseHub(String entry, int defaultCap) {
+        String[] parts = entry.split(";");
+        int weight = 1;
+        int cap = defaultCap;
+        for (int i = 1; i < parts.length; i++) {
+            String[] option = parts[i].split("=", 2);
+            String key = option[0].trim().toLowerCase(Locale.ROOT);
+            try {
+                if (option.length == 2 && key.equals("weight"))
+                    weight = Integer.parseInt(option[1].trim());
+                else if (option.length == 2 && key.equals("max"))
+                    cap = Integer.parseInt(option[1].trim());
+                else
+                    throw new RuntimeException("Unknown option '" + parts[i].trim() + "' for hub '" + parts[0].trim() + "'.");
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Value '" + option[1] + "' for hub '" + parts[0].trim() + "' is not a number.");
+            }
+        }
+        if (weight < 1)
+            throw new RuntimeException("Weight of hub '" + parts[0].trim() + "' must be at least 1.");
+        try {
+            return new Hub(new URL(parts[0].trim()), weight, cap);
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Hub url '" + parts[0].trim() + "' in property 'selenium.grid.hub.url' is invalid.", e);
+        }
+    }
+
+    private static int getInt(ConfigHolder config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to retry session creation.", e);
+        }
+    }
+
+    /**
+     * One grid hub and its load. Guarded by the balancer's lock, except the circuit
+     * state, which is only read approximately outside of it.
+     */
+    public static final class Hub {
+        private final URL url;
+        private final int weight;
+        private final int maxSessions;
+        private volatile int active;
+        private volatile int consecutiveFailures;
+        private volatile long openUntil;
+        private volatile boolean trial;
+
+        Hub(URL url, int weight, int maxSessions) {
+            this.url = url;
+            this.weight = weight;
+            this.maxSessions = maxSessions;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Session cap, 0 for none
+         *
+         * @return
+         */
+        public int getMaxSessions() {
+            return maxSessions;
+        }
+
+        public int getActiveSessions() {
+            return active;
+        }
+
+        /**
+         * False while the circuit is open after repeated failures
+         *
+         * @return
+         */
+        public boolean isAvailable() {
+            return openUntil == 0 || System.currentTimeMillis() >= openUntil && !trial;
+        }
+
+        private boolean hasCapacity() {
+            return maxSessions <= 0 || active < maxSessions;
+        }
+
+        private void succeeded() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trial = false;
+        }
+
+        private synchronized void failed(int threshold, long openMillis) {
+            consecutiveFailures++;
+            trial = false;
+            if (consecutiveFailures >= threshold)
+                openUntil = System.currentTimeMillis() + openMillis;
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+
+    /**
+     * Remote session that gives its hub slot back when it is quit, or when closing its
+     * last window ended it
+     */
+    private static final class HubSession extends RemoteWebDriver {
+        private final HubBalancer balancer;
+        private final Hub hub;
+        private boolean released;
+
+        private HubSession(HubBalancer balancer, Hub hub, Capabilities capabilities) {
+            super(hub.getUrl(), capabilities);
+            this.balancer = balancer;
+            this.hub = hub;
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                if (isEnded())
+                    release();
+            }
+        }
+
+        private boolean isEnded() {
+            try {
+                return getSessionId() == null || getWindowHandles().isEmpty();
+            } catch (WebDriverException e) {
+                return true;
+            }
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                balancer.release(hub);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package fw.core;
+
+import fw.enums.OperatingSystem;
+
+/**
+ * Where and how new browser sessions are started, resolved from the configuration in
+ * one go. Instances are immutable, so sessions started on prewarm threads use the same
+ * consistent values as the test thread that asked for them.
+ */
+final class LaunchSettings {
+    static final String LOCAL = "local";
+
+    private final String hubUrl;
+    private final HubBalancer balancer;
+    private final OperatingSystem os;
+    private final BrowserProfile profile;
+
+    /**
+     * @param hubUrl   null for local execution
+     * @param balancer hubs of the grid, null for local execution
+     * @param os
+     * @param profile
+     */
+    LaunchSettings(String hubUrl, HubBalancer balancer, OperatingSystem os, BrowserProfile profile) {
+        this.hubUrl = hubUrl;
+        this.balancer = balancer;
+        this.os = os;
+        this.profile = profile;
+    }
+
+    boolean isGrid() {
+        return hubUrl != null;
+    }
+
+    /**
+     * {@link #LOCAL} or the hub URL; sessions of different targets are pooled apart
+     *
+     * @return
+     */
+    String getTarget() {
+        return hubUrl == null ? LOCAL : hubUrl;
+    }
+
+    HubBalancer getBalancer() {
+        return balancer;
+    }
+
+    OperatingSystem getOs() {
+        return os;
+    }
+
+    BrowserProfile getProfile() {
+        return profile;
+    }
+}
@@ -0,0 +1,387 @@
+package fw.core;
+
+import fw.utilities.ConfigHolder;
+import fw.utilities.LatencyHistogram;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Explicit waits with exponential backoff, meant to replace the global implicit wait:
+ * drivers get a 10 s implicit wait unless selenium.implicit.wait says otherwise, and
+ * with it every lookup that finds nothing blocks for that long. While polling, the
+ * implicit wait is set to 0 and afterwards restored to selenium.implicit.wait, or to
+ * the value given to {@link #withImplicitWait(long, TimeUnit)}, so the timeout holds
+ * under any setting. Setting it to 0 saves those two calls per wait.
+ * <p>
+ * Polling starts every selenium.wait.poll.initial ms and the interval grows by
+ * selenium.wait.poll.multiplier up to selenium.wait.poll.max ms, so short waits
+ * return quickly without hammering the browser during long ones. Element-absent
+ * checks return as soon as the element is gone instead of costing a full timeout.
+ * <p>
+ * With selenium.wait.page.ready on, every wait first waits for document.readyState
+ * to be complete and for XHR/fetch requests started through the page to finish; the
+ * request counter is injected into the page on first use.
+ * <p>
+ * The time spent in every wait is recorded per locator (or per label for custom
+ * conditions), see {@link #getHistograms()}.
+ *
+ * <pre>
+ * Waiter wait = new Waiter(driver);
+ * wait.visible(By.id("save")).click();
+ * wait.absent(By.className("spinner"));
+ * </pre>
+ */
+public class Waiter {
+    /**
+     * Installs a counter of pending XHR and fetch requests on the page, once
+     */
+    static final String INSTALL_SCRIPT =
+            "if (window.__fwPending !== undefined) return;"
+            + "window.__fwPending = 0;"
+            + "var done = function() { window.__fwPending = Math.max(0, window.__fwPending - 1); };"
+            + "if (window.XMLHttpRequest) {"
+            + "  var send = XMLHttpRequest.prototype.send;"
+            + "  XMLHttpRequest.prototype.send = function() {"
+            + "    window.__fwPending++;"
+            + "    this.addEventListener('loadend', done);"
+            + "    try { return send.apply(this, arguments); } catch (e) { done(); throw e; } }; }"
+            + "if (window.fetch) {"
+            + "  var fetch = window.fetch;"
+            + "  window.fetch = function() {"
+            + "    window.__fwPending++;"
+            + "    try { var p = fetch.apply(this, arguments); } catch (e) { done(); throw e; }"
+            + "    p.then(done, done); return p; }; }";
+
+    /**
+     * True once the document is loaded and no request counted by the injected hook is pending
+     */
+    static final String READY_SCRIPT =
+            "if (document.readyState !== 'complete') return false;"
+            + "if (arguments[0] && window.__fwPending === undefined) {" + INSTALL_SCRIPT + "}"
+            + "return !window.__fwPending;";
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> TIMEOUTS = new ConcurrentHashMap<>();
+
+    private final WebDriver driver;
+    private long implicitWaitMillis;
+    private long timeoutMillis;
+    private long initialPollMillis;
+    private long maxPollMillis;
+    private double multiplier;
+    private boolean pageReady;
+    private boolean trackRequests;
+
+    /**
+     * Wait for the given driver, configured from the selenium.wait.* properties
+     *
+     * @param driver
+     */
+    public Waiter(WebDriver driver) {
+        this.driver = driver;
+        ConfigHolder config = ConfigHolder.getInstance();
+        this.implicitWaitMillis = TimeUnit.SECONDS.toMillis(getLong(config, "selenium.implicit.wait", 10));
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(getLong(config, "selenium.wait.timeout", 10));
+        this.initialPollMillis = getLong(config, "selenium.wait.poll.initial", 50);
+        this.maxPollMillis = getLong(config, "selenium.wait.poll.max", 1000);
+        this.multiplier = getDouble(config, "selenium.wait.poll.multiplier", 2.0);
+        this.pageReady = isEnabled(config.getProperty("selenium.wait.page.ready"));
+        this.trackRequests = pageReady && isEnabled(config.getProperty("selenium.wait.page.requests"), true);
+    }
+
+    public Waiter withTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Implicit wait of the driver, restored after every wait
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public Waiter withImplicitWait(long timeout, TimeUnit unit) {
+        this.implicitWaitMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @param initialMillis first polling interval
+     * @param maxMillis     upper bound of the polling interval
+     * @param multiplier    growth of the interval after every unsuccessful poll
+     * @return
+     */
+    public Waiter withBackoff(long initialMillis, long maxMillis, double multiplier) {
+        if (initialMillis < 1 || maxMillis < initialMillis || multiplier < 1)
+            throw new IllegalArgumentException("Backoff needs 1 <= initial <= max and multiplier >= 1.");
+        this.initialPollMillis = initialMillis;
+        this.maxPollMillis = maxMillis;
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Waits for document.readyState and, if trackRequests is set, for pending XHR/fetch
+     * requests before every condition
+     *
+     * @param pageReady
+     * @param trackRequests
+     * @return
+     */
+    public Waiter withPageReady(boolean pageReady, boolean trackRequests) {
+        this.pageReady = pageReady;
+        this.trackRequests = pageReady && trackRequests;
+        return this;
+    }
+
+    /**
+     * Polls the condition until it returns something other than null or false. Element
+     * lookups that fail or go stale while polling count as not yet satisfied.
+     *
+     * @param label     name the wait time is recorded under
+     * @param condition
+     * @return the last value of the condition
+     */
+    public <T> T until(String label, Function<WebDriver, T> condition) {
+        if (implicitWaitMillis <= 0)
+            return poll(label, condition);
+        setImplicitWait(0);
+        try {
+            return poll(label, condition);
+        } finally {
+            setImplicitWait(implicitWaitMillis);
+        }
+    }
+
+    private <T> T poll(String label, Function<WebDriver, T> condition) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long poll = initialPollMillis;
+        boolean ready = !pageReady;
+        RuntimeException last = null;
+
+        while (true) {
+            try {
+                if (!ready)
+                    ready = Boolean.TRUE.equals(((JavascriptExecutor) driver).executeScript(READY_SCRIPT, trackRequests));
+                if (ready) {
+                    T value = condition.apply(driver);
+                    if (value != null && !Boolean.FALSE.equals(value)) {
+                        record(HISTOGRAMS, label, start);
+                        return value;
+                    }
+                }
+            } catch (NoSuchElementException | StaleElementReferenceException e) {
+                last = e;
+            }
+
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                record(TIMEOUTS, label, start);
+                throw new TimeoutException("Waited " + timeoutMillis + " ms for '" + label + "'"
+                        + (ready ? "" : " but the page did not become ready") + ".", last);
+            }
+            sleep(Math.min(poll, remaining));
+            poll = Math.min(maxPollMillis, (long) (poll * multiplier));
+        }
+    }
+
+    public <T> T until(Function<WebDriver, T> condition) {
+        return until("condition", condition);
+    }
+
+    /**
+     * Waits for the element to be present in the DOM
+     *
+     * @param locator
+     * @return
+     */
+    public WebElement present(By locator) {
+        return until(locator.toString(), d -> first(d.findElements(locator)));
+    }
+
+    public WebElement visible(By locator) {
+        return until(locator.toString(), d -> {
+            WebElement element = first(d.findElements(locator));
+            return element != null && element.isDisplayed() ? element : null;
+        });
+    }
+
+    public WebElement clickable(By locator) {
+        return until(locator.toString(), d -> {
+            WebElement element = first(d.findElements(locator));
+            return element != null && element.isDisplayed() && element.isEnabled() ? element : null;
+        });
+    }
+
+    /**
+     * Waits for at least one matching element and returns all of them
+     *
+     * @param locator
+     * @return
+     */
+    public List<WebElement> all(By locator) {
+        return until(locator.toString(), d -> {
+            List<WebElement> elements = d.findElements(locator);
+            return elements.isEmpty() ? null : elements;
+        });
+    }
+
+    /**
+     * Waits until no element matches or all matches are hidden. Returns immediately
+     * if that is already the case.
+     *
+     * @param locator
+     */
+    public void absent(By locator) {
+        until("absent " + locator, d -> {
+            for (WebElement element : d.findElements(locator)) {
+                if (element.isDisplayed())
+                    return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Checks once, without waiting, whether an element matches
+     *
+     * @param locator
+     * @return
+     */
+    public boolean isPresent(By locator) {
+        if (implicitWaitMillis <= 0)
+            return !driver.findElements(locator).isEmpty();
+        setImplicitWait(0);
+        try {
+            return !driver.findElements(locator).isEmpty();
+        } finally {
+            setImplicitWait(implicitWaitMillis);
+        }
+    }
+
+    /**
+     * Waits for document.readyState and pending XHR/fetch requests only
+     */
+    public void pageReady() {
+        until("page ready", d -> Boolean.TRUE.equals(((JavascriptExecutor) d).executeScript(READY_SCRIPT, true)));
+    }
+
+    /**
+     * Time spent in successful waits, by locator or label
+     *
+     * @return
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    /**
+     * Time spent in waits that timed out, by locator or label
+     *
+     * @return
+     */
+    public static Map<String, LatencyHistogram> getTimeouts() {
+        return Collections.unmodifiableMap(TIMEOUTS);
+    }
+
+    /**
+     * One line per locator, the most expensive (by total wait time) first
+     *
+     * @return
+     */
+    public static String report() {
+        Map<Long, StringBuilder> lines = new TreeMap<>(Collections.reverseOrder());
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet())
+            append(lines, entry.getKey(), entry.getValue(), "");
+        for (Map.Entry<String, LatencyHistogram> entry : TIMEOUTS.entrySet())
+            append(lines, entry.getKey(), entry.getValue(), " [timed out]");
+        StringBuilder report = new StringBuilder();
+        for (StringBuilder line : lines.values())
+            report.append(line);
+        return report.toString();
+    }
+
+    public static void resetHistograms() {
+        HISTOGRAMS.clear();
+        TIMEOUTS.clear();
+    }
+
+    private static void append(Map<Long, StringBuilder> lines, String label, LatencyHistogram histogram, String suffix) {
+        lines.computeIfAbsent(histogram.getTotalMillis(), key -> new StringBuilder())
+                .append(label).append(suffix).append(": total=").append(histogram.getTotalMillis()).append("ms ")
+                .append(histogram).append(System.lineSeparator());
+    }
+
+    private static void record(Map<String, LatencyHistogram> histograms, String label, long start) {
+        histograms.computeIfAbsent(label, key -> new LatencyHistogram()).record(System.nanoTime() - start);
+    }
+
+    private void setImplicitWait(long millis) {
+        driver.manage().timeouts().implicitlyWait(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static WebElement first(List<WebElement> elements) {
+        return elements.isEmpty() ? null : elements.get(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting.", e);
+        }
+    }
+
+    private static long getLong(ConfigHolder config, String key, long defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
+    }
+
+    private static double getDouble(ConfigHolder config, String key, double defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
+    }
+
+    private static boolean isEnabled(String value) {
+        return isEnabled(value, false);
+    }
+
+    private static boolean isEnabled(String value, boolean defaultValue) {
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        value = value.trim();
+        return value.equalsIgnoreCase("true")
+                || value.equalsIgnoreCase("on")
+                || value.equalsIgnoreCase("yes");
+    }
+}
@@ -4,5 +4,6 @@ public enum BrowserType {
     firefox,
     ie,
     chrome,
-    safari
+    safari,
+    fake
 }
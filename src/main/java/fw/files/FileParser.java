@@ -1,5 +1,399 @@
 package fw.files;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reader for large delimited (CSV) and fixed-width flat files. The file is memory
+ * mapped in chunks that end on a line break; rows are parsed straight from the mapped
+ * bytes and only record field offsets, so no String is created until a value is asked
+ * for. {@link #parallelRows()} parses the chunks concurrently on the common fork-join pool.
+ * <p>
+ * Every line is one record: quoted fields may contain delimiters and doubled quotes,
+ * but not line breaks. Fixed-width positions are counted in bytes.
+ *
+ * <pre>
+ * long active = FileParser.csv("data/accounts.csv")
+ *         .parallelRows()
+ *         .filter(row -&gt; row.fieldEquals("status", "ACTIVE"))
+ *         .count();
+ * </pre>
+ */
 public class FileParser {
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final File file;
+    private final int[] widths;
+    private byte delimiter = ',';
+    private boolean header = true;
+    private Charset charset = StandardCharsets.UTF_8;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile List<String> headers;
+    private Map<String, Integer> columns;
+    private long dataStart;
+
+    private FileParser(String path, int[] widths) {
+        this.file = new File(path);
+        if (!file.exists())
+            throw new RuntimeException("File '" + path + "' does not exist.");
+        this.widths = widths;
+    }
+
+    /**
+     * Comma separated file with a header line
+     *
+     * @param path
+     * @return
+     */
+    public static FileParser csv(String path) {
+        return new FileParser(path, null);
+    }
+
+    /**
+     * Fixed-width file; each field is {@code widths[i]} bytes wide. Without a header line
+     * columns are addressed by index only.
+     *
+     * @param path
+     * @param widths
+     * @return
+     */
+    public static FileParser fixedWidth(String path, int... widths) {
+        FileParser parser = new FileParser(path, widths.clone());
+        parser.header = false;
+        return parser;
+    }
+
+    public FileParser withDelimiter(char delimiter) {
+        if (delimiter > 127)
+            throw new IllegalArgumentException("Delimiter must be an ASCII character.");
+        this.delimiter = (byte) delimiter;
+        this.headers = null;
+        return this;
+    }
+
+    public FileParser withHeader(boolean header) {
+        this.header = header;
+        this.headers = null;
+        return this;
+    }
+
+    public FileParser withCharset(Charset charset) {
+        this.charset = charset;
+        this.headers = null;
+        return this;
+    }
+
+    /**
+     * Approximate size of the mapped chunks, which are also the unit of parallel work
+     *
+     * @param chunkSize
+     * @return
+     */
+    public FileParser withChunkSize(long chunkSize) {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE + ".");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public String getPath() {
+        return file.getPath();
+    }
+
+    /**
+     * Column names from the header line, empty if the file has none
+     *
+     * @return
+     */
+    public List<String> getHeaders() {
+        readHeader();
+        return headers;
+    }
+
+    /**
+     * Index of the given column, compared case-insensitive, or -1
+     *
+     * @param column
+     * @return
+     */
+    public int getColumnIndex(String column) {
+        readHeader();
+        Integer index = column == null ? null : columns.get(column.toLowerCase(Locale.ROOT));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Sequential, lazy stream of the data rows. Closing the stream stops it and drops
+     * its reference to the chunk being read; mapped chunks are unmapped by the garbage
+     * collector once no row refers to them.
+     *
+     * @return
+     */
+    public Stream<FlatRow> rows() {
+        ChunkSpliterator chunks = new ChunkSpliterator(split(), 0);
+        return StreamSupport.stream(chunks, false).onClose(chunks::release);
+    }
+
+    /**
+     * Parallel stream of the data rows; chunks are parsed concurrently and the
+     * encounter order still follows the file
+     *
+     * @return
+     */
+    public Stream<FlatRow> parallelRows() {
+        ChunkSpliterator chunks = new ChunkSpliterator(split(), 0);
+        return StreamSupport.stream(chunks, true).onClose(chunks::release);
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    int[] getWidths() {
+        return widths;
+    }
+
+    private void readHeader() {
+        if (headers != null)
+            return;
+        synchronized (this) {
+            if (headers == null)
+                parseHeader();
+        }
+    }
+
+    private void parseHeader() {
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        long start = 0;
+        if (header) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                long end = nextLineStart(channel, 0);
+                if (end > 0) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                    FlatRow row = parseLine(buffer, 0, (int) end);
+                    for (int i = 0; i < row.size(); i++) {
+                        String name = row.getString(i).trim();
+                        if (i == 0 && name.startsWith("\uFEFF"))
+                            name = name.substring(1);
+                        names.add(name);
+                        if (!name.isEmpty())
+                            index.putIfAbsent(name.toLowerCase(Locale.ROOT), i);
+                    }
+                }
+                start = end;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read header of '" + file + "'.", e);
+            }
+        }
+        this.columns = Collections.unmodifiableMap(index);
+        this.dataStart = start;
+        this.headers = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Splits the data section into [start, end) ranges which end right after a line break
+     */
+    private List<long[]> split() {
+        readHeader();
+        List<long[]> chunks = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            long start = dataStart;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize);
+                chunks.add(new long[]{start, end});
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read '" + file + "'.", e);
+        }
+        return chunks;
+    }
+
+    /**
+     * Position right after the first line break at or after {@code from}, or the file size
+     */
+    private static long nextLineStart(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                return channel.size();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Records the field boundaries of the line [start, end) without copying any bytes
+     */
+    private FlatRow parseLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\n')
+            end--;
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+
+        if (widths != null) {
+            int[] offsets = new int[widths.length * 2];
+            int position = start;
+            for (int i = 0; i < widths.length; i++) {
+                offsets[i * 2] = Math.min(position, end);
+                position += widths[i];
+                offsets[i * 2 + 1] = Math.min(position, end);
+            }
+            return new FlatRow(this, buffer, offsets, widths.length);
+        }
+
+        int[] offsets = new int[16];
+        int count = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for (int i = start; i <= end; i++) {
+            if (i < end) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                    continue;
+                }
+                if (quoted || b != delimiter)
+                    continue;
+            }
+            if (count * 2 + 2 > offsets.length)
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[count * 2] = fieldStart;
+            offsets[count * 2 + 1] = i;
+            count++;
+            fieldStart = i + 1;
+        }
+        return new FlatRow(this, buffer, offsets, count);
+    }
+
+    /**
+     * Maps one chunk at a time and parses it line by line. Splitting hands half of the
+     * remaining chunks to another spliterator.
+     */
+    private final class ChunkSpliterator implements Spliterator<FlatRow> {
+        private final List<long[]> chunks;
+        private int next;
+        private int end;
+        private ByteBuffer current;
+        private int position;
+
+        private ChunkSpliterator(List<long[]> chunks, int next) {
+            this(chunks, next, chunks.size());
+        }
+
+        private ChunkSpliterator(List<long[]> chunks, int next, int end) {
+            this.chunks = chunks;
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super FlatRow> action) {
+            while (true) {
+                if (current == null) {
+                    if (next >= end)
+                        return false;
+                    current = map(chunks.get(next++));
+                    position = 0;
+                }
+                int limit = current.limit();
+                if (position >= limit) {
+                    current = null;
+                    continue;
+                }
+
+                int lineEnd = position;
+                while (lineEnd < limit && current.get(lineEnd) != '\n')
+                    lineEnd++;
+                if (lineEnd < limit)
+                    lineEnd++;
+                int lineStart = position;
+                position = lineEnd;
+
+                if (isBlank(current, lineStart, lineEnd))
+                    continue;
+                action.accept(parseLine(current, lineStart, lineEnd));
+                return true;
+            }
+        }
+
+        @Override
+        public Spliterator<FlatRow> trySplit() {
+            int remaining = end - next;
+            if (remaining < 2)
+                return null;
+            int middle = next + remaining / 2;
+            ChunkSpliterator prefix = new ChunkSpliterator(chunks, next, middle);
+            next = middle;
+            // the chunk in progress stays with the prefix to keep the encounter order
+            prefix.current = current;
+            prefix.position = position;
+            current = null;
+            return prefix;
+        }
+
+        /**
+         * Skips the remaining chunks and lets go of the mapped one
+         */
+        private void release() {
+            current = null;
+            next = end;
+        }
+
+        @Override
+        public long estimateSize() {
+            long bytes = current == null ? 0 : current.limit() - position;
+            for (int i = next; i < end; i++)
+                bytes += chunks.get(i)[1] - chunks.get(i)[0];
+            // assume roughly 100 bytes per line
+            return Math.max(1, bytes / 100);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+
+        private ByteBuffer map(long[] chunk) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to map '" + file + "' at offset " + chunk[0] + ".", e);
+            }
+        }
 
+        private boolean isBlank(ByteBuffer buffer, int start, int end) {
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n' && b != '\r')
+                    return false;
+            }
+            return true;
+        }
+    }
 }
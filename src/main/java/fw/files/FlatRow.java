@@ -0,0 +1,210 @@
+package fw.files;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * One record of a flat file. The row only knows where its fields start and end in the
+ * mapped file; values are decoded when they are read. As a map the row is keyed by
+ * header name (case-insensitive lookup) with String values.
+ * <p>
+ * CSV values are unquoted, fixed-width values are trimmed.
+ */
+public class FlatRow extends AbstractMap<String, Object> {
+    private final FileParser parser;
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+    private final int count;
+
+    FlatRow(FileParser parser, ByteBuffer buffer, int[] offsets, int count) {
+        this.parser = parser;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    /**
+     * Number of fields in this record
+     *
+     * @return
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public String getString(int index) {
+        if (index < 0 || index >= count)
+            return null;
+        int start = offsets[index * 2];
+        int end = offsets[index * 2 + 1];
+
+        if (parser.getWidths() != null) {
+            while (start < end && buffer.get(start) == ' ')
+                start++;
+            while (end > start && buffer.get(end - 1) == ' ')
+                end--;
+            return decode(start, end);
+        }
+
+        if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"')
+            return decode(start + 1, end - 1).replace("\"\"", "\"");
+        return decode(start, end);
+    }
+
+    public String getString(String column) {
+        return getString(parser.getColumnIndex(column));
+    }
+
+    /**
+     * Parses a whole number straight from the bytes, without creating a String. Like
+     * {@link Long#parseLong(String)}, fails if the value does not fit in a long.
+     *
+     * @param index
+     * @return
+     */
+    public long getLong(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Field " + index + " does not exist, the row has " + count + " fields.");
+        int start = offsets[index * 2];
+        int end = offsets[index * 2 + 1];
+        while (start < end && (buffer.get(start) == ' ' || buffer.get(start) == '"'))
+            start++;
+        while (end > start && (buffer.get(end - 1) == ' ' || buffer.get(end - 1) == '"'))
+            end--;
+        if (start == end)
+            throw new NumberFormatException("Field " + index + " is empty.");
+
+        boolean negative = buffer.get(start) == '-';
+        if (negative || buffer.get(start) == '+')
+            start++;
+        if (start == end)
+            throw new NumberFormatException("Field " + index + " is not a whole number: " + getString(index));
+
+        // accumulated negatively, as Long.parseLong does, so Long.MIN_VALUE fits
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("Field " + index + " is not a whole number: " + getString(index));
+            if (value < limit / 10 || value * 10 < limit + digit)
+                throw new NumberFormatException("Field " + index + " is out of the range of a long: " + getString(index));
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    public long getLong(String column) {
+        return getLong(parser.getColumnIndex(column));
+    }
+
+    public double getDouble(int index) {
+        return Double.parseDouble(getString(index).trim());
+    }
+
+    public double getDouble(String column) {
+        return getDouble(parser.getColumnIndex(column));
+    }
+
+    /**
+     * Same as {@code value.equals(getString(index))}, but compares the raw field bytes
+     * with an ASCII value without decoding the field
+     *
+     * @param index
+     * @param value
+     * @return
+     */
+    public boolean fieldEquals(int index, String value) {
+        if (index < 0 || index >= count)
+            return value == null;
+        if (value == null)
+            return false;
+        int start = offsets[index * 2];
+        int end = offsets[index * 2 + 1];
+        if (parser.getWidths() != null) {
+            while (start < end && buffer.get(start) == ' ')
+                start++;
+            while (end > start && buffer.get(end - 1) == ' ')
+                end--;
+        } else if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+            start++;
+            end--;
+            for (int i = start; i < end; i++) {
+                // doubled quotes are unescaped by getString
+                if (buffer.get(i) == '"')
+                    return value.equals(getString(index));
+            }
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 127)
+                return value.equals(getString(index));
+        }
+        if (end - start != value.length())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(start + i) != (byte) value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    public boolean fieldEquals(String column, String value) {
+        return fieldEquals(parser.getColumnIndex(column), value);
+    }
+
+    @Override
+    public Object get(Object column) {
+        return column instanceof String ? getString((String) column) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object column) {
+        return column instanceof String && parser.getColumnIndex((String) column) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        final List<String> headers = parser.getHeaders();
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < count;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        String key = index < headers.size() ? headers.get(index) : String.valueOf(index);
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(key, getString(index));
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, parser.getCharset());
+    }
+}
@@ -1,5 +1,313 @@
 package fw.json;
 
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull-based reader for JSON test data. Values are located by a simple path and read
+ * token by token; everything outside the path is skipped without being built, so
+ * large fixture files can be read with bounded memory.
+ * <p>
+ * Paths use dot notation with optional array indexes, e.g. {@code $.accounts},
+ * {@code $.responses[2].body.items} or just {@code accounts}. {@code $} (or an empty
+ * path) is the root value.
+ *
+ * <pre>
+ * JSONParser parser = new JSONParser("data/accounts.json");
+ * try (Stream&lt;Account&gt; accounts = parser.elements("$.accounts", Account.class)) {
+ *     accounts.forEach(...);
+ * }
+ * </pre>
+ */
 public class JSONParser {
+    private static final Gson GSON = new Gson();
+
+    private final String path;
+
+    public JSONParser(String path) {
+        if (!new File(path).exists())
+            throw new RuntimeException("JSON file '" + path + "' does not exist.");
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Reads the value at the given path as plain Java objects: Map, List, String,
+     * Long, Double, Boolean or null. Returns null if the path does not exist.
+     *
+     * @param jsonPath
+     * @return
+     */
+    public Object read(String jsonPath) {
+        try (JsonReader reader = open()) {
+            if (!navigate(reader, parsePath(jsonPath)))
+                return null;
+            return readValue(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read '" + jsonPath + "' from '" + path + "'.", e);
+        }
+    }
+
+    /**
+     * Maps the value at the given path into the given type. Returns null if the path does not exist.
+     *
+     * @param jsonPath
+     * @param type
+     * @return
+     */
+    public <T> T read(String jsonPath, Type type) {
+        try (JsonReader reader = open()) {
+            if (!navigate(reader, parsePath(jsonPath)))
+                return null;
+            return GSON.fromJson(reader, type);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read '" + jsonPath + "' from '" + path + "'.", e);
+        }
+    }
+
+    /**
+     * Iterates the elements of the array at the given path one at a time, as plain Java objects
+     *
+     * @param arrayPath
+     * @return
+     */
+    public ElementIterator<Object> iterator(String arrayPath) {
+        return new ElementIterator<>(arrayPath, null);
+    }
+
+    /**
+     * Iterates the elements of the array at the given path one at a time, each mapped into the given type
+     *
+     * @param arrayPath
+     * @param type
+     * @return
+     */
+    public <T> ElementIterator<T> iterator(String arrayPath, Type type) {
+        return new ElementIterator<>(arrayPath, type);
+    }
+
+    /**
+     * Lazy stream over the array elements; close it if it is not consumed to the end
+     *
+     * @param arrayPath
+     * @return
+     */
+    public Stream<Object> elements(String arrayPath) {
+        return stream(iterator(arrayPath));
+    }
+
+    public <T> Stream<T> elements(String arrayPath, Class<T> type) {
+        return stream(this.<T>iterator(arrayPath, type));
+    }
+
+    private static <T> Stream<T> stream(ElementIterator<T> it) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                .onClose(it::close);
+    }
+
+    private JsonReader open() throws IOException {
+        Reader in = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8);
+        return new JsonReader(in);
+    }
+
+    /**
+     * Splits a path into member names (String) and array indexes (Integer)
+     */
+    static List<Object> parsePath(String jsonPath) {
+        List<Object> segments = new ArrayList<>();
+        if (jsonPath == null)
+            return segments;
+        String remaining = jsonPath.trim();
+        if (remaining.startsWith("$"))
+            remaining = remaining.substring(1);
+
+        int i = 0;
+        while (i < remaining.length()) {
+            char c = remaining.charAt(i);
+            if (c == '.') {
+                i++;
+            } else if (c == '[') {
+                int end = remaining.indexOf(']', i);
+                if (end < 0)
+                    throw new RuntimeException("Invalid JSON path '" + jsonPath + "': missing ']'.");
+                String index = remaining.substring(i + 1, end).trim();
+                if (index.startsWith("'") || index.startsWith("\""))
+                    segments.add(index.substring(1, index.length() - 1));
+                else
+                    segments.add(Integer.parseInt(index));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < remaining.length() && remaining.charAt(end) != '.' && remaining.charAt(end) != '[')
+                    end++;
+                segments.add(remaining.substring(i, end));
+                i = end;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Advances the reader to the value addressed by the segments, skipping everything else
+     */
+    private static boolean navigate(JsonReader reader, List<Object> segments) throws IOException {
+        for (Object segment : segments) {
+            if (segment instanceof Integer) {
+                if (reader.peek() != JsonToken.BEGIN_ARRAY)
+                    return false;
+                reader.beginArray();
+                for (int i = 0; i < (Integer) segment; i++) {
+                    if (!reader.hasNext())
+                        return false;
+                    reader.skipValue();
+                }
+                if (!reader.hasNext())
+                    return false;
+            } else {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT)
+                    return false;
+                reader.beginObject();
+                boolean found = false;
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals(segment)) {
+                        found = true;
+                        break;
+                    }
+                    reader.skipValue();
+                }
+                if (!found)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext())
+                    object.put(reader.nextName(), readValue(reader));
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext())
+                    array.add(readValue(reader));
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                String number = reader.nextString();
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                    try {
+                        return Long.parseLong(number);
+                    } catch (NumberFormatException e) {
+                        // too large for a long
+                    }
+                }
+                return Double.parseDouble(number);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IOException("Unexpected token " + reader.peek() + " at " + reader.getPath());
+        }
+    }
+
+    /**
+     * Reads one array element per call to next(). The file stays open until the array
+     * is exhausted or the iterator is closed.
+     */
+    public class ElementIterator<T> implements Iterator<T>, Closeable {
+        private final JsonReader reader;
+        private final Type type;
+        private boolean done = false;
+
+        private ElementIterator(String arrayPath, Type type) {
+            this.type = type;
+            try {
+                this.reader = open();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to open '" + path + "'.", e);
+            }
+            try {
+                if (!navigate(reader, parsePath(arrayPath)) || reader.peek() != JsonToken.BEGIN_ARRAY)
+                    throw new RuntimeException("No array found at '" + arrayPath + "' in '" + path + "'.");
+                reader.beginArray();
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e instanceof RuntimeException ? (RuntimeException) e
+                        : new RuntimeException("Unable to read '" + arrayPath + "' from '" + path + "'.", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (done)
+                return false;
+            try {
+                if (reader.hasNext())
+                    return true;
+            } catch (IOException e) {
+                close();
+                throw new RuntimeException("Unable to parse '" + path + "'.", e);
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            try {
+                return type == null ? (T) readValue(reader) : GSON.fromJson(reader, type);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw new RuntimeException("Unable to parse element of '" + path + "'.", e);
+            }
+        }
 
+        @Override
+        public void close() {
+            if (done)
+                return;
+            done = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package fw.td;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Adapts a lazy row source to the Iterator&lt;Object[]&gt; shape expected by a TestNG
+ * DataProvider. Each invocation receives a single argument, the row as a map.
+ * Access is synchronized so the iterator can back a parallel DataProvider, and the
+ * underlying source is closed as soon as it is exhausted.
+ */
+class DataIterator implements Iterator<Object[]>, Closeable {
+    private final Iterator<? extends Map<String, Object>> rows;
+    private final Closeable resource;
+    private boolean closed = false;
+
+    DataIterator(Iterator<? extends Map<String, Object>> rows, Closeable resource) {
+        this.rows = rows;
+        this.resource = resource;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (closed)
+            return false;
+        boolean hasNext;
+        try {
+            hasNext = rows.hasNext();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        if (!hasNext)
+            close();
+        return hasNext;
+    }
+
+    @Override
+    public synchronized Object[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return new Object[]{rows.next()};
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (resource != null)
+                resource.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package fw.td;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Lazy row iterator together with the resources that have to be closed after reading it
+ */
+class RowSource implements Iterator<Map<String, Object>>, Closeable {
+    private final Iterator<? extends Map<String, Object>> rows;
+    private final Closeable[] resources;
+
+    RowSource(Iterator<? extends Map<String, Object>> rows, Closeable... resources) {
+        this.rows = rows;
+        this.resources = resources;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        return rows.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Closeable resource : resources)
+            resource.close();
+    }
+}
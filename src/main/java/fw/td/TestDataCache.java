@@ -0,0 +1,300 @@
+package fw.td;
+
+import fw.files.FlatRow;
+import fw.utilities.ConfigHolder;
+import fw.xls.ExcelRow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Process-wide cache of parsed test data, shared by all test classes and threads.
+ * Entries are keyed by file path, modification time and the part of the file that was
+ * read (sheet name, record element...), so an edited file is parsed again.
+ * <p>
+ * Nothing is parsed up front. The first request for a part streams it with the filter
+ * applied inside the reader, as without a cache. A second request streams it again and
+ * records every row while the test consumes it; once that iteration reaches the end,
+ * the recorded rows become the cache entry and later requests iterate them.
+ * <p>
+ * The cache is bounded by entry count (testdata.cache.max.entries, default 32) and by
+ * the total number of cached rows (testdata.cache.max.rows, default 200000); least
+ * recently used entries are evicted first. Rows are held through soft references, so
+ * the garbage collector may drop entries under memory pressure. Sources with more rows
+ * than the row budget stop being recorded and keep being streamed.
+ * <p>
+ * Recorded rows are deep copies into unmodifiable maps and lists, so tests cannot
+ * change each other's data, and cached CSV rows do not keep the mapped file open.
+ * Copies of Excel and CSV rows look up columns ignoring case, first header first,
+ * as the rows read from the file do.
+ */
+class TestDataCache {
+    private static final TestDataCache INSTANCE = new TestDataCache();
+
+    private final LinkedHashMap<Key, SoftReference<List<Map<String, Object>>>> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Key> requested = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<Key> oversized = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final int maxEntries;
+    private final long maxRows;
+    private final boolean enabled;
+    private long cachedRows = 0;
+
+    private TestDataCache() {
+        ConfigHolder config = ConfigHolder.getInstance();
+        this.maxEntries = getInt(config, "testdata.cache.max.entries", 32);
+        this.maxRows = getInt(config, "testdata.cache.max.rows", 200000);
+        String value = config.getProperty("testdata.cache.enabled");
+        this.enabled = value == null || value.trim().isEmpty()
+                || value.trim().equalsIgnoreCase("true")
+                || value.trim().equalsIgnoreCase("on")
+                || value.trim().equalsIgnoreCase("yes");
+    }
+
+    static TestDataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lazy rows of the given file part accepted by the filter: from the cache, from a
+     * recording read of the source, or streamed from the source with the filter pushed
+     * into the reader
+     *
+     * @param path
+     * @param part   identifies what is read from the file, e.g. the sheet name
+     * @param opener opens the rows of the part, applying the given filter; the filter
+     *               is null when every row is needed for recording
+     * @param filter may be null
+     * @return
+     */
+    Iterator<Object[]> open(String path, String part,
+                            Function<Predicate<? super Map<String, Object>>, RowSource> opener,
+                            Predicate<? super Map<String, Object>> filter) {
+        Key key = enabled ? new Key(path, part) : null;
+        if (key != null) {
+            List<Map<String, Object>> rows = lookup(key);
+            if (rows != null)
+                return new DataIterator(TestDataFactory.filter(rows.iterator(), filter), null);
+            if (!oversized.contains(key) && !requested.add(key)) {
+                Recorder recorder = new Recorder(key, opener.apply(null));
+                return new DataIterator(TestDataFactory.filter(recorder, filter), recorder);
+            }
+        }
+        RowSource rows = opener.apply(filter);
+        return new DataIterator(rows, rows);
+    }
+
+    /**
+     * Drops every cached entry
+     */
+    synchronized void clear() {
+        entries.clear();
+        requested.clear();
+        oversized.clear();
+        cachedRows = 0;
+    }
+
+    private synchronized List<Map<String, Object>> lookup(Key key) {
+        SoftReference<List<Map<String, Object>>> reference = entries.get(key);
+        if (reference == null)
+            return null;
+        List<Map<String, Object>> rows = reference.get();
+        if (rows == null) {
+            // collected under memory pressure; the row count is no longer known exactly
+            entries.remove(key);
+            recount();
+        }
+        return rows;
+    }
+
+    private synchronized void store(Key key, List<Map<String, Object>> rows) {
+        SoftReference<List<Map<String, Object>>> previous = entries.put(key, new SoftReference<>(rows));
+        if (previous != null && previous.get() != null)
+            cachedRows -= previous.get().size();
+        cachedRows += rows.size();
+
+        Iterator<Map.Entry<Key, SoftReference<List<Map<String, Object>>>>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maxEntries || cachedRows > maxRows)) {
+            Map.Entry<Key, SoftReference<List<Map<String, Object>>>> eldest = it.next();
+            if (eldest.getKey().equals(key))
+                continue;
+            List<Map<String, Object>> evicted = eldest.getValue().get();
+            cachedRows -= evicted == null ? 0 : evicted.size();
+            it.remove();
+        }
+    }
+
+    private void recount() {
+        cachedRows = 0;
+        for (SoftReference<List<Map<String, Object>>> reference : entries.values()) {
+            List<Map<String, Object>> rows = reference.get();
+            cachedRows += rows == null ? 0 : rows.size();
+        }
+    }
+
+    /**
+     * Unmodifiable copy of the row; nested maps and lists are copied as well
+     */
+    private static Map<String, Object> copy(Map<String, ?> row) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : row.entrySet())
+            copy.putIfAbsent(entry.getKey(), copyValue(entry.getValue()));
+        if (row instanceof ExcelRow || row instanceof FlatRow)
+            return new HeaderRow(copy);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                copy.put(String.valueOf(entry.getKey()), copyValue(entry.getValue()));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (List<?>) value)
+                copy.add(copyValue(element));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private static int getInt(ConfigHolder config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
+    }
+
+    /**
+     * Passes the rows of a source through, keeping them; stores them when the source
+     * is exhausted. Gives up recording when the row budget is exceeded.
+     */
+    private final class Recorder implements Iterator<Map<String, Object>>, Closeable {
+        private final Key key;
+        private final RowSource source;
+        private List<Map<String, Object>> rows = new ArrayList<>();
+
+        private Recorder(Key key, RowSource source) {
+            this.key = key;
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = source.hasNext();
+            if (!hasNext && rows != null) {
+                store(key, Collections.unmodifiableList(rows));
+                rows = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            Map<String, Object> row = copy(source.next());
+            if (rows != null) {
+                if (rows.size() >= maxRows) {
+                    oversized.add(key);
+                    rows = null;
+                } else {
+                    rows.add(row);
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // an iteration left early recorded only part of the rows
+            rows = null;
+            source.close();
+        }
+    }
+
+    /**
+     * Read-only row in column order whose lookup ignores case; of headers differing
+     * only in case, the first one wins
+     */
+    private static final class HeaderRow extends AbstractMap<String, Object> {
+        private final Map<String, Object> values;
+        private final Map<String, String> headers = new HashMap<>();
+
+        private HeaderRow(Map<String, Object> values) {
+            this.values = values;
+            for (String header : values.keySet())
+                headers.putIfAbsent(header.toLowerCase(Locale.ROOT), header);
+        }
+
+        @Override
+        public Object get(Object header) {
+            String key = header instanceof String ? headers.get(((String) header).toLowerCase(Locale.ROOT)) : null;
+            return key == null ? null : values.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object header) {
+            return header instanceof String && headers.containsKey(((String) header).toLowerCase(Locale.ROOT));
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return Collections.unmodifiableMap(values).entrySet();
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final String part;
+
+        private Key(String path, String part) {
+            File file = new File(path);
+            String canonical;
+            try {
+                canonical = file.getCanonicalPath();
+            } catch (IOException e) {
+                canonical = file.getAbsolutePath();
+            }
+            this.path = canonical;
+            this.lastModified = file.lastModified();
+            this.part = part == null ? "" : part.toLowerCase();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return lastModified == other.lastModified && path.equals(other.path) && part.equals(other.part);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, part);
+        }
+    }
+}
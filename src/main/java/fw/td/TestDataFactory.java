@@ -1,5 +1,263 @@
 package fw.td;
 
+import fw.files.FileParser;
+import fw.files.FlatRow;
+import fw.json.JSONParser;
+import fw.xls.ExcelReader;
+import fw.xls.ExcelSheet;
+import fw.xml.XMLParser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Single entry point for data-driven tests. Every source is exposed as a lazy
+ * Iterator&lt;Object[]&gt; that can be returned directly from a TestNG DataProvider,
+ * including {@code @DataProvider(parallel = true)}. Each test invocation receives one
+ * argument, the row as a {@code Map<String, Object>} keyed by column name.
+ *
+ * <pre>
+ * &#64;DataProvider(parallel = true)
+ * public Iterator&lt;Object[]&gt; accounts() {
+ *     return TestDataFactory.fromExcel("data/accounts.xlsx", "Accounts",
+ *             TestDataFactory.hasTag("Tags", "smoke"));
+ * }
+ *
+ * &#64;Test(dataProvider = "accounts")
+ * public void login(Map&lt;String, Object&gt; row) { ... }
+ * </pre>
+ *
+ * Filters are applied inside the reader, so rejected rows never reach TestNG.
+ * Sources read more than once are kept in a process-wide cache (see TestDataCache),
+ * so classes reading the same sheet share one parse.
+ */
 public class TestDataFactory {
 
+    private TestDataFactory() {
+    }
+
+    /**
+     * All data rows of an Excel sheet
+     *
+     * @param path
+     * @param sheet
+     * @return
+     */
+    public static Iterator<Object[]> fromExcel(String path, String sheet) {
+        return fromExcel(path, sheet, null);
+    }
+
+    /**
+     * Data rows of an Excel sheet accepted by the filter
+     *
+     * @param path
+     * @param sheet
+     * @param filter may be null
+     * @return
+     */
+    public static Iterator<Object[]> fromExcel(String path, String sheet, Predicate<? super Map<String, Object>> filter) {
+        return TestDataCache.getInstance().open(path, "sheet:" + sheet, f -> openExcel(path, sheet, f), filter);
+    }
+
+    /**
+     * All objects of the JSON array at the given path, e.g. {@code $.accounts}
+     *
+     * @param path
+     * @param arrayPath
+     * @return
+     */
+    public static Iterator<Object[]> fromJson(String path, String arrayPath) {
+        return fromJson(path, arrayPath, null);
+    }
+
+    /**
+     * Objects of the JSON array at the given path accepted by the filter. Elements are
+     * parsed one at a time and rejected ones are dropped before they reach TestNG.
+     *
+     * @param path
+     * @param arrayPath
+     * @param filter may be null
+     * @return
+     */
+    public static Iterator<Object[]> fromJson(String path, String arrayPath, Predicate<? super Map<String, Object>> filter) {
+        return TestDataCache.getInstance().open(path, "json:" + arrayPath, f -> openJson(path, arrayPath, f), filter);
+    }
+
+    /**
+     * All elements of an XML file matching the selector, e.g. {@code //account}, see
+     * {@link XMLParser#records(String)} for the keys of each row
+     *
+     * @param path
+     * @param selector
+     * @return
+     */
+    public static Iterator<Object[]> fromXml(String path, String selector) {
+        return fromXml(path, selector, null);
+    }
+
+    /**
+     * Elements of an XML file matching the selector and accepted by the filter
+     *
+     * @param path
+     * @param selector
+     * @param filter may be null
+     * @return
+     */
+    public static Iterator<Object[]> fromXml(String path, String selector, Predicate<? super Map<String, Object>> filter) {
+        return TestDataCache.getInstance().open(path, "xml:" + selector, f -> openXml(path, selector, f), filter);
+    }
+
+    /**
+     * All records of a comma separated file with a header line
+     *
+     * @param path
+     * @return
+     */
+    public static Iterator<Object[]> fromCsv(String path) {
+        return fromCsv(path, null);
+    }
+
+    /**
+     * Records of a comma separated file accepted by the filter. Fields of rejected
+     * records are never decoded unless the filter reads them.
+     *
+     * @param path
+     * @param filter may be null
+     * @return
+     */
+    public static Iterator<Object[]> fromCsv(String path, Predicate<? super Map<String, Object>> filter) {
+        return TestDataCache.getInstance().open(path, "csv", f -> openCsv(path, f), filter);
+    }
+
+    /**
+     * Drops all parsed test data held in the shared cache
+     */
+    public static void clearCache() {
+        TestDataCache.getInstance().clear();
+    }
+
+    /**
+     * Accepts rows whose column equals the value, compared as trimmed text ignoring case
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public static Predicate<Map<String, Object>> columnEquals(String column, Object value) {
+        final String expected = value == null ? null : asText(value);
+        return row -> {
+            Object actual = row.get(column);
+            if (actual == null || asText(actual).isEmpty())
+                return expected == null || expected.isEmpty();
+            return expected != null && asText(actual).equalsIgnoreCase(expected);
+        };
+    }
+
+    /**
+     * Accepts rows whose tag column contains the tag. Tags are separated by comma,
+     * semicolon or whitespace and compared ignoring case.
+     *
+     * @param column
+     * @param tag
+     * @return
+     */
+    public static Predicate<Map<String, Object>> hasTag(String column, String tag) {
+        return row -> {
+            Object tags = row.get(column);
+            if (tags == null)
+                return false;
+            return Arrays.stream(asText(tags).split("[,;\\s]+"))
+                    .anyMatch(candidate -> candidate.equalsIgnoreCase(tag.trim()));
+        };
+    }
+
+    /**
+     * Accepts rows flagged for execution in the given column (Y, Yes, True or 1)
+     *
+     * @param column
+     * @return
+     */
+    public static Predicate<Map<String, Object>> isExecutable(String column) {
+        return row -> {
+            Object flag = row.get(column);
+            if (flag == null)
+                return false;
+            String text = asText(flag);
+            return text.equalsIgnoreCase("y") || text.equalsIgnoreCase("yes")
+                    || text.equalsIgnoreCase("true") || text.equals("1");
+        };
+    }
+
+    private static String asText(Object value) {
+        if (value instanceof Double && (Double) value == Math.rint((Double) value))
+            return Long.toString(((Double) value).longValue());
+        return value.toString().trim();
+    }
+
+    private static RowSource openExcel(String path, String sheet, Predicate<? super Map<String, Object>> filter) {
+        ExcelReader reader = new ExcelReader(path);
+        try {
+            ExcelSheet.RowIterator rows = reader.getSheet(sheet).iterator(filter);
+            return new RowSource(rows, rows, reader);
+        } catch (RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RowSource openJson(String path, String arrayPath, Predicate<? super Map<String, Object>> filter) {
+        JSONParser.ElementIterator<Object> elements = new JSONParser(path).iterator(arrayPath);
+        Iterator<Map<String, Object>> rows = map(elements, element -> {
+            if (!(element instanceof Map))
+                throw new RuntimeException("Elements of '" + arrayPath + "' in '" + path
+                        + "' must be JSON objects, found: " + element);
+            return (Map<String, Object>) element;
+        });
+        return new RowSource(filter(rows, filter), elements);
+    }
+
+    private static RowSource openXml(String path, String selector, Predicate<? super Map<String, Object>> filter) {
+        XMLParser.MatchIterator<Map<String, String>> records = new XMLParser(path).records(selector);
+        Iterator<Map<String, Object>> rows = map(records, Collections::unmodifiableMap);
+        return new RowSource(filter(rows, filter), records);
+    }
+
+    private static RowSource openCsv(String path, Predicate<? super Map<String, Object>> filter) {
+        Stream<FlatRow> rows = FileParser.csv(path).rows();
+        if (filter != null)
+            rows = rows.filter(filter::test);
+        return new RowSource(map(rows.iterator(), row -> row), rows::close);
+    }
+
+    private static <T> Iterator<Map<String, Object>> map(Iterator<T> source,
+                                                         Function<? super T, Map<String, Object>> mapper) {
+        return new Iterator<Map<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return mapper.apply(source.next());
+            }
+        };
+    }
+
+    static Iterator<Map<String, Object>> filter(Iterator<Map<String, Object>> rows,
+                                                Predicate<? super Map<String, Object>> filter) {
+        if (filter == null)
+            return rows;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+                .filter(filter::test).iterator();
+    }
 }
@@ -0,0 +1,14 @@
+package fw.utilities;
+
+import java.util.Set;
+
+/**
+ * Notified by {@link ConfigHolder} after a reload changed one or more property values.
+ */
+public interface ConfigChangeListener {
+
+    /**
+     * @param changedKeys lower-cased names of properties which were added, removed or changed
+     */
+    void configChanged(Set<String> changedKeys);
+}
@@ -4,32 +4,180 @@ package fw.utilities;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Configuration read from config.properties, the environment properties file named by
+ * test.env and the system properties. Keys are case-insensitive. File values are read
+ * into a snapshot at start-up and on {@link #reload()}; system properties are never
+ * copied into it but looked up live, so a property set while the tests run is seen at
+ * once. Values written as ENC(...) are decrypted on first lookup.
+ */
 public class ConfigHolder {
+    private static final Logger LOG = Logger.getLogger(ConfigHolder.class.getName());
+    // decrypted ENC(...) values by cipher text, kept across reloads, and the system
+    // property names; declared before INSTANCE
+    private static final Map<String, String> DECRYPTED = new ConcurrentHashMap<>();
+    private static volatile SystemKeys systemKeys = new SystemKeys(-1, Collections.emptyMap());
     private static final ConfigHolder INSTANCE = new ConfigHolder();
-    private static Properties configProp;
-    private static Properties testProp;
+    private volatile Snapshot snapshot;
+    private volatile Map<String, Object> propIndex = Collections.emptyMap();
     private Properties prop = null;
+    private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private Thread watcher;
 
 
     private ConfigHolder(){
         // Singleton
+        this.snapshot = load();
 
-        //Initialize the required files
+        String watch = getProperty("config.watch.enabled");
+        if (watch != null && (watch.trim().equalsIgnoreCase("true")
+                || watch.trim().equalsIgnoreCase("on")
+                || watch.trim().equalsIgnoreCase("yes")))
+            startWatching();
+    }
+
+    /**
+     * Re-reads config.properties and the environment properties file and swaps in a new
+     * snapshot. Lookups made before the reload keep working against the old snapshot.
+     * Listeners are notified if any file value or system property changed since the
+     * previous load.
+     */
+    public void reload() {
+        Set<String> changed;
+        synchronized (this) {
+            Snapshot previous = this.snapshot;
+            Snapshot next = load();
+            this.snapshot = next;
+            changed = previous.diff(next);
+        }
+        if (changed.isEmpty())
+            return;
+        for (ConfigChangeListener listener : listeners) {
+            try {
+                listener.configChanged(changed);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Configuration listener " + listener + " failed.", e);
+            }
+        }
+    }
+
+    public void addChangeListener(ConfigChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ConfigChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Watches the config directory and reloads whenever a properties file in it changes.
+     * Also enabled on start-up by setting 'config.watch.enabled'. A file which fails to
+     * parse is reported and the previous snapshot stays in effect.
+     */
+    public synchronized void startWatching() {
+        if (watcher != null)
+            return;
+        Path directory = new File(getConfigDirectory()).toPath();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to watch config directory '" + directory + "'.", e);
+        }
+
+        final WatchService service = watchService;
+        watcher = new Thread(() -> watch(service), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher == null)
+            return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        watcher = null;
+        watchService = null;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean relevant = key.pollEvents().stream()
+                        .anyMatch(event -> event.context().toString().endsWith(".properties"));
+                key.reset();
+                if (!relevant)
+                    continue;
+
+                // editors often write a file in several steps, wait for them to settle
+                TimeUnit.MILLISECONDS.sleep(200);
+                WatchKey next;
+                while ((next = service.poll()) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Configuration reload failed, keeping previous values.", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher stopped
+        }
+    }
+
+    private static String getConfigDirectory() {
+        return System.getProperty("user.dir")+ File.separator + "src" + File.separator
+                + "test" + File.separator + "resources" + File.separator + "config";
+    }
+
+    /**
+     * Initialize the required files
+     *
+     * @return
+     */
+    private static Snapshot load() {
         try {
-            String configFilePath = System.getProperty("user.dir")+ File.separator + "src" + File.separator
-                    + "test" + File.separator + "resources" + File.separator + "config" + File.separator
-                    + "config.properties";
+            String configFilePath = getConfigDirectory() + File.separator + "config.properties";
 
             File config = new File(configFilePath);
             if(!config.exists())
                 throw new RuntimeException("Properties file '" + configFilePath +"' does not exist.");
 
-            configProp = new Properties();
-            configProp.load(new FileInputStream(configFilePath));
+            Properties configProp = new Properties();
+            try (InputStream in = new FileInputStream(configFilePath)) {
+                configProp.load(in);
+            }
 
             String  env = System.getProperty("test.env");
             if(env == null || env.trim().isEmpty())
@@ -40,15 +188,18 @@ public class ConfigHolder {
 
             env = env.trim();
 
-            String testFilePath = System.getProperty("user.dir")+ File.separator + "src" + File.separator
-                    + "test" + File.separator + "resources" + File.separator + "config" + File.separator
-                    + env + ".properties";
+            String testFilePath = getConfigDirectory() + File.separator + env + ".properties";
             File file = new File(testFilePath);
             if(!file.exists())
                 throw new RuntimeException("Properties file '" + testFilePath +"' does not exist.");
-            testProp = new Properties();
-            testProp.load(new FileInputStream(testFilePath));
+            Properties testProp = new Properties();
+            try (InputStream in = new FileInputStream(testFilePath)) {
+                testProp.load(in);
+            }
 
+            return new Snapshot(configProp, testProp, System.getProperties());
+        }catch(RuntimeException e){
+            throw e;
         }catch(Exception e){
             throw new RuntimeException(e);
         }
@@ -59,16 +210,21 @@ public class ConfigHolder {
     }
 
     public void setProp(Properties prop) {
+        Map<String, Object> index = new HashMap<>();
+        if (prop != null) {
+            for (Object tempKey : prop.keySet())
+                index.putIfAbsent(normalize((String) tempKey), tempKey);
+        }
         this.prop = prop;
+        this.propIndex = index;
     }
 
     public Object get(String key){
+        if (key == null || this.prop == null)
+            return null;
         //search for keys case-insensitive
-        for(Object tempKey : this.prop.keySet()){
-            if(((String) tempKey).equalsIgnoreCase(key))
-                return this.prop.get(tempKey);
-        }
-        return null;
+        Object tempKey = this.propIndex.get(normalize(key));
+        return tempKey == null ? this.prop.get(key) : this.prop.get(tempKey);
     }
 
     public static ConfigHolder getInstance() {
@@ -95,38 +251,145 @@ public class ConfigHolder {
     }
 
     /** Call this function to decide whether to look for values  in configPath
-     * properties or include system properties
+     * properties or include system properties. Keys are case-insensitive. System
+     * properties are read live and take precedence; file values come from the snapshot
+     * taken at start-up or by the last {@link #reload()}. Values written as ENC(...)
+     * are returned decrypted; a value that cannot be decrypted fails naming its key.
      * @author bmani
      * @param key
      * @param includeSystemProperty
      * @return
      */
     public String getProperty(String key, boolean includeSystemProperty){
-        String value = null;
-        if(includeSystemProperty && System.getProperties().containsKey(key)) {
-            value = System.getProperty(key);
-            if (value != null && !value.trim().isEmpty())
-                return value;
+        String value = lookup(key, includeSystemProperty);
+        return value == null ? null : decrypt(key, value);
+    }
+
+    /**
+     * Value as written, ENC(...) values still encrypted
+     */
+    private String lookup(String key, boolean includeSystemProperty) {
+        if (key == null)
+            return null;
+        String value = includeSystemProperty ? getSystemProperty(key) : null;
+        return value != null ? value : this.snapshot.values.get(normalize(key));
+    }
+
+    /**
+     * Live system property, by its exact key or else ignoring case. The names are
+     * indexed again whenever the number of system properties changed.
+     */
+    private static String getSystemProperty(String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            Properties system = System.getProperties();
+            SystemKeys keys = systemKeys;
+            if (keys.count != system.size())
+                systemKeys = keys = SystemKeys.of(system);
+            String name = keys.names.get(normalize(key));
+            if (name != null)
+                value = System.getProperty(name);
+        }
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+
+    /**
+     * Returns the value itself unless it is written as ENC(...), see
+     * {@link Cryptography#main(String[])}. Plain texts are cached by cipher text, so
+     * the keystore named by the crypto.keystore.* properties is read once per value.
+     */
+    private String decrypt(String key, String value) {
+        String trimmed = value.trim();
+        if (!trimmed.startsWith("ENC(") || !trimmed.endsWith(")"))
+            return value;
+        String cipherText = trimmed.substring(4, trimmed.length() - 1).trim();
+        String plain = DECRYPTED.get(cipherText);
+        if (plain == null) {
+            try {
+                plain = Cryptography.decryptValue(
+                        Cryptography.getKeyPair(name -> lookup(name, true)).getPrivate(), cipherText);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Unable to decrypt value of property '" + key + "'.", e);
+            }
+            DECRYPTED.put(cipherText, plain);
+        }
+        return plain;
+    }
+
+    /**
+     * Keys are compared case-insensitive. toLowerCase returns the same instance
+     * when the key is already lower case, so the common lookup does not allocate.
+     */
+    private static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable, merged view of the properties files. config.properties takes precedence
+     * over the environment file; blank values are skipped so that the environment file
+     * can still supply them. The system properties seen at load time are kept only to
+     * tell listeners what changed.
+     */
+    private static final class Snapshot {
+        private final Map<String, String> values;
+        private final Map<String, String> system;
+
+        private Snapshot(Properties configProp, Properties testProp, Properties systemProp) {
+            Map<String, String> merged = new HashMap<>();
+            merge(merged, testProp);
+            merge(merged, configProp);
+            Map<String, String> system = new HashMap<>();
+            merge(system, systemProp);
+            this.values = Collections.unmodifiableMap(merged);
+            this.system = Collections.unmodifiableMap(system);
+        }
+
+        private Set<String> diff(Snapshot other) {
+            Set<String> changed = new HashSet<>();
+            diff(values, other.values, changed);
+            diff(system, other.system, changed);
+            return changed;
         }
 
-        if(configProp != null){
-            value = (String) configProp.getProperty(key);
-            if (value != null && !value.trim().isEmpty())
-                return value;
+        private static void diff(Map<String, String> before, Map<String, String> after, Set<String> changed) {
+            for (Map.Entry<String, String> entry : before.entrySet()) {
+                if (!entry.getValue().equals(after.get(entry.getKey())))
+                    changed.add(entry.getKey());
+            }
+            for (String key : after.keySet()) {
+                if (!before.containsKey(key))
+                    changed.add(key);
+            }
+        }
+
+        private static void merge(Map<String, String> target, Properties source) {
+            for (String key : source.stringPropertyNames()) {
+                String value = source.getProperty(key);
+                if (value != null && !value.trim().isEmpty())
+                    target.put(normalize(key), value);
+            }
+        }
+    }
+
+    /**
+     * System property names by their lower case form, first name wins
+     */
+    private static final class SystemKeys {
+        private final int count;
+        private final Map<String, String> names;
+
+        private SystemKeys(int count, Map<String, String> names) {
+            this.count = count;
+            this.names = names;
         }
 
-        if(testProp != null){
-            value = (String) testProp.getProperty(key);
-            if (value != null && !value.trim().isEmpty())
-                return value;
+        private static SystemKeys of(Properties system) {
+            int count = system.size();
+            Map<String, String> names = new HashMap<>();
+            for (String name : system.stringPropertyNames())
+                names.putIfAbsent(normalize(name), name);
+            return new SystemKeys(count, names);
         }
-//
-//        //search for keys case-insensitive
-//        for(Object tempKey : this.prop.keySet()) {
-//            if (((String) tempKey).equalsIgnoreCase(key))
-//                return this.prop.getProperty((String)tempKey);
-//        }
-        return null;
     }
 
     public static void main(String[] args) {
@@ -1,51 +1,386 @@
 package fw.utilities;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * RSA encryption of test secrets.
+ * <p>
+ * Keys are read from a PKCS12 (or .jks) keystore once and cached, see
+ * {@link #loadKeyPair(Path, char[], String, char[])}. The configured key pair comes
+ * from crypto.keystore.path, crypto.keystore.password (or the environment variable
+ * CRYPTO_KEYSTORE_PASSWORD), crypto.keystore.alias and crypto.key.password. Create
+ * one with:
+ *
+ * <pre>
+ * keytool -genkeypair -alias fw -keyalg RSA -keysize 2048 -storetype PKCS12 -keystore secrets.p12
+ * </pre>
+ * <p>
+ * Plain RSA only takes messages up to the key size minus padding. The hybrid methods
+ * take any size: each message gets a fresh AES-256 key, the data is sealed with
+ * AES-GCM and the AES key is wrapped with RSA-OAEP (SHA-256).
+ * <p>
+ * A whole credentials file, written with {@link #encryptFile(Path, Path, PublicKey)},
+ * is decrypted once by {@link #loadSecrets(Path, PrivateKey)}; afterwards
+ * {@link #getSecret(String)} is a map read. Ciphers are cached per thread.
+ */
 public class Cryptography {
-	
+    private static final String RSA = "RSA";
+    private static final String RSA_OAEP = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+    private static final String AES_GCM = "AES/GCM/NoPadding";
+    private static final OAEPParameterSpec OAEP_SPEC = new OAEPParameterSpec("SHA-256", "MGF1",
+            MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+    private static final byte VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int AES_KEY_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+    private static final Map<String, KeyPair> KEY_PAIRS = new ConcurrentHashMap<>();
+    private static final Map<String, String> SECRETS = new ConcurrentHashMap<>();
+    private static volatile boolean secretsLoaded = false;
+
+    /**
+     * Without arguments, shows plain RSA with a new key pair. With the configured key pair:
+     * <ul>
+     * <li>encrypt &lt;value&gt; - prints the value as ENC(...) for a properties file</li>
+     * <li>encrypt-file &lt;source&gt; &lt;target&gt; - writes an encrypted credentials file</li>
+     * </ul>
+     */
     public static void main(String [] args) throws Exception {
+        if (args.length == 2 && args[0].equals("encrypt")) {
+            System.out.println("ENC(" + encryptValue(getKeyPair().getPublic(), args[1]) + ")");
+            return;
+        }
+        if (args.length == 3 && args[0].equals("encrypt-file")) {
+            encryptFile(Paths.get(args[1]), Paths.get(args[2]), getKeyPair().getPublic());
+            return;
+        }
+
         // generate public and private keys
         KeyPair keyPair = buildKeyPair();
         PublicKey pubKey = keyPair.getPublic();
         PrivateKey privateKey = keyPair.getPrivate();
-        
+
         System.out.println("Public Key: " + pubKey.getEncoded());
         System.out.println("private Key: " + privateKey.getEncoded());
-        
+
         // encrypt the message
-        byte [] encrypted = encrypt(privateKey, "This is a secret message");     
+        byte [] encrypted = encrypt(privateKey, "This is a secret message");
         System.out.println("Encoded: " + new String(encrypted));  // <<encrypted message>>
-        
+
         // decrypt the message
-        byte[] secret = decrypt(pubKey, encrypted);                                 
+        byte[] secret = decrypt(pubKey, encrypted);
         System.out.println(new String(secret));     // This is a secret message
     }
 
     public static KeyPair buildKeyPair() throws NoSuchAlgorithmException {
         final int keySize = 2048;
         KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(keySize);      
+        keyPairGenerator.initialize(keySize);
         return keyPairGenerator.genKeyPair();
     }
 
     public static byte[] encrypt(PrivateKey privateKey, String message) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA");  
-        cipher.init(Cipher.ENCRYPT_MODE, privateKey);  
+        Cipher cipher = cipher(RSA);
+        cipher.init(Cipher.ENCRYPT_MODE, privateKey);
 
-        return cipher.doFinal(message.getBytes());  
+        return cipher.doFinal(message.getBytes());
     }
-    
+
     public static byte[] decrypt(PublicKey publicKey, byte [] encrypted) throws Exception {
-        Cipher cipher = Cipher.getInstance("RSA");  
+        Cipher cipher = cipher(RSA);
         cipher.init(Cipher.DECRYPT_MODE, publicKey);
-        
+
         return cipher.doFinal(encrypted);
     }
+
+    /**
+     * Reads the key pair from a keystore once; later calls for the same file and alias
+     * return the cached pair. The store type is JKS for .jks files and PKCS12 otherwise.
+     *
+     * @param keystore
+     * @param storePassword
+     * @param alias         may be null to take the first key entry
+     * @param keyPassword   may be null to use the store password
+     * @return
+     */
+    public static KeyPair loadKeyPair(Path keystore, char[] storePassword, String alias, char[] keyPassword) {
+        String cacheKey = keystore.toAbsolutePath().normalize() + "#" + (alias == null ? "" : alias);
+        KeyPair cached = KEY_PAIRS.get(cacheKey);
+        if (cached != null)
+            return cached;
+
+        try {
+            String type = keystore.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jks") ? "JKS" : "PKCS12";
+            KeyStore store = KeyStore.getInstance(type);
+            try (InputStream in = Files.newInputStream(keystore)) {
+                store.load(in, storePassword);
+            }
+
+            String entry = alias;
+            if (entry == null) {
+                for (Enumeration<String> aliases = store.aliases(); aliases.hasMoreElements() && entry == null; ) {
+                    String candidate = aliases.nextElement();
+                    if (store.isKeyEntry(candidate))
+                        entry = candidate;
+                }
+            }
+            if (entry == null || !store.isKeyEntry(entry))
+                throw new RuntimeException("Keystore '" + keystore + "' has no key entry"
+                        + (alias == null ? "." : " '" + alias + "'."));
+
+            Key key = store.getKey(entry, keyPassword == null ? storePassword : keyPassword);
+            Certificate certificate = store.getCertificate(entry);
+            if (!(key instanceof PrivateKey) || certificate == null)
+                throw new RuntimeException("Entry '" + entry + "' of keystore '" + keystore + "' is not a key pair.");
+
+            KeyPair keyPair = new KeyPair(certificate.getPublicKey(), (PrivateKey) key);
+            KEY_PAIRS.put(cacheKey, keyPair);
+            return keyPair;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException("Unable to read keystore '" + keystore + "'.", e);
+        }
+    }
+
+    /**
+     * Key pair of the keystore named by the configuration
+     *
+     * @return
+     */
+    public static KeyPair getKeyPair() {
+        return getKeyPair(ConfigHolder.getInstance()::getProperty);
+    }
+
+    /**
+     * Key pair of the keystore named by crypto.keystore.* in the given properties
+     *
+     * @param properties looks up a property value by key
+     * @return
+     */
+    public static KeyPair getKeyPair(Function<String, String> properties) {
+        String path = properties.apply("crypto.keystore.path");
+        if (path == null || path.trim().isEmpty())
+            throw new RuntimeException("Keystore path is required. Provide value for property 'crypto.keystore.path'.");
+        String storePassword = properties.apply("crypto.keystore.password");
+        if (storePassword == null || storePassword.isEmpty())
+            storePassword = System.getenv("CRYPTO_KEYSTORE_PASSWORD");
+        if (storePassword == null)
+            throw new RuntimeException("Keystore password is required. Provide value for property "
+                    + "'crypto.keystore.password' or environment variable 'CRYPTO_KEYSTORE_PASSWORD'.");
+        String alias = properties.apply("crypto.keystore.alias");
+        String keyPassword = properties.apply("crypto.key.password");
+
+        return loadKeyPair(Paths.get(path.trim()), storePassword.toCharArray(),
+                alias == null || alias.trim().isEmpty() ? null : alias.trim(),
+                keyPassword == null || keyPassword.isEmpty() ? null : keyPassword.toCharArray());
+    }
+
+    /**
+     * Encrypts data of any size: version, wrapped AES key, IV, AES-GCM cipher text
+     *
+     * @param publicKey
+     * @param data
+     * @return
+     */
+    public static byte[] encryptHybrid(PublicKey publicKey, byte[] data) {
+        try {
+            byte[] aesKey = new byte[AES_KEY_LENGTH];
+            byte[] iv = new byte[IV_LENGTH];
+            RANDOM.nextBytes(aesKey);
+            RANDOM.nextBytes(iv);
+
+            Cipher rsa = cipher(RSA_OAEP);
+            rsa.init(Cipher.ENCRYPT_MODE, publicKey, OAEP_SPEC);
+            byte[] wrapped = rsa.doFinal(aesKey);
+
+            Cipher aes = cipher(AES_GCM);
+            aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new GCMParameterSpec(TAG_BITS, iv));
+            aes.updateAAD(new byte[]{VERSION});
+            byte[] sealed = aes.doFinal(data);
+
+            return ByteBuffer.allocate(1 + 2 + wrapped.length + IV_LENGTH + sealed.length)
+                    .put(VERSION).putShort((short) wrapped.length).put(wrapped).put(iv).put(sealed).array();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to encrypt data.", e);
+        }
+    }
+
+    /**
+     * Decrypts data written by {@link #encryptHybrid(PublicKey, byte[])}; fails if it
+     * was changed or encrypted for another key
+     *
+     * @param privateKey
+     * @param encrypted
+     * @return
+     */
+    public static byte[] decryptHybrid(PrivateKey privateKey, byte[] encrypted) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(encrypted);
+            if (buffer.remaining() < 3 || buffer.get() != VERSION)
+                throw new RuntimeException("Data is not in the hybrid encryption format.");
+            int wrappedLength = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < wrappedLength + IV_LENGTH)
+                throw new RuntimeException("Encrypted data is truncated.");
+            byte[] wrapped = new byte[wrappedLength];
+            byte[] iv = new byte[IV_LENGTH];
+            buffer.get(wrapped).get(iv);
+
+            Cipher rsa = cipher(RSA_OAEP);
+            rsa.init(Cipher.DECRYPT_MODE, privateKey, OAEP_SPEC);
+            byte[] aesKey = rsa.doFinal(wrapped);
+
+            Cipher aes = cipher(AES_GCM);
+            aes.init(Cipher.DECRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new GCMParameterSpec(TAG_BITS, iv));
+            aes.updateAAD(new byte[]{VERSION});
+            return aes.doFinal(encrypted, buffer.position(), buffer.remaining());
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to decrypt data; it was changed or encrypted for another key.", e);
+        }
+    }
+
+    /**
+     * Hybrid encryption of a text, Base64 encoded
+     *
+     * @param publicKey
+     * @param value
+     * @return
+     */
+    public static String encryptValue(PublicKey publicKey, String value) {
+        return Base64.getEncoder().encodeToString(encryptHybrid(publicKey, value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String decryptValue(PrivateKey privateKey, String encrypted) {
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(encrypted.trim());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Encrypted value is not Base64 encoded.", e);
+        }
+        return new String(decryptHybrid(privateKey, data), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encrypts a credentials file (properties format) for {@link #loadSecrets(Path, PrivateKey)}
+     *
+     * @param source
+     * @param target
+     * @param publicKey
+     */
+    public static void encryptFile(Path source, Path target, PublicKey publicKey) {
+        try {
+            byte[] encrypted = encryptHybrid(publicKey, Files.readAllBytes(source));
+            Files.write(target, Base64.getMimeEncoder().encode(encrypted));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to encrypt '" + source + "' to '" + target + "'.", e);
+        }
+    }
+
+    /**
+     * Decrypts a credentials file written by {@link #encryptFile(Path, Path, PublicKey)}
+     * and adds its entries to the secret cache
+     *
+     * @param file
+     * @param privateKey
+     * @return the entries of the file
+     */
+    public static Map<String, String> loadSecrets(Path file, PrivateKey privateKey) {
+        byte[] plain;
+        try {
+            plain = decryptHybrid(privateKey, Base64.getMimeDecoder().decode(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read credentials file '" + file + "'.", e);
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(plain), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Credentials file '" + file + "' is not in properties format.", e);
+        }
+        Map<String, String> secrets = new HashMap<>();
+        for (String key : properties.stringPropertyNames())
+            secrets.put(key, properties.getProperty(key));
+        SECRETS.putAll(secrets);
+        secretsLoaded = true;
+        return Collections.unmodifiableMap(secrets);
+    }
+
+    /**
+     * Secret from the cache, or null. On first use the file named by crypto.secrets.file
+     * is decrypted with the configured key pair, if the cache is still empty.
+     *
+     * @param name
+     * @return
+     */
+    public static String getSecret(String name) {
+        if (!secretsLoaded) {
+            synchronized (SECRETS) {
+                if (!secretsLoaded) {
+                    String file = ConfigHolder.getInstance().getProperty("crypto.secrets.file");
+                    if (file != null && !file.trim().isEmpty())
+                        loadSecrets(Paths.get(file.trim()), getKeyPair().getPrivate());
+                    secretsLoaded = true;
+                }
+            }
+        }
+        return SECRETS.get(name);
+    }
+
+    /**
+     * Empties the secret cache and forgets cached key pairs
+     */
+    public static void clear() {
+        SECRETS.clear();
+        KEY_PAIRS.clear();
+        secretsLoaded = false;
+    }
+
+    /**
+     * Cipher of the current thread for the transformation; callers init it before use
+     */
+    private static Cipher cipher(String transformation) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
 }
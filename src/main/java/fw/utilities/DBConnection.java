@@ -1,5 +1,532 @@
 package fw.utilities;
 
-public class DBConnection {
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Small JDBC connection pool for seeding and verifying test data. The JDBC driver
+ * only has to be on the class path; an embedded database such as H2
+ * (jdbc:h2:mem:test;DB_CLOSE_DELAY=-1) works for local runs.
+ * <p>
+ * {@link #getInstance()} is configured from {@link ConfigHolder}:
+ * <ul>
+ * <li>db.url, db.user, db.password - connection settings; the password may be ENC(...)</li>
+ * <li>db.pool.size - connections kept open, 4 by default</li>
+ * <li>db.pool.wait.timeout - seconds to wait for a free connection, 30 by default</li>
+ * <li>db.validation.query - checks a connection idle for a few seconds before it is
+ * handed out; Connection.isValid is used without it</li>
+ * <li>db.idle.timeout - seconds after which an unused connection is closed, 300 by default</li>
+ * <li>db.statement.cache.size - prepared statements kept per connection, 32 by default</li>
+ * </ul>
+ * Closing a borrowed connection returns it to the pool, and closing a prepared
+ * statement returns it to the statement cache of its connection.
+ *
+ * <pre>
+ * DBConnection db = DBConnection.getInstance();
+ * db.batch("insert into orders (id, status) values (?, ?)", rows);
+ * try (Stream&lt;Map&lt;String, Object&gt;&gt; orders = db.stream("select * from orders", DBConnection::toMap)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class DBConnection implements AutoCloseable {
+    private static final long VALIDATION_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final int BATCH_SIZE = 500;
+    private static final int FETCH_SIZE = 100;
+    private static DBConnection instance;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String validationQuery;
+    private final long idleTimeout;
+    private final long waitTimeout;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Reads a row of a result set
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * @param url
+     * @param user
+     * @param password
+     * @param size               connections kept open at most
+     * @param validationQuery    may be null to use Connection.isValid
+     * @param idleTimeout        milliseconds after which an unused connection is closed
+     * @param statementCacheSize prepared statements kept per connection, 0 for none
+     */
+    public DBConnection(String url, String user, String password, int size, String validationQuery,
+            long idleTimeout, int statementCacheSize) {
+        this(url, user, password, size, validationQuery, idleTimeout, statementCacheSize, 30);
+    }
+
+    private DBConnection(ConfigHolder config) {
+        this(config.getProperty("db.url"), config.getProperty("db.user"), config.getProperty("db.password"),
+                getInt(config, "db.pool.size", 4), config.getProperty("db.validation.query"),
+                TimeUnit.SECONDS.toMillis(getInt(config, "db.idle.timeout", 300)),
+                getInt(config, "db.statement.cache.size", 32), getInt(config, "db.pool.wait.timeout", 30));
+    }
+
+    private DBConnection(String url, String user, String password, int size, String validationQuery,
+            long idleTimeout, int statementCacheSize, int waitTimeout) {
+        if (url == null || url.trim().isEmpty())
+            throw new RuntimeException("Database url is required. Provide value for property 'db.url'.");
+        if (size < 1)
+            throw new RuntimeException("Value '" + size + "' for property 'db.pool.size' must be at least 1.");
+        this.url = url.trim();
+        this.user = user;
+        this.password = password;
+        this.validationQuery = validationQuery == null || validationQuery.trim().isEmpty() ? null : validationQuery.trim();
+        this.idleTimeout = idleTimeout;
+        this.waitTimeout = TimeUnit.SECONDS.toMillis(waitTimeout);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * The pool configured by the db.* properties, created on first use
+     *
+     * @return
+     */
+    public static synchronized DBConnection getInstance() {
+        if (instance == null)
+            instance = new DBConnection(ConfigHolder.getInstance());
+        return instance;
+    }
+
+    /**
+     * Closes the configured pool; the next {@link #getInstance()} creates a new one
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting while all are in use. Close it to return it to the
+     * pool; an open transaction is rolled back then.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("Connection pool for '" + url + "' is closed.");
+        try {
+            if (!permits.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS))
+                throw new SQLException("No connection to '" + url + "' became free within "
+                        + waitTimeout + " ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+
+        try {
+            evictIdle();
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled))
+                    return pooled.borrow();
+                pooled.closePhysical();
+            }
+            Connection physical = user == null ? DriverManager.getConnection(url)
+                    : DriverManager.getConnection(url, user, password);
+            return new PooledConnection(physical).borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs an insert, update, delete or DDL statement
+     *
+     * @param sql
+     * @param params
+     * @return the update count
+     */
+    public int update(String sql, Object... params) {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Statement '" + sql + "' failed.", e);
+        }
+    }
+
+    /**
+     * Runs the statement once per row in JDBC batches, in a single transaction
+     *
+     * @param sql
+     * @param rows parameters of each row
+     * @return the update count of each row
+     */
+    public int[] batch(String sql, List<Object[]> rows) {
+        int[] counts = new int[rows.size()];
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            int done = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                bind(statement, rows.get(i));
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i == rows.size() - 1) {
+                    int[] batch = statement.executeBatch();
+                    System.arraycopy(batch, 0, counts, done, batch.length);
+                    done += batch.length;
+                }
+            }
+            connection.commit();
+            return counts;
+        } catch (SQLException e) {
+            throw new RuntimeException("Batch '" + sql + "' failed.", e);
+        }
+    }
+
+    /**
+     * Runs a query and reads all rows
+     *
+     * @param sql
+     * @param mapper
+     * @param params
+     * @return
+     */
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
+        List<T> rows = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    rows.add(mapper.map(resultSet));
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new RuntimeException("Query '" + sql + "' failed.", e);
+        }
+    }
+
+    /**
+     * Runs a query and reads the rows as the stream is consumed, so large results are
+     * not held in memory. The stream keeps a connection until it is closed; use it in
+     * a try-with-resources block.
+     *
+     * @param sql
+     * @param mapper
+     * @param params
+     * @return
+     */
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = getConnection();
+            statement = connection.prepareStatement(sql);
+            bind(statement, params);
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet resultSet = statement.executeQuery();
+            Connection borrowed = connection;
+            PreparedStatement prepared = statement;
+            Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!resultSet.next())
+                            return false;
+                        action.accept(mapper.map(resultSet));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Reading query '" + sql + "' failed.", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> closeAll(resultSet, prepared, borrowed));
+        } catch (SQLException e) {
+            closeAll(null, statement, connection);
+            throw new RuntimeException("Query '" + sql + "' failed.", e);
+        }
+    }
+
+    /**
+     * Row as a map of column label to value, in column order
+     *
+     * @param resultSet
+     * @return
+     * @throws SQLException
+     */
+    public static Map<String, Object> toMap(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData meta = resultSet.getMetaData();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++)
+            row.put(meta.getColumnLabel(i), resultSet.getObject(i));
+        return row;
+    }
+
+    /**
+     * Closes the idle connections; borrowed connections are closed when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null)
+            pooled.closePhysical();
+    }
+
+    /**
+     * Closes connections unused for longer than the idle timeout; the oldest are at the end
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        PooledConnection oldest;
+        while ((oldest = idle.peekLast()) != null && now - oldest.lastUsed > idleTimeout) {
+            if (idle.removeLastOccurrence(oldest))
+                oldest.closePhysical();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL)
+            return true;
+        try {
+            if (validationQuery == null)
+                return pooled.physical.isValid(5);
+            try (Statement statement = pooled.physical.createStatement()) {
+                statement.execute(validationQuery);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                pooled.closePhysical();
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.open.clear();
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            pooled.closePhysical();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Object[] params) throws SQLException {
+        if (params == null)
+            return;
+        for (int i = 0; i < params.length; i++)
+            statement.setObject(i + 1, params[i]);
+    }
+
+    private static void closeAll(AutoCloseable... resources) {
+        RuntimeException failure = null;
+        for (AutoCloseable resource : resources) {
+            if (resource == null)
+                continue;
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null)
+                    failure = new RuntimeException("Unable to release database resources.", e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private static int getInt(ConfigHolder config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Value '" + value + "' for property '" + key + "' is not a number.");
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Physical connection with its statement cache. Each borrow hands out a new proxy,
+     * so a proxy closed twice cannot return the connection twice.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements;
+        private final Set<String> open = new HashSet<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+        private Connection borrowed;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize || open.contains(eldest.getKey()))
+                        return false;
+                    try {
+                        eldest.getValue().statement.close();
+                    } catch (SQLException e) {
+                        // statement is dropped either way
+                    }
+                    return true;
+                }
+            };
+        }
+
+        private Connection borrow() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean returned = false;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned) {
+                                returned = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned || physical.isClosed();
+                        case "toString":
+                            return "Pooled " + physical;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    if (returned)
+                        throw new SQLException("Connection was returned to the pool.");
+                    if (method.getName().equals("prepareStatement") && args.length == 1 && statementCacheSize > 0)
+                        return prepare((String) args[0]);
+                    return DBConnection.invoke(physical, method, args);
+                }
+            };
+            borrowed = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+            return borrowed;
+        }
+
+        /**
+         * Cached statement for the SQL, wrapped so that close() only resets it. While it
+         * is open, the same SQL gets a statement of its own.
+         */
+        private PreparedStatement prepare(String sql) throws SQLException {
+            if (!open.add(sql))
+                return physical.prepareStatement(sql);
+            CachedStatement cached = statements.get(sql);
+            try {
+                if (cached == null || cached.statement.isClosed()) {
+                    cached = new CachedStatement(sql, physical.prepareStatement(sql));
+                    statements.put(sql, cached);
+                }
+            } catch (SQLException e) {
+                open.remove(sql);
+                throw e;
+            }
+            return cached.proxy;
+        }
+
+        private void closePhysical() {
+            for (Iterator<CachedStatement> it = statements.values().iterator(); it.hasNext(); ) {
+                try {
+                    it.next().statement.close();
+                } catch (SQLException e) {
+                    // connection is closed below
+                }
+                it.remove();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // already broken
+            }
+        }
+
+        /**
+         * Prepared statement of the cache with the proxy handed out for it, made once
+         */
+        private final class CachedStatement {
+            private final PreparedStatement statement;
+            private final PreparedStatement proxy;
+
+            private CachedStatement(String sql, PreparedStatement statement) {
+                this.statement = statement;
+                this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "close":
+                                    if (open.remove(sql) && !statement.isClosed()) {
+                                        statement.clearParameters();
+                                        statement.clearBatch();
+                                    }
+                                    return null;
+                                case "getConnection":
+                                    return borrowed;
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                default:
+                                    return DBConnection.invoke(statement, method, args);
+                            }
+                        });
+            }
+        }
+    }
 }
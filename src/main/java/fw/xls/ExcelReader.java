@@ -1,5 +1,163 @@
 package fw.xls;
 
-public class ExcelReader {
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.xmlbeans.XmlException;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming reader for .xlsx workbooks. Sheets are read row by row straight from the
+ * package, so memory use depends on the row width and the shared strings table rather
+ * than the number of rows.
+ *
+ * <pre>
+ * try (ExcelReader reader = new ExcelReader("data/accounts.xlsx")) {
+ *     reader.getSheet("Accounts").rows().forEach(row -&gt; ...);
+ * }
+ * </pre>
+ */
+public class ExcelReader implements Closeable {
+    private final String path;
+    private final OPCPackage pkg;
+    private final Map<String, PackagePart> sheets = new LinkedHashMap<>();
+    private final Map<Integer, Boolean> dateStyles = new ConcurrentHashMap<>();
+    private volatile ReadOnlySharedStringsTable sharedStrings;
+    private StylesTable styles;
+
+    public ExcelReader(String path) {
+        this.path = path;
+        File file = new File(path);
+        if (!file.exists())
+            throw new RuntimeException("Excel file '" + path + "' does not exist.");
+
+        try {
+            this.pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to open Excel file '" + path + "'.", e);
+        }
+
+        try {
+            WorkbookReader reader = new WorkbookReader(pkg);
+            reader.readSheetParts(sheets);
+            this.styles = reader.getStylesTable();
+        } catch (Exception e) {
+            pkg.revert();
+            throw new RuntimeException("Unable to read workbook structure of '" + path + "'.", e);
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<String> getSheetNames() {
+        return Collections.unmodifiableList(new ArrayList<>(sheets.keySet()));
+    }
+
+    /**
+     * Opens the sheet with the given name, compared case-insensitive. The header row
+     * is read immediately, data rows only when iterated.
+     *
+     * @param name
+     * @return
+     */
+    public ExcelSheet getSheet(String name) {
+        for (String sheetName : sheets.keySet()) {
+            if (sheetName.equalsIgnoreCase(name))
+                return new ExcelSheet(this, sheetName);
+        }
+        throw new RuntimeException("Sheet '" + name + "' not found in '" + path + "'. Available sheets: "
+                + sheets.keySet());
+    }
+
+    public ExcelSheet getSheet(int index) {
+        List<String> names = getSheetNames();
+        if (index < 0 || index >= names.size())
+            throw new RuntimeException("Sheet index " + index + " out of range for '" + path + "'.");
+        return new ExcelSheet(this, names.get(index));
+    }
+
+    @Override
+    public void close() {
+        // read-only package, nothing to save
+        pkg.revert();
+    }
+
+    InputStream openSheet(String name) throws IOException {
+        return sheets.get(name).getInputStream();
+    }
+
+    /**
+     * Shared strings are loaded on first use; all sheets of a workbook share them.
+     */
+    String getSharedString(int index) {
+        ReadOnlySharedStringsTable table = sharedStrings;
+        if (table == null) {
+            synchronized (this) {
+                if (sharedStrings == null) {
+                    try {
+                        sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Unable to read shared strings of '" + path + "'.", e);
+                    }
+                }
+                table = sharedStrings;
+            }
+        }
+        return table.getItemAt(index).getString();
+    }
+
+    boolean isDateStyle(int styleIndex) {
+        if (styles == null)
+            return false;
+        return dateStyles.computeIfAbsent(styleIndex, index -> {
+            XSSFCellStyle style = styles.getStyleAt(index);
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        });
+    }
+
+    /**
+     * Looks up the sheet parts through the workbook relationships; unlike the sheet
+     * iterator of {@link XSSFReader}, this opens no stream on the sheets themselves.
+     */
+    private static final class WorkbookReader extends XSSFReader {
+        private WorkbookReader(OPCPackage pkg) throws IOException, OpenXML4JException {
+            super(pkg);
+        }
+
+        private void readSheetParts(Map<String, PackagePart> target) throws IOException, XmlException, InvalidFormatException {
+            CTWorkbook workbook;
+            try (InputStream in = workbookPart.getInputStream()) {
+                workbook = WorkbookDocument.Factory.parse(in, POIXMLTypeLoader.DEFAULT_XML_OPTIONS).getWorkbook();
+            }
+            for (CTSheet sheet : workbook.getSheets().getSheetArray()) {
+                PackageRelationship relationship = workbookPart.getRelationship(sheet.getId());
+                if (relationship != null)
+                    target.put(sheet.getName(), workbookPart.getRelatedPart(relationship));
+            }
+        }
+    }
 }
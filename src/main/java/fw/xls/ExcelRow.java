@@ -0,0 +1,145 @@
+package fw.xls;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * One data row of an {@link ExcelSheet}. Values are addressed by header name
+ * (case-insensitive) or by column index and are typed as String, Double, Boolean
+ * or Date; empty cells are null. The row is a read-only map from header to value,
+ * backed by the sheet's header index, so no per-row map is built.
+ */
+public class ExcelRow extends AbstractMap<String, Object> {
+    private final ExcelSheet sheet;
+    private final int rowNum;
+    private final Object[] values;
+
+    ExcelRow(ExcelSheet sheet, int rowNum, Object[] values) {
+        this.sheet = sheet;
+        this.rowNum = rowNum;
+        this.values = values;
+    }
+
+    /**
+     * 1-based row number as shown in Excel
+     *
+     * @return
+     */
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    public ExcelSheet getSheet() {
+        return sheet;
+    }
+
+    public Object get(int column) {
+        return column >= 0 && column < values.length ? values[column] : null;
+    }
+
+    @Override
+    public Object get(Object header) {
+        return header instanceof String ? get(sheet.getColumnIndex((String) header)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object header) {
+        return header instanceof String && sheet.getColumnIndex((String) header) >= 0;
+    }
+
+    /**
+     * Cell value as text; whole numbers are written without a decimal part
+     *
+     * @param header
+     * @return
+     */
+    public String getString(String header) {
+        Object value = get(header);
+        return value == null ? null : asString(value);
+    }
+
+    public Double getDouble(String header) {
+        Object value = get(header);
+        if (value == null || value instanceof Double)
+            return (Double) value;
+        String text = asString(value).trim();
+        return text.isEmpty() ? null : Double.valueOf(text);
+    }
+
+    public Boolean getBoolean(String header) {
+        Object value = get(header);
+        if (value == null || value instanceof Boolean)
+            return (Boolean) value;
+        String text = asString(value).trim();
+        return text.equalsIgnoreCase("true") || text.equalsIgnoreCase("yes")
+                || text.equalsIgnoreCase("y") || text.equals("1");
+    }
+
+    public Date getDate(String header) {
+        Object value = get(header);
+        if (value == null || value instanceof Date)
+            return (Date) value;
+        throw new RuntimeException("Cell '" + header + "' in row " + rowNum + " of sheet '" + sheet.getName()
+                + "' is not a date: " + value);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        final List<String> headers = sheet.getHeaders();
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int column = advance(0);
+
+                    private int advance(int from) {
+                        while (from < headers.size() && headers.get(from).isEmpty())
+                            from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return column < headers.size();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(headers.get(column),
+                                ExcelRow.this.get(column));
+                        column = advance(column + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (String header : headers) {
+                    if (!header.isEmpty())
+                        size++;
+                }
+                return size;
+            }
+        };
+    }
+
+    static String asString(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (number == Math.rint(number) && !Double.isInfinite(number) && Math.abs(number) < 1e15)
+                return Long.toString((long) number);
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+        return String.valueOf(value);
+    }
+}
@@ -1,5 +1,292 @@
 package fw.xls;
 
-public class ExcelSheet {
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A single worksheet. The first row is treated as the header row and is resolved
+ * once; every data row is parsed lazily while iterating with a pull parser over the
+ * sheet XML, so only the current row is held in memory.
+ */
+public class ExcelSheet implements Iterable<ExcelRow> {
+    private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final ExcelReader reader;
+    private final String name;
+    private final List<String> headers;
+    private final Map<String, Integer> columns;
+
+    ExcelSheet(ExcelReader reader, String name) {
+        this.reader = reader;
+        this.name = name;
+
+        List<String> headerNames = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        try (RowIterator it = new RowIterator(false)) {
+            if (it.hasNext()) {
+                Object[] values = it.nextValues();
+                for (int i = 0; i < values.length; i++) {
+                    String header = values[i] == null ? "" : ExcelRow.asString(values[i]).trim();
+                    headerNames.add(header);
+                    if (!header.isEmpty())
+                        index.putIfAbsent(header.toLowerCase(Locale.ROOT), i);
+                }
+            }
+        }
+        this.headers = Collections.unmodifiableList(headerNames);
+        this.columns = Collections.unmodifiableMap(index);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Column index of the given header, compared case-insensitive, or -1 if there is no such column
+     *
+     * @param header
+     * @return
+     */
+    public int getColumnIndex(String header) {
+        if (header == null)
+            return -1;
+        Integer index = columns.get(header.toLowerCase(Locale.ROOT));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Iterates the data rows, i.e. every row after the header row. Close the iterator
+     * if it is abandoned before the end, it keeps the sheet stream open.
+     *
+     * @return
+     */
+    @Override
+    public RowIterator iterator() {
+        return new RowIterator(true);
+    }
+
+    /**
+     * Iterates the data rows accepted by the filter. Rejected rows are dropped inside
+     * the parser loop and never handed to the caller.
+     *
+     * @param filter
+     * @return
+     */
+    public RowIterator iterator(Predicate<? super ExcelRow> filter) {
+        RowIterator it = new RowIterator(true);
+        it.filter = filter;
+        return it;
+    }
+
+    /**
+     * Lazy stream over the data rows. Use in try-with-resources or consume it fully so
+     * the underlying sheet stream gets closed.
+     *
+     * @return
+     */
+    public Stream<ExcelRow> rows() {
+        return rows(null);
+    }
+
+    /**
+     * Lazy stream over the data rows accepted by the filter, see {@link #iterator(Predicate)}
+     *
+     * @param filter
+     * @return
+     */
+    public Stream<ExcelRow> rows(Predicate<? super ExcelRow> filter) {
+        RowIterator it = iterator(filter);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(it::close);
+    }
+
+    /**
+     * Pull parser over the sheet XML, yielding one row at a time
+     */
+    public class RowIterator implements Iterator<ExcelRow>, Closeable {
+        private final InputStream in;
+        private final XMLStreamReader xml;
+        private boolean skipHeader;
+        private Predicate<? super ExcelRow> filter;
+        private ExcelRow nextRow;
+        private Object[] next;
+        private int nextRowNum;
+        private boolean done = false;
+
+        private RowIterator(boolean skipHeader) {
+            this.skipHeader = skipHeader;
+            try {
+                this.in = reader.openSheet(name);
+                this.xml = XML_FACTORY.createXMLStreamReader(in);
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException("Unable to open sheet '" + name + "' of '" + reader.getPath() + "'.", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (done)
+                return false;
+            try {
+                next = readRow();
+                if (next != null && skipHeader) {
+                    skipHeader = false;
+                    next = readRow();
+                }
+                while (next != null && filter != null) {
+                    nextRow = new ExcelRow(ExcelSheet.this, nextRowNum, next);
+                    if (filter.test(nextRow))
+                        break;
+                    nextRow = null;
+                    next = readRow();
+                }
+            } catch (XMLStreamException e) {
+                close();
+                throw new RuntimeException("Unable to parse sheet '" + name + "' of '" + reader.getPath() + "'.", e);
+            }
+            if (next == null)
+                close();
+            return next != null;
+        }
+
+        @Override
+        public ExcelRow next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ExcelRow row = nextRow != null ? nextRow : new ExcelRow(ExcelSheet.this, nextRowNum, next);
+            nextRow = null;
+            next = null;
+            return row;
+        }
+
+        private Object[] nextValues() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Object[] values = next;
+            next = null;
+            return values;
+        }
+
+        @Override
+        public void close() {
+            if (done)
+                return;
+            done = true;
+            try {
+                xml.close();
+                in.close();
+            } catch (XMLStreamException | IOException e) {
+                // nothing left to release
+            }
+        }
+
+        /**
+         * Reads up to the end of the next &lt;row&gt; element
+         */
+        private Object[] readRow() throws XMLStreamException {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName()))
+                    break;
+            }
+            if (!xml.hasNext())
+                return null;
+
+            String r = xml.getAttributeValue(null, "r");
+            nextRowNum = r == null ? nextRowNum + 1 : Integer.parseInt(r);
+
+            Object[] values = new Object[Math.max(headers == null ? 0 : headers.size(), 1)];
+            int column = -1;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName()))
+                    break;
+                if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(xml.getLocalName()))
+                    continue;
+
+                String ref = xml.getAttributeValue(null, "r");
+                column = ref == null ? column + 1 : new CellReference(ref).getCol();
+                Object value = readCell();
+                if (column >= values.length)
+                    values = Arrays.copyOf(values, column + 1);
+                values[column] = value;
+            }
+            return values;
+        }
+
+        /**
+         * Converts the current &lt;c&gt; element into String, Double, Boolean or Date
+         */
+        private Object readCell() throws XMLStreamException {
+            String type = xml.getAttributeValue(null, "t");
+            String style = xml.getAttributeValue(null, "s");
+            StringBuilder text = null;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName()))
+                    break;
+                if (event == XMLStreamConstants.START_ELEMENT
+                        && ("v".equals(xml.getLocalName()) || "t".equals(xml.getLocalName()))) {
+                    if (text == null)
+                        text = new StringBuilder();
+                    text.append(xml.getElementText());
+                }
+            }
+            if (text == null)
+                return null;
+
+            String raw = text.toString();
+            if (type == null || "n".equals(type)) {
+                if (raw.isEmpty())
+                    return null;
+                double number = Double.parseDouble(raw);
+                if (style != null && reader.isDateStyle(Integer.parseInt(style))
+                        && DateUtil.isValidExcelDate(number))
+                    return DateUtil.getJavaDate(number);
+                return number;
+            }
+            switch (type) {
+                case "s":
+                    return reader.getSharedString(Integer.parseInt(raw.trim()));
+                case "b":
+                    return "1".equals(raw.trim()) || "true".equalsIgnoreCase(raw.trim());
+                default:
+                    // inlineStr, str (formula result) and e (error)
+                    return raw;
+            }
+        }
+    }
 }
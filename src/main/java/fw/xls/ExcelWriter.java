@@ -1,5 +1,263 @@
 package fw.xls;
 
-public class ExcelWriter {
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming .xlsx writer for result rows. Rows can be appended from any thread; they
+ * are queued and written in batches by a single writer thread into an SXSSF sheet
+ * which keeps only the last {@code rowWindow} rows in memory and spills older rows
+ * to a temporary file. The workbook is saved by {@link #close()}, or on JVM shutdown
+ * if close was never called. A row that cannot be written, e.g. because a cell holds
+ * more than 32767 characters, is replaced by a note on that row and logged; later
+ * rows are written as usual.
+ *
+ * <pre>
+ * ExcelWriter results = new ExcelWriter("target/results.xlsx", "Results",
+ *         Arrays.asList("Test", "Status", "Duration", "Screenshot"));
+ * results.append(testName, "PASS", durationMillis, screenshotPath);
+ * </pre>
+ */
+public class ExcelWriter implements Closeable {
+    public static final int DEFAULT_ROW_WINDOW = 100;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int BATCH_SIZE = 500;
+    private static final Object[] END = new Object[0];
+    private static final Logger LOG = Logger.getLogger(ExcelWriter.class.getName());
+
+    private final String path;
+    private final List<String> headers;
+    private final SXSSFWorkbook workbook;
+    private final SXSSFSheet sheet;
+    private final CellStyle dateStyle;
+    private final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+    private int nextRow = 0;
+
+    public ExcelWriter(String path, String sheetName, List<String> headers) {
+        this(path, sheetName, headers, DEFAULT_ROW_WINDOW);
+    }
+
+    /**
+     * @param path      target .xlsx file, overwritten on close
+     * @param sheetName
+     * @param headers   written as the first row and used to place values appended as a map
+     * @param rowWindow number of rows kept in memory before they are flushed to disk
+     */
+    public ExcelWriter(String path, String sheetName, List<String> headers, int rowWindow) {
+        this.path = path;
+        this.headers = headers == null ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(headers));
+        this.workbook = new SXSSFWorkbook(rowWindow);
+        this.workbook.setCompressTempFiles(true);
+        this.sheet = workbook.createSheet(sheetName);
+
+        this.dateStyle = workbook.createCellStyle();
+        this.dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+
+        if (!this.headers.isEmpty()) {
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            headerStyle.setFont(bold);
+            Row row = sheet.createRow(nextRow++);
+            for (int i = 0; i < this.headers.size(); i++) {
+                Cell cell = row.createCell(i);
+                cell.setCellValue(this.headers.get(i));
+                cell.setCellStyle(headerStyle);
+            }
+        }
+
+        this.writer = new Thread(this::drain, "excel-writer-" + new File(path).getName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        this.shutdownHook = new Thread(this::close, "excel-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a row with values in header order. Blocks if the writer is far behind.
+     * Fails once the writer is closed; rows queued before are always written.
+     *
+     * @param values
+     */
+    public void append(Object... values) {
+        closing.readLock().lock();
+        try {
+            checkState();
+            queue.put(values == null ? new Object[0] : values.clone());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while appending to '" + path + "'.", e);
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a row with values placed under their header; unknown keys are ignored.
+     *
+     * @param values
+     */
+    public void append(Map<String, ?> values) {
+        Object[] row = new Object[headers.size()];
+        for (int i = 0; i < headers.size(); i++)
+            row[i] = values.get(headers.get(i));
+        append(row);
+    }
+
+    /**
+     * Writes all queued rows and saves the workbook. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            queue.put(END);
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while closing '" + path + "'.", e);
+        }
+
+        try {
+            if (failure != null)
+                throw new RuntimeException("Writing results to '" + path + "' failed.", failure);
+            File file = new File(path);
+            if (file.getParentFile() != null)
+                file.getParentFile().mkdirs();
+            try (OutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to save '" + path + "'.", e);
+        } finally {
+            workbook.dispose();
+            try {
+                workbook.close();
+            } catch (IOException e) {
+                // temporary files are already disposed
+            }
+            removeShutdownHook();
+        }
+    }
+
+    private void checkState() {
+        if (closed)
+            throw new IllegalStateException("Excel writer for '" + path + "' is closed.");
+        if (failure != null)
+            throw new RuntimeException("Writing results to '" + path + "' failed.", failure);
+    }
+
+    private void removeShutdownHook() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down
+        }
+    }
+
+    private void drain() {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Object[] values : batch) {
+                    if (values == END)
+                        return;
+                    if (failure != null)
+                        continue;
+                    try {
+                        write(values);
+                    } catch (RuntimeException e) {
+                        // keep draining so appenders never block, the failure is reported to them
+                        failure = e;
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Writes the row, or a note on that row if its values cannot be written. Fails only
+     * if the note cannot be written either.
+     *
+     * @param values
+     */
+    private void write(Object[] values) {
+        int index = nextRow++;
+        try {
+            writeRow(sheet.createRow(index), values);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Row " + (index + 1) + " of '" + path + "' could not be written.", e);
+            Row row = sheet.getRow(index);
+            if (row != null)
+                sheet.removeRow(row);
+            sheet.createRow(index).createCell(0).setCellValue("Row could not be written: " + e.getMessage());
+        }
+    }
+
+    private void writeRow(Row row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null)
+                continue;
+            Cell cell = row.createCell(i);
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                cell.setCellValue((Boolean) value);
+            } else if (value instanceof Date) {
+                cell.setCellValue((Date) value);
+                cell.setCellStyle(dateStyle);
+            } else if (value instanceof Calendar) {
+                cell.setCellValue((Calendar) value);
+                cell.setCellStyle(dateStyle);
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        }
+    }
 }
@@ -1,5 +1,399 @@
 package fw.xml;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * StAX based reader for XML test data. Files are read in a single forward pass and
+ * matching elements are handed out one at a time, so no DOM is built.
+ * <p>
+ * Selectors are a subset of XPath evaluated while streaming:
+ * <ul>
+ * <li>{@code /export/accounts/account} - absolute path</li>
+ * <li>{@code //account} or just {@code account} - element at any depth</li>
+ * <li>{@code //account[@type='savings']} - attribute equals value</li>
+ * <li>{@code //account[@id]} - attribute present</li>
+ * <li>{@code *} - any element name</li>
+ * <li>{@code //account/@id}, {@code //account/name/text()} - attribute or text, for {@link #select(String)} only</li>
+ * </ul>
+ */
 public class XMLParser {
+    private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private final String path;
+
+    public XMLParser(String path) {
+        if (!new File(path).exists())
+            throw new RuntimeException("XML file '" + path + "' does not exist.");
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Iterates the elements matching the selector, each as a map of
+     * <ul>
+     * <li>{@code @attr} - attributes of the element</li>
+     * <li>{@code child} - text of child elements, {@code child/grandchild} for deeper ones</li>
+     * <li>{@code child/@attr} - attributes of descendants</li>
+     * <li>{@code #text} - the element's own text, if any</li>
+     * </ul>
+     * Repeated children keep the first value.
+     *
+     * @param selector
+     * @return
+     */
+    public MatchIterator<Map<String, String>> records(String selector) {
+        Selector compiled = Selector.compile(selector);
+        if (compiled.attribute != null || compiled.text)
+            throw new RuntimeException("Record selector '" + selector + "' must select elements.");
+        return new MatchIterator<>(compiled, this::readRecord);
+    }
+
+    public Stream<Map<String, String>> recordStream(String selector) {
+        return stream(records(selector));
+    }
+
+    /**
+     * Iterates the values selected by the expression: the attribute for {@code .../@attr},
+     * otherwise the text content of each matching element.
+     *
+     * @param expression
+     * @return
+     */
+    public MatchIterator<String> select(String expression) {
+        Selector compiled = Selector.compile(expression);
+        return new MatchIterator<>(compiled, reader -> compiled.attribute != null
+                ? reader.getAttributeValue(null, compiled.attribute) : readText(reader));
+    }
+
+    public Stream<String> selectStream(String expression) {
+        return stream(select(expression));
+    }
+
+    /**
+     * First value selected by the expression, or null
+     *
+     * @param expression
+     * @return
+     */
+    public String selectFirst(String expression) {
+        try (MatchIterator<String> it = select(expression)) {
+            return it.hasNext() ? it.next() : null;
+        }
+    }
+
+    private static <T> Stream<T> stream(MatchIterator<T> it) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                .onClose(it::close);
+    }
+
+    /**
+     * Reads the current element and its subtree into a record map; leaves the reader on its end tag
+     */
+    private Map<String, String> readRecord(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> record = new LinkedHashMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+            record.put("@" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+
+        List<String> names = new ArrayList<>();
+        List<StringBuilder> texts = new ArrayList<>();
+        texts.add(new StringBuilder());
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                names.add(reader.getLocalName());
+                texts.add(new StringBuilder());
+                String prefix = String.join("/", names);
+                for (int i = 0; i < reader.getAttributeCount(); i++)
+                    record.putIfAbsent(prefix + "/@" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                texts.get(texts.size() - 1).append(reader.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String text = texts.remove(texts.size() - 1).toString().trim();
+                if (names.isEmpty()) {
+                    if (!text.isEmpty())
+                        record.put("#text", text);
+                    return record;
+                }
+                String key = String.join("/", names);
+                record.merge(key, text, (first, later) -> first.isEmpty() ? later : first);
+                names.remove(names.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Concatenated text of the current element and its descendants; leaves the reader on its end tag
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0)
+                    return text.toString().trim();
+                depth--;
+            }
+        }
+    }
+
+    private interface Extractor<T> {
+        T extract(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * Walks the document forward, yielding one value per matching element. The file
+     * stays open until the document end is reached or the iterator is closed.
+     */
+    public class MatchIterator<T> implements Iterator<T>, Closeable {
+        private final Selector selector;
+        private final Extractor<T> extractor;
+        private final InputStream in;
+        private final XMLStreamReader reader;
+        private final List<Frame> stack = new ArrayList<>();
+        private T next;
+        private boolean done = false;
+
+        private MatchIterator(Selector selector, Extractor<T> extractor) {
+            this.selector = selector;
+            this.extractor = extractor;
+            try {
+                this.in = new FileInputStream(path);
+                this.reader = XML_FACTORY.createXMLStreamReader(in);
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException("Unable to open XML file '" + path + "'.", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (done)
+                return false;
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        stack.remove(stack.size() - 1);
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        stack.add(new Frame(reader));
+                        if (selector.matches(stack)) {
+                            T value = extractor.extract(reader);
+                            if (reader.getEventType() == XMLStreamConstants.END_ELEMENT)
+                                stack.remove(stack.size() - 1);
+                            if (value != null) {
+                                next = value;
+                                return true;
+                            }
+                        }
+                    }
+                }
+            } catch (XMLStreamException e) {
+                close();
+                throw new RuntimeException("Unable to parse XML file '" + path + "'.", e);
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T value = next;
+            next = null;
+            return value;
+        }
+
+        @Override
+        public void close() {
+            if (done)
+                return;
+            done = true;
+            try {
+                reader.close();
+                in.close();
+            } catch (XMLStreamException | IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Name and attributes of an open element; attributes are only kept when present
+     */
+    private static final class Frame {
+        private final String name;
+        private final Map<String, String> attributes;
+
+        private Frame(XMLStreamReader reader) {
+            this.name = reader.getLocalName();
+            int count = reader.getAttributeCount();
+            if (count == 0) {
+                this.attributes = null;
+            } else {
+                this.attributes = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++)
+                    attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+        }
+    }
+
+    private static final class Step {
+        private final boolean descendant;
+        private final String name;
+        private final String attribute;
+        private final String value;
+
+        private Step(boolean descendant, String name, String attribute, String value) {
+            this.descendant = descendant;
+            this.name = name;
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        private boolean matches(Frame frame) {
+            if (!name.equals("*") && !name.equals(frame.name))
+                return false;
+            if (attribute == null)
+                return true;
+            String actual = frame.attributes == null ? null : frame.attributes.get(attribute);
+            return actual != null && (value == null || value.equals(actual));
+        }
+    }
+
+    private static final class Selector {
+        private final List<Step> steps;
+        private final String attribute;
+        private final boolean text;
+
+        private Selector(List<Step> steps, String attribute, boolean text) {
+            this.steps = steps;
+            this.attribute = attribute;
+            this.text = text;
+        }
+
+        private static Selector compile(String expression) {
+            if (expression == null || expression.trim().isEmpty())
+                throw new RuntimeException("XML selector is required.");
+            String remaining = expression.trim();
+            if (!remaining.startsWith("/"))
+                remaining = "//" + remaining;
+
+            List<Step> steps = new ArrayList<>();
+            String attribute = null;
+            boolean text = false;
+            int i = 0;
+            while (i < remaining.length()) {
+                boolean descendant = remaining.startsWith("//", i);
+                i += descendant ? 2 : 1;
+                int end = i;
+                int brackets = 0;
+                while (end < remaining.length() && (brackets > 0 || remaining.charAt(end) != '/')) {
+                    if (remaining.charAt(end) == '[')
+                        brackets++;
+                    else if (remaining.charAt(end) == ']')
+                        brackets--;
+                    end++;
+                }
+                String token = remaining.substring(i, end).trim();
+                i = end;
+
+                if (token.startsWith("@")) {
+                    attribute = token.substring(1);
+                    break;
+                }
+                if (token.equals("text()")) {
+                    text = true;
+                    break;
+                }
+                steps.add(parseStep(expression, descendant, token));
+            }
+            if (i < remaining.length())
+                throw new RuntimeException("Unsupported XML selector '" + expression
+                        + "': attributes and text() must be the last step.");
+            if (steps.isEmpty())
+                throw new RuntimeException("XML selector '" + expression + "' does not select any element.");
+            return new Selector(steps, attribute, text);
+        }
+
+        private static Step parseStep(String expression, boolean descendant, String token) {
+            int open = token.indexOf('[');
+            if (open < 0)
+                return new Step(descendant, token, null, null);
+
+            String name = token.substring(0, open).trim();
+            String predicate = token.substring(open + 1, token.lastIndexOf(']')).trim();
+            if (!predicate.startsWith("@"))
+                throw new RuntimeException("Unsupported predicate '[" + predicate + "]' in XML selector '"
+                        + expression + "'. Only [@attr] and [@attr='value'] are supported.");
+            int equals = predicate.indexOf('=');
+            if (equals < 0)
+                return new Step(descendant, name, predicate.substring(1).trim(), null);
+            String value = predicate.substring(equals + 1).trim();
+            if (value.length() >= 2 && (value.startsWith("'") || value.startsWith("\"")))
+                value = value.substring(1, value.length() - 1);
+            return new Step(descendant, name, predicate.substring(1, equals).trim(), value);
+        }
+
+        /**
+         * True if the open elements, root first, match the steps with the last step on the top element
+         */
+        private boolean matches(List<Frame> stack) {
+            return matches(stack, stack.size() - 1, steps.size() - 1);
+        }
+
+        private boolean matches(List<Frame> stack, int frame, int step) {
+            if (step < 0)
+                return frame < 0;
+            if (frame < 0)
+                return false;
+            Step current = steps.get(step);
+            if (!current.matches(stack.get(frame)))
+                return false;
+            if (step == 0)
+                return current.descendant || frame == 0;
 
+            if (!current.descendant)
+                return matches(stack, frame - 1, step - 1);
+            for (int parent = frame - 1; parent >= 0; parent--) {
+                if (matches(stack, parent, step - 1))
+                    return true;
+            }
+            return false;
+        }
+    }
 }
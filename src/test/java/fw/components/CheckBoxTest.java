@@ -0,0 +1,135 @@
+package fw.components;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+public class CheckBoxTest extends ComponentTest {
+	private static final String PERMISSIONS = "<fieldset id='permissions'>"
+			+ "<input type='checkbox' name='users' value='read' checked>"
+			+ "<input type='checkbox' name='users' value='delete'>"
+			+ "<input type='checkbox' name='orders' value='read'>"
+			+ "<input type='checkbox' name='orders' value='approve' disabled>"
+			+ "<label><input type='checkbox' name='audit'> Audit  log </label>"
+			+ "</fieldset>";
+
+	@Test(dataProvider = "browsers")
+	public void keysBoxesByValueQualifyingSharedValues(String browser) {
+		CheckBox permissions = permissions(open(browser, PERMISSIONS));
+
+		assertEquals(permissions.getState(), state("users=read", true, "delete", false, "orders=read", false,
+				"approve", false, "Audit log", false));
+		assertEquals(permissions.selectedValues(), Collections.singletonList("users=read"));
+		assertTrue(permissions.isChecked());
+	}
+
+	@Test(dataProvider = "browsers")
+	public void setsQualifiedAndPlainKeys(String browser) {
+		CheckBox permissions = permissions(open(browser, PERMISSIONS));
+
+		Map<String, Boolean> after = permissions.setState(state("orders=read", true, "delete", true));
+		assertEquals(after, state("users=read", true, "delete", true, "orders=read", true,
+				"approve", false, "Audit log", false));
+
+		// a plain key applies to every box with that value
+		after = permissions.setState(state("read", false));
+		assertEquals(permissions.selectedValues(), Collections.singletonList("delete"));
+		assertEquals(after, permissions.getState());
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsOnlyTheGivenBoxes(String browser) {
+		CheckBox permissions = permissions(open(browser, PERMISSIONS));
+
+		permissions.selectOnly(Arrays.asList("orders=read", "Audit log"));
+
+		assertEquals(permissions.selectedValues(), Arrays.asList("orders=read", "Audit log"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void checksAndUnchecksEveryEnabledBox(String browser) {
+		CheckBox permissions = permissions(open(browser, PERMISSIONS));
+
+		permissions.checkAll();
+		assertEquals(permissions.selectedValues(), Arrays.asList("users=read", "delete", "orders=read", "Audit log"));
+		permissions.uncheck();
+		assertFalse(permissions.isChecked());
+	}
+
+	@Test(dataProvider = "browsers")
+	public void changesNothingForUnknownKeysOrDisabledBoxes(String browser) {
+		CheckBox permissions = permissions(open(browser, PERMISSIONS));
+
+		RuntimeException unknown = expectThrows(RuntimeException.class,
+				() -> permissions.setState(state("delete", true, "users=approve", true)));
+		assertEquals(unknown.getMessage(), "No checkbox found for [users=approve].");
+		RuntimeException disabled = expectThrows(UnsupportedOperationException.class,
+				() -> permissions.setState(state("delete", true, "approve", true)));
+		assertEquals(disabled.getMessage(), "You may not change a disabled checkbox [approve].");
+		assertEquals(permissions.selectedValues(), Collections.singletonList("users=read"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void refusesBoxesInADisabledFieldsetOrNotDisplayed(String browser) {
+		CheckBox options = new CheckBox(open(browser, "<form id='options'>"
+				+ "<input type='checkbox' value='shown'>"
+				+ "<input type='checkbox' value='invisible' style='display: none'>"
+				+ "<fieldset disabled><input type='checkbox' value='locked'></fieldset>"
+				+ "</form>").findElement(By.id("options")));
+
+		RuntimeException hidden = expectThrows(UnsupportedOperationException.class,
+				() -> options.setState(state("shown", true, "invisible", true)));
+		assertEquals(hidden.getMessage(), "You may not change a checkbox that is not displayed [invisible].");
+		RuntimeException disabled = expectThrows(UnsupportedOperationException.class,
+				() -> options.setState(state("shown", true, "locked", true)));
+		assertEquals(disabled.getMessage(), "You may not change a disabled checkbox [locked].");
+		assertEquals(options.selectedValues(), Collections.emptyList());
+
+		options.checkAll();
+		assertEquals(options.selectedValues(), Collections.singletonList("shown"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void handlesASingleBoxAndAListOfBoxes(String browser) {
+		WebDriver driver = open(browser, PERMISSIONS);
+		CheckBox delete = new CheckBox(driver.findElement(By.cssSelector("[value=delete]")));
+		CheckBox orders = new CheckBox(driver.findElements(By.name("orders")));
+
+		delete.check();
+		assertTrue(delete.isChecked());
+		assertEquals(orders.getState(), state("read", false, "approve", false));
+	}
+
+	@Test
+	public void readsAndSetsTheGroupInOneRoundTripEach() {
+		WebDriver driver = open(FAKE, PERMISSIONS);
+		CheckBox permissions = permissions(driver);
+		long before = commands(driver);
+
+		permissions.getState();
+		permissions.setState(state("delete", true, "orders=read", true, "Audit log", true));
+
+		assertEquals(commands(driver) - before, 2);
+	}
+
+	private static CheckBox permissions(WebDriver driver) {
+		return new CheckBox(driver.findElement(By.id("permissions")));
+	}
+
+	private static Map<String, Boolean> state(Object... keysAndStates) {
+		Map<String, Boolean> state = new LinkedHashMap<>();
+		for (int i = 0; i < keysAndStates.length; i += 2)
+			state.put((String) keysAndStates[i], (Boolean) keysAndStates[i + 1]);
+		return state;
+	}
+}
@@ -0,0 +1,92 @@
+package fw.components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+
+import fw.core.FakeDriver;
+import fw.core.FixtureServer;
+
+/**
+ * Base of the component tests. Every test taking the "browsers" data runs against the
+ * {@link FakeDriver} and against HtmlUnit, which executes the real component scripts;
+ * as both must pass the same assertions, the Java versions of the scripts in
+ * FakeScripts cannot drift from the scripts themselves. Pages are served by a
+ * {@link FixtureServer}.
+ */
+public abstract class ComponentTest {
+	static final String FAKE = "fake";
+	static final String HTMLUNIT = "htmlunit";
+
+	private final AtomicInteger pages = new AtomicInteger();
+	private final List<WebDriver> drivers = new ArrayList<>();
+	private FixtureServer server;
+
+	@BeforeClass
+	public void startServer() {
+		server = new FixtureServer();
+	}
+
+	@AfterClass(alwaysRun = true)
+	public void stopServer() {
+		if (server != null)
+			server.close();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void quitDrivers() {
+		for (WebDriver driver : drivers)
+			driver.quit();
+		drivers.clear();
+	}
+
+	@DataProvider(name = "browsers")
+	public Object[][] browsers() {
+		return new Object[][] { { FAKE }, { HTMLUNIT } };
+	}
+
+	/**
+	 * Opens the body markup as a page of its own in a new driver
+	 *
+	 * @param browser
+	 * @param body
+	 * @return
+	 */
+	WebDriver open(String browser, String body) {
+		String path = serve(pages.incrementAndGet() + ".html", body);
+		WebDriver driver = browser.equals(FAKE) ? new FakeDriver() : new HtmlUnitDriver(true);
+		drivers.add(driver);
+		driver.get(server.getUrl(path));
+		return driver;
+	}
+
+	/**
+	 * Serves the body markup under the given name, next to the pages of {@link #open(String, String)}
+	 *
+	 * @param name
+	 * @param body
+	 * @return the path of the page
+	 */
+	String serve(String name, String body) {
+		String path = getClass().getSimpleName() + "/" + name;
+		server.serve(path, "<!DOCTYPE html><html><head><title>" + path + "</title></head><body>" + body + "</body></html>");
+		return path;
+	}
+
+	/**
+	 * Commands sent so far by a fake driver
+	 *
+	 * @param driver
+	 * @return
+	 */
+	static long commands(WebDriver driver) {
+		return ((FakeDriver) driver).getCommandCount();
+	}
+}
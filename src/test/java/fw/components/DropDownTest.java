@@ -0,0 +1,146 @@
+package fw.components;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+import fw.core.FakeDriver;
+
+public class DropDownTest extends ComponentTest {
+	private static final String COLORS = "<select id='colors'>"
+			+ "<option value='r'>Red</option>"
+			+ "<option value='g'>  Light\n green </option>"
+			+ "<option value='b' disabled>Blue</option>"
+			+ "<option value='B2'>Blue 2</option>"
+			+ "</select>";
+	private static final String SIZES = "<select id='sizes' multiple>"
+			+ "<option value='s' selected>Small</option>"
+			+ "<option value='m'>Medium</option>"
+			+ "<option value='l'>Large</option>"
+			+ "<option value='xl'>Extra large</option>"
+			+ "</select>";
+
+	@Test(dataProvider = "browsers")
+	public void readsNormalizedOptions(String browser) {
+		DropDown colors = colors(open(browser, COLORS));
+
+		assertEquals(colors.getOptionTexts(), Arrays.asList("Red", "Light green", "Blue", "Blue 2"));
+		assertEquals(colors.getOptionValues(), Arrays.asList("r", "g", "b", "B2"));
+		assertEquals(colors.getSelectedTexts(), Collections.singletonList("Red"));
+		assertTrue(colors.getOptionList().get(2).isDisabled());
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsByTextIgnoringCaseAndWhitespace(String browser) {
+		DropDown colors = colors(open(browser, COLORS));
+
+		colors.selectByVisibleText(" light GREEN ", false);
+
+		assertEquals(colors.getSelectedTexts(), Collections.singletonList("Light green"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsByValue(String browser) {
+		DropDown colors = colors(open(browser, COLORS));
+
+		colors.selectByValue("b2", false);
+		assertEquals(colors.getSelectedTexts(), Collections.singletonList("Blue 2"));
+
+		expectThrows(NoSuchElementException.class, () -> colors.selectByValue("b2", true));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsExactlyTheGivenOptionsOfAMultiSelect(String browser) {
+		DropDown sizes = new DropDown(open(browser, SIZES).findElement(By.id("sizes")));
+
+		sizes.selectByVisibleTexts(Arrays.asList("medium", "EXTRA LARGE"), false);
+
+		assertEquals(sizes.getSelectedTexts(), Arrays.asList("Medium", "Extra large"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsEveryMatchOfAMultiSelectAndAddsToTheSelection(String browser) {
+		DropDown sizes = new DropDown(open(browser, SIZES).findElement(By.id("sizes")));
+
+		sizes.selectMatching(".*a.*");
+
+		assertEquals(sizes.getSelectedTexts(), Arrays.asList("Small", "Large", "Extra large"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void refusesDisabledAndUnknownOptions(String browser) {
+		DropDown colors = colors(open(browser, COLORS));
+
+		expectThrows(UnsupportedOperationException.class, () -> colors.selectByVisibleText("Blue", true));
+		expectThrows(NoSuchElementException.class, () -> colors.selectByVisibleText("Purple", true));
+		assertEquals(colors.getSelectedTexts(), Collections.singletonList("Red"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void refusesDisabledAndHiddenSelects(String browser) {
+		WebDriver driver = open(browser, "<select id='disabled' disabled><option>A</option><option>B</option></select>"
+				+ "<div style='display: none'><select id='hidden'><option>A</option><option>B</option></select></div>");
+
+		UnsupportedOperationException disabled = expectThrows(UnsupportedOperationException.class,
+				() -> new DropDown(driver.findElement(By.id("disabled"))).selectByVisibleText("B", true));
+		assertEquals(disabled.getMessage(), "You may not select an option in a disabled select.");
+		UnsupportedOperationException hidden = expectThrows(UnsupportedOperationException.class,
+				() -> new DropDown(driver.findElement(By.id("hidden"))).selectByVisibleText("B", true));
+		assertEquals(hidden.getMessage(), "You may not select an option in a select that is not displayed.");
+	}
+
+	@Test(dataProvider = "browsers")
+	public void refusesToSelectAfterTheOptionsChanged(String browser) {
+		WebDriver driver = open(browser, COLORS);
+		DropDown colors = colors(driver);
+		colors.getOptionList();
+		if (browser.equals(FAKE))
+			((FakeDriver) driver).getDocument().select("#colors option[value=r]").attr("value", "x");
+		else
+			((JavascriptExecutor) driver).executeScript("document.querySelector('#colors option').value = 'x'");
+
+		expectThrows(RuntimeException.class, () -> colors.selectByVisibleText("Red", true));
+		colors.refreshOptions().selectByVisibleText("Red", true);
+		assertEquals(colors.getSelectedTexts(), Collections.singletonList("Red"));
+	}
+
+	@Test
+	public void firesOneChangeEventPerSelection() {
+		WebDriver driver = open(HTMLUNIT, SIZES + "<span id='changes'>0</span><script>"
+				+ "document.getElementById('sizes').addEventListener('change', function() {"
+				+ "  var c = document.getElementById('changes'); c.textContent = Number(c.textContent) + 1; });"
+				+ "</script>");
+		DropDown sizes = new DropDown(driver.findElement(By.id("sizes")));
+
+		sizes.selectByVisibleTexts(Arrays.asList("Medium", "Large"), true);
+		sizes.selectByVisibleTexts(Arrays.asList("Medium", "Large"), true);
+
+		assertEquals(driver.findElement(By.id("changes")).getText(), "1");
+	}
+
+	@Test
+	public void readsOptionsOnceAndSelectsInOneRoundTrip() {
+		WebDriver driver = open(FAKE, SIZES);
+		DropDown sizes = new DropDown(driver.findElement(By.id("sizes")));
+		sizes.getOptionList();
+		long before = commands(driver);
+
+		sizes.selectByVisibleText("Large", true);
+		sizes.selectByValue("xl", true);
+
+		assertEquals(commands(driver) - before, 2);
+	}
+
+	private static DropDown colors(WebDriver driver) {
+		return new DropDown(driver.findElement(By.id("colors")));
+	}
+}
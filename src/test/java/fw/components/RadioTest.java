@@ -0,0 +1,106 @@
+package fw.components;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.expectThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+public class RadioTest extends ComponentTest {
+	private static final String OPTIONS = "<form id='options'>"
+			+ "<input type='radio' name='size' value='small'>"
+			+ "<input type='radio' name='size' value='large' checked>"
+			+ "<input type='radio' name='crust' value='thin'>"
+			+ "<input type='radio' name='crust' value='thick'>"
+			+ "<input type='radio' name='crust' value='stuffed' disabled>"
+			+ "</form>";
+
+	@Test(dataProvider = "browsers")
+	public void readsEveryGroup(String browser) {
+		Radio options = options(open(browser, OPTIONS));
+
+		assertEquals(options.getValues(), Arrays.asList("small", "large", "thin", "thick", "stuffed"));
+		assertEquals(options.selectedValue(), "large");
+		assertEquals(options.selectedValues(), selected("size", "large", "crust", null));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsOneButtonPerGroup(String browser) {
+		Radio options = options(open(browser, OPTIONS));
+
+		Map<String, String> after = options.setState(selected("size", "small", "crust", "thick"));
+
+		assertEquals(after, selected("size", "small", "crust", "thick"));
+		assertEquals(options.selectedValues(), after);
+	}
+
+	@Test(dataProvider = "browsers")
+	public void selectsByKey(String browser) {
+		Radio options = options(open(browser, OPTIONS));
+
+		options.select("thin");
+
+		assertEquals(options.selectedValues(), selected("size", "large", "crust", "thin"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void changesNothingForUnknownOrDisabledButtons(String browser) {
+		Radio options = options(open(browser, OPTIONS));
+
+		expectThrows(RuntimeException.class, () -> options.setState(selected("size", "small", "crust", "deep")));
+		expectThrows(RuntimeException.class, () -> options.setState(selected("size", "small", "crust", "stuffed")));
+		expectThrows(RuntimeException.class, () -> options.setState(selected("size", "thin")));
+		assertEquals(options.selectedValues(), selected("size", "large", "crust", null));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void refusesButtonsThatAreNotDisplayed(String browser) {
+		Radio options = options(open(browser, "<form id='options'>"
+				+ "<input type='radio' name='size' value='small'>"
+				+ "<input type='radio' name='size' value='large' style='visibility: hidden'>"
+				+ "</form>"));
+
+		RuntimeException hidden = expectThrows(UnsupportedOperationException.class, () -> options.select("large"));
+		assertEquals(hidden.getMessage(), "You may not change a radio that is not displayed [large].");
+		options.select("small");
+		assertEquals(options.selectedValue(), "small");
+	}
+
+	@Test(dataProvider = "browsers")
+	public void handlesAListOfButtons(String browser) {
+		Radio crust = new Radio(open(browser, OPTIONS).findElements(By.name("crust")));
+
+		assertNull(crust.selectedValue());
+		crust.select("thick");
+		assertEquals(crust.selectedValues(), Collections.singletonMap("crust", "thick"));
+	}
+
+	@Test
+	public void selectsSeveralGroupsInOneRoundTrip() {
+		WebDriver driver = open(FAKE, OPTIONS);
+		Radio options = options(driver);
+		long before = commands(driver);
+
+		options.setState(selected("size", "small", "crust", "thin"));
+
+		assertEquals(commands(driver) - before, 1);
+	}
+
+	private static Radio options(WebDriver driver) {
+		return new Radio(driver.findElement(By.id("options")));
+	}
+
+	private static Map<String, String> selected(String... namesAndKeys) {
+		Map<String, String> selected = new LinkedHashMap<>();
+		for (int i = 0; i < namesAndKeys.length; i += 2)
+			selected.put(namesAndKeys[i], namesAndKeys[i + 1]);
+		return selected;
+	}
+}
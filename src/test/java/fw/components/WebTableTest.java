@@ -0,0 +1,152 @@
+package fw.components;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+public class WebTableTest extends ComponentTest {
+	private static final String ORDERS = "<table id='orders'>"
+			+ "<thead><tr><th>Order</th><th> Customer </th><th>Status</th></tr></thead>"
+			+ "<tbody>"
+			+ "<tr><td data-id='1'>A-1</td><td>Ann  Lee</td><td class='open'>Open</td></tr>"
+			+ "<tr><td data-id='2'>A-2</td><td>Bob</td><td class='closed'>Closed</td></tr>"
+			+ "<tr><td data-id='3'>A-3</td><td>Ann Lee</td><td class='open'>Open</td></tr>"
+			+ "</tbody>"
+			+ "<tfoot><tr><td colspan='3'>3 orders</td></tr></tfoot>"
+			+ "</table>";
+
+	@Test(dataProvider = "browsers")
+	public void readsHeadersAndBodyRows(String browser) {
+		WebTable orders = orders(open(browser, ORDERS));
+
+		assertEquals(orders.getHeaders(), Arrays.asList("Order", "Customer", "Status"));
+		assertEquals(orders.getRowCount(), 3);
+		assertEquals(orders.getCellText(0, "customer"), "Ann Lee");
+		assertEquals(orders.getColumn("Order"), Arrays.asList("A-1", "A-2", "A-3"));
+		assertEquals(orders.getRow(1), row("Order", "A-2", "Customer", "Bob", "Status", "Closed"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void takesTheHeaderFromTheFirstRowWithoutHead(String browser) {
+		WebTable table = new WebTable(open(browser, "<table id='t'>"
+				+ "<tr><th>Key</th><th>Value</th></tr><tr><td>a</td><td>1</td></tr></table>").findElement(By.id("t")));
+
+		assertEquals(table.getHeaders(), Arrays.asList("Key", "Value"));
+		assertEquals(table.getRows(), Collections.singletonList(row("Key", "a", "Value", "1")));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void findsRowsThroughTheIndex(String browser) {
+		WebTable orders = orders(open(browser, ORDERS)).index("Customer");
+
+		assertEquals(orders.findRowsByValue("Customer", "Ann Lee"), Arrays.asList(0, 2));
+		assertEquals(orders.findRow("Status", "Closed"), 1);
+		assertEquals(orders.findRow("Status", "Lost"), -1);
+		assertEquals(orders.findRows("Order", value -> value.endsWith("3")), Collections.singletonList(2));
+		expectThrows(RuntimeException.class, () -> orders.findRow("Amount", "1"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void readsRequestedAttributes(String browser) {
+		WebTable orders = orders(open(browser, ORDERS)).withAttributes("data-id", "class");
+
+		assertEquals(orders.getCellAttribute(2, "Order", "data-id"), "3");
+		assertEquals(orders.getCellAttribute(1, "Status", "class"), "closed");
+		assertEquals(orders.getCellAttribute(1, "Customer", "class"), null);
+		expectThrows(RuntimeException.class, () -> orders.getCellAttribute(0, "Order", "title"));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void readsAllPages(String browser) {
+		serve("orders-2.html", "<table id='orders'><tr><th>Order</th></tr><tr><td>B-1</td></tr></table>"
+				+ "<a id='next' class='disabled' href='#'>Next</a>");
+		WebDriver driver = open(browser, "<table id='orders'><tr><th>Order</th></tr><tr><td>A-1</td></tr>"
+				+ "<tr><td>A-2</td></tr></table><a id='next' href='orders-2.html'>Next</a>");
+
+		List<Map<String, String>> rows = orders(driver).readAllPages(By.id("orders"), By.id("next"), 5);
+
+		assertEquals(rows, Arrays.asList(row("Order", "A-1"), row("Order", "A-2"), row("Order", "B-1")));
+	}
+
+	@Test(dataProvider = "browsers")
+	public void syncReadsTheTableOnFirstUse(String browser) {
+		WebTable orders = orders(open(browser, ORDERS));
+
+		assertTrue(orders.sync());
+		assertEquals(orders.getColumn("Status"), Arrays.asList("Open", "Closed", "Open"));
+	}
+
+	/**
+	 * The fake driver has no MutationObserver, so only a browser engine covers this
+	 * path. HtmlUnit reports text changes but not added rows.
+	 */
+	@Test
+	public void syncTransfersOnlyChangedRows() {
+		WebDriver driver = open(HTMLUNIT, ORDERS);
+		WebTable orders = orders(driver).index("Status");
+		assertTrue(orders.sync());
+		assertFalse(orders.sync());
+
+		((JavascriptExecutor) driver).executeScript(
+				"document.querySelectorAll('#orders tbody tr')[1].cells[2].firstChild.data = 'Open'");
+
+		assertTrue(orders.sync());
+		assertFalse(orders.sync());
+		assertEquals(orders.getColumn("Status"), Arrays.asList("Open", "Open", "Open"));
+		assertEquals(orders.findRowsByValue("Status", "Open"), Arrays.asList(0, 1, 2));
+		assertEquals(orders.findRow("Status", "Closed"), -1);
+	}
+
+	@Test
+	public void syncKeepsItsStatePerWebTable() {
+		WebDriver driver = open(HTMLUNIT, ORDERS);
+		WebTable first = orders(driver);
+		WebTable second = orders(driver);
+		assertTrue(first.sync());
+		assertTrue(second.sync());
+
+		((JavascriptExecutor) driver).executeScript(
+				"document.querySelectorAll('#orders tbody tr')[1].cells[2].firstChild.data = 'Open'");
+
+		assertTrue(first.sync());
+		assertTrue(second.sync());
+		assertEquals(first.getColumn("Status"), Arrays.asList("Open", "Open", "Open"));
+		assertEquals(second.getColumn("Status"), Arrays.asList("Open", "Open", "Open"));
+	}
+
+	@Test
+	public void readsTheTableInOneRoundTrip() {
+		WebDriver driver = open(FAKE, ORDERS);
+		WebTable orders = orders(driver);
+		long before = commands(driver);
+
+		orders.getRows();
+		orders.findRow("Customer", "Bob");
+		orders.getCellText(2, "Status");
+
+		assertEquals(commands(driver) - before, 1);
+	}
+
+	private static WebTable orders(WebDriver driver) {
+		return new WebTable(driver.findElement(By.id("orders")));
+	}
+
+	private static Map<String, String> row(String... headersAndValues) {
+		Map<String, String> row = new LinkedHashMap<>();
+		for (int i = 0; i < headersAndValues.length; i += 2)
+			row.put(headersAndValues[i], headersAndValues[i + 1]);
+		return row;
+	}
+}
@@ -0,0 +1,61 @@
+package fw.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.expectThrows;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Waits must poll without the implicit wait and leave the driver as they found it.
+ */
+public class WaiterTest {
+    private FakeDriver driver;
+
+    @BeforeMethod
+    public void openPage() {
+        driver = new FakeDriver();
+        driver.loadHtml("<button id='save'>Save</button>");
+        driver.manage().timeouts().implicitlyWait(10, TimeUnit.SECONDS);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void quit() {
+        driver.quit();
+    }
+
+    @Test
+    public void pollsWithoutTheImplicitWaitAndRestoresIt() {
+        long seen = new Waiter(driver).until(d -> ((FakeDriver) d).getImplicitWaitMillis());
+
+        assertEquals(seen, 0);
+        assertEquals(driver.getImplicitWaitMillis(), TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    public void restoresTheImplicitWaitAfterATimeout() {
+        Waiter wait = new Waiter(driver).withTimeout(100, TimeUnit.MILLISECONDS).withImplicitWait(3, TimeUnit.SECONDS);
+
+        expectThrows(TimeoutException.class, () -> wait.present(By.id("missing")));
+        assertFalse(wait.isPresent(By.id("missing")));
+
+        assertEquals(driver.getImplicitWaitMillis(), TimeUnit.SECONDS.toMillis(3));
+    }
+
+    @Test
+    public void leavesAZeroImplicitWaitAlone() {
+        driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS);
+        Waiter wait = new Waiter(driver).withImplicitWait(0, TimeUnit.SECONDS);
+        driver.resetCommandCount();
+
+        wait.present(By.id("save"));
+
+        assertEquals(driver.getCommandCount(), 1);
+    }
+}
@@ -0,0 +1,83 @@
+package fw.files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * fieldEquals and getLong read the raw bytes; they must agree with getString.
+ */
+public class FlatRowTest {
+    private final List<Path> files = new ArrayList<>();
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFiles() throws IOException {
+        for (Path file : files)
+            Files.deleteIfExists(file);
+        files.clear();
+    }
+
+    @Test
+    public void comparesFixedWidthFieldsTrimmedOnBothSides() throws IOException {
+        FlatRow row = FileParser.fixedWidth(write("txt", "   42ab   \n"), 5, 5).rows().findFirst().get();
+
+        assertEquals(row.getString(0), "42");
+        assertTrue(row.fieldEquals(0, "42"));
+        assertEquals(row.getString(1), "ab");
+        assertTrue(row.fieldEquals(1, "ab"));
+        assertFalse(row.fieldEquals(1, "ab   "));
+    }
+
+    @Test
+    public void comparesQuotedFieldsUnescaped() throws IOException {
+        FlatRow row = csv("name,city\n\"say \"\"hi\"\"\",\"Zürich\"\n");
+
+        assertEquals(row.getString("name"), "say \"hi\"");
+        assertTrue(row.fieldEquals("name", "say \"hi\""));
+        assertFalse(row.fieldEquals("name", "say \"\"hi\"\""));
+        assertTrue(row.fieldEquals("city", "Zürich"));
+    }
+
+    @Test
+    public void comparesNullLikeGetString() throws IOException {
+        FlatRow row = csv("name\nAnn\n");
+
+        assertFalse(row.fieldEquals(0, null));
+        assertTrue(row.fieldEquals(1, null));
+        assertFalse(row.fieldEquals(1, "Ann"));
+    }
+
+    @Test
+    public void parsesLongsLikeParseLong() throws IOException {
+        FlatRow row = csv("max,min,over,under,sign\n"
+                + "9223372036854775807,-9223372036854775808,9223372036854775808,-99999999999999999999,-\n");
+
+        assertEquals(row.getLong("max"), Long.MAX_VALUE);
+        assertEquals(row.getLong("min"), Long.MIN_VALUE);
+        expectThrows(NumberFormatException.class, () -> row.getLong("over"));
+        expectThrows(NumberFormatException.class, () -> row.getLong("under"));
+        expectThrows(NumberFormatException.class, () -> row.getLong("sign"));
+    }
+
+    private FlatRow csv(String content) throws IOException {
+        return FileParser.csv(write("csv", content)).rows().findFirst().get();
+    }
+
+    private String write(String extension, String content) throws IOException {
+        Path file = Files.createTempFile("flatrow", "." + extension);
+        files.add(file);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package fw.td;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * The first read of a source streams it, the second records it and the third is
+ * served from the cache; all three must return the same rows.
+ */
+public class TestDataFactoryTest {
+    private static final String[][] ROWS = {
+            {"Name", "Status", "STATUS"},
+            {"ann", "active", "x"},
+            {"bob", "inactive", "y"},
+            {"cid", "Active", "z"}};
+
+    private final List<Path> files = new ArrayList<>();
+
+    @BeforeMethod
+    public void clearCache() {
+        TestDataFactory.clearCache();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFiles() throws IOException {
+        TestDataFactory.clearCache();
+        for (Path file : files)
+            Files.deleteIfExists(file);
+        files.clear();
+    }
+
+    @Test
+    public void readsCachedSheetRowsLikeStreamedOnes() throws IOException {
+        String path = writeWorkbook();
+
+        for (String column : Arrays.asList("status", "STATUS", "Status"))
+            assertEquals(read(TestDataFactory.fromExcel(path, "Users", TestDataFactory.columnEquals(column, "ACTIVE"))),
+                    Arrays.asList("ann active x", "cid Active z"), column);
+    }
+
+    @Test
+    public void readsCachedCsvRowsLikeStreamedOnes() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (String[] row : ROWS)
+            csv.append(String.join(",", row)).append('\n');
+        String path = write("csv", csv.toString());
+
+        for (String column : Arrays.asList("status", "STATUS", "Status"))
+            assertEquals(read(TestDataFactory.fromCsv(path, TestDataFactory.columnEquals(column, "ACTIVE"))),
+                    Arrays.asList("ann active x", "cid Active z"), column);
+    }
+
+    /**
+     * Name, status and the third column of every row, looked up in lower case
+     */
+    private static List<String> read(Iterator<Object[]> rows) {
+        List<String> result = new ArrayList<>();
+        while (rows.hasNext()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> row = (Map<String, Object>) rows.next()[0];
+            List<Object> values = new ArrayList<>(row.values());
+            result.add(row.get("name") + " " + row.get("status") + " " + values.get(2));
+        }
+        return result;
+    }
+
+    private String writeWorkbook() throws IOException {
+        Path file = Files.createTempFile("testdata", ".xlsx");
+        files.add(file);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet sheet = workbook.createSheet("Users");
+            for (int r = 0; r < ROWS.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < ROWS[r].length; c++)
+                    row.createCell(c).setCellValue(ROWS[r][c]);
+            }
+            workbook.write(out);
+        }
+        return file.toString();
+    }
+
+    private String write(String extension, String content) throws IOException {
+        Path file = Files.createTempFile("testdata", "." + extension);
+        files.add(file);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+}
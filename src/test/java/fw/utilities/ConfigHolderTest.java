@@ -0,0 +1,57 @@
+package fw.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * System properties are read live and never copied into the snapshot.
+ */
+public class ConfigHolderTest {
+    private static final String KEY = "configholdertest.Value";
+
+    @AfterMethod(alwaysRun = true)
+    public void clearProperty() {
+        System.clearProperty(KEY);
+        ConfigHolder.getInstance().reload();
+    }
+
+    @Test
+    public void readsSystemPropertiesLiveIgnoringCase() {
+        ConfigHolder config = ConfigHolder.getInstance();
+        assertNull(config.getProperty("CONFIGHOLDERTEST.VALUE"));
+
+        System.setProperty(KEY, "first");
+        assertEquals(config.getProperty("CONFIGHOLDERTEST.VALUE"), "first");
+        System.setProperty(KEY, "second");
+        assertEquals(config.getProperty("configholdertest.value"), "second");
+        assertNull(config.getProperty(KEY, false));
+
+        System.clearProperty(KEY);
+        assertNull(config.getProperty(KEY));
+    }
+
+    @Test
+    public void reportsChangedSystemPropertiesOnReload() {
+        ConfigHolder config = ConfigHolder.getInstance();
+        config.reload();
+        Set<String> changed = new HashSet<>();
+        ConfigChangeListener listener = changed::addAll;
+        config.addChangeListener(listener);
+        try {
+            System.setProperty(KEY, "on");
+            config.reload();
+        } finally {
+            config.removeChangeListener(listener);
+        }
+
+        assertTrue(changed.contains("configholdertest.value"), changed.toString());
+        assertNull(config.getProperty(KEY, false));
+    }
+}
@@ -0,0 +1,120 @@
+package fw.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.expectThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Round trips with a throwaway PKCS12 keystore, created with keytool as the class
+ * documentation describes.
+ */
+public class CryptographyTest {
+    private static final String PASSWORD = "changeit";
+    private static final String ALIAS = "fw";
+    private static final String[] PROPERTIES = {"crypto.keystore.path", "crypto.keystore.password",
+            "crypto.keystore.alias", "cryptographytest.secret", "cryptographytest.broken"};
+
+    private Path directory;
+    private Path keystore;
+    private KeyPair keyPair;
+
+    @BeforeClass
+    public void createKeystore() throws Exception {
+        directory = Files.createTempDirectory("crypto");
+        keystore = directory.resolve("secrets.p12");
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool"
+                + (System.getProperty("os.name").toLowerCase(Locale.ROOT).startsWith("windows") ? ".exe" : "");
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", ALIAS, "-keyalg", "RSA",
+                "-keysize", "2048", "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD, "-dname", "CN=fw", "-validity", "1", "-noprompt")
+                .redirectErrorStream(true).redirectOutput(directory.resolve("keytool.log").toFile()).start();
+        if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0)
+            throw new IllegalStateException("keytool failed: "
+                    + new String(Files.readAllBytes(directory.resolve("keytool.log")), StandardCharsets.UTF_8));
+        keyPair = Cryptography.loadKeyPair(keystore, PASSWORD.toCharArray(), ALIAS, null);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void clearProperties() {
+        for (String property : PROPERTIES)
+            System.clearProperty(property);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteKeystore() throws IOException {
+        Cryptography.clear();
+        if (directory == null)
+            return;
+        for (File file : directory.toFile().listFiles())
+            Files.delete(file.toPath());
+        Files.delete(directory);
+    }
+
+    @Test
+    public void decryptsWhatItEncrypted() throws IOException {
+        assertEquals(Cryptography.decryptValue(keyPair.getPrivate(),
+                Cryptography.encryptValue(keyPair.getPublic(), "pässword")), "pässword");
+
+        byte[] large = new byte[100000];
+        Arrays.fill(large, (byte) 7);
+        assertEquals(Cryptography.decryptHybrid(keyPair.getPrivate(),
+                Cryptography.encryptHybrid(keyPair.getPublic(), large)), large);
+
+        Path plain = Files.write(directory.resolve("credentials.properties"),
+                "user=ann\npassword=secret\n".getBytes(StandardCharsets.UTF_8));
+        Path encrypted = directory.resolve("credentials.enc");
+        Cryptography.encryptFile(plain, encrypted, keyPair.getPublic());
+        Map<String, String> secrets = Cryptography.loadSecrets(encrypted, keyPair.getPrivate());
+        assertEquals(secrets.get("user"), "ann");
+        assertEquals(Cryptography.getSecret("password"), "secret");
+    }
+
+    @Test
+    public void rejectsTamperedCipherText() {
+        byte[] encrypted = Cryptography.encryptHybrid(keyPair.getPublic(), "secret".getBytes(StandardCharsets.UTF_8));
+        encrypted[encrypted.length - 1] ^= 1;
+
+        RuntimeException e = expectThrows(RuntimeException.class,
+                () -> Cryptography.decryptHybrid(keyPair.getPrivate(), encrypted));
+        assertEquals(e.getMessage(), "Unable to decrypt data; it was changed or encrypted for another key.");
+    }
+
+    @Test
+    public void rejectsAnotherVersion() {
+        byte[] encrypted = Cryptography.encryptHybrid(keyPair.getPublic(), "secret".getBytes(StandardCharsets.UTF_8));
+        encrypted[0] = 2;
+
+        RuntimeException e = expectThrows(RuntimeException.class,
+                () -> Cryptography.decryptHybrid(keyPair.getPrivate(), encrypted));
+        assertEquals(e.getMessage(), "Data is not in the hybrid encryption format.");
+    }
+
+    @Test
+    public void decryptsEncValuesThroughConfigHolder() {
+        System.setProperty("crypto.keystore.path", keystore.toString());
+        System.setProperty("crypto.keystore.password", PASSWORD);
+        System.setProperty("crypto.keystore.alias", ALIAS);
+        System.setProperty("cryptographytest.secret", "ENC(" + Cryptography.encryptValue(keyPair.getPublic(), "s3cret") + ")");
+        System.setProperty("cryptographytest.broken", "ENC(bm90IGVuY3J5cHRlZA==)");
+        ConfigHolder config = ConfigHolder.getInstance();
+
+        assertEquals(config.getProperty("CryptographyTest.Secret"), "s3cret");
+        RuntimeException e = expectThrows(RuntimeException.class, () -> config.getProperty("cryptographytest.broken"));
+        assertEquals(e.getMessage(), "Unable to decrypt value of property 'cryptographytest.broken'.");
+    }
+}
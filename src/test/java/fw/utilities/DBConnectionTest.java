@@ -0,0 +1,219 @@
+package fw.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the pool against an in-memory H2 database. Pools have a single connection,
+ * so a connection that is not returned makes the next borrow wait.
+ */
+public class DBConnectionTest {
+    private static final String URL = "jdbc:h2:mem:dbconnection;DB_CLOSE_DELAY=-1";
+    private static final String INSERT = "insert into orders (id, status) values (?, ?)";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "db-test");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private DBConnection db;
+
+    @BeforeMethod
+    public void createTable() {
+        db = new DBConnection(URL, "sa", "", 1, null, TimeUnit.MINUTES.toMillis(5), 8);
+        db.update("create table orders (id int primary key, status varchar(20))");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void dropTable() {
+        db.update("drop table orders");
+        db.close();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void reusesReturnedConnections() throws Exception {
+        Connection first = db.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        first.close();
+
+        try (Connection second = db.getConnection()) {
+            assertSame(second.unwrap(Connection.class), physical);
+            assertNotSame(second, first);
+        }
+        assertTrue(first.isClosed());
+        expectThrows(SQLException.class, first::createStatement);
+    }
+
+    @Test
+    public void waitsForAConnectionToBeReturned() throws Exception {
+        Connection borrowed = db.getConnection();
+        Future<Connection> waiting = executor.submit(db::getConnection);
+        expectThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+
+        borrowed.close();
+
+        waiting.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void rollsBackOpenTransactionsOnReturn() throws Exception {
+        try (Connection connection = db.getConnection();
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            connection.setAutoCommit(false);
+            insert.setInt(1, 1);
+            insert.setString(2, "open");
+            insert.executeUpdate();
+        }
+
+        try (Connection connection = db.getConnection()) {
+            assertTrue(connection.getAutoCommit());
+        }
+        assertEquals(count(), 0L);
+    }
+
+    @Test
+    public void reusesPreparedStatementsPerConnection() throws Exception {
+        try (Connection connection = db.getConnection()) {
+            PreparedStatement first = connection.prepareStatement(INSERT);
+            PreparedStatement nested = connection.prepareStatement(INSERT);
+            assertNotSame(nested, first);
+            nested.close();
+            first.setInt(1, 1);
+            first.close();
+
+            PreparedStatement again = connection.prepareStatement(INSERT);
+            assertSame(again, first);
+            assertSame(again.getConnection(), connection);
+            // parameters were cleared when the statement went back to the cache
+            expectThrows(SQLException.class, again::executeUpdate);
+            again.close();
+        }
+
+        try (Connection connection = db.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            statement.setInt(1, 2);
+            statement.setString(2, "open");
+            assertEquals(statement.executeUpdate(), 1);
+        }
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedStatement() throws Exception {
+        db.close();
+        db = new DBConnection(URL, "sa", "", 1, null, TimeUnit.MINUTES.toMillis(5), 1);
+        try (Connection connection = db.getConnection()) {
+            PreparedStatement first = connection.prepareStatement("select 1");
+            first.close();
+            connection.prepareStatement("select 2").close();
+
+            PreparedStatement again = connection.prepareStatement("select 1");
+            assertNotSame(again, first);
+            assertTrue(first.isClosed());
+            again.close();
+        }
+    }
+
+    @Test
+    public void batchesRowsInOneTransaction() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 1201; i++)
+            rows.add(new Object[]{i, i % 2 == 0 ? "open" : "closed"});
+
+        int[] counts = db.batch(INSERT, rows);
+
+        assertEquals(counts.length, 1201);
+        assertTrue(Arrays.stream(counts).allMatch(count -> count == 1));
+        assertEquals(count(), 1201L);
+        assertEquals(db.query("select count(*) from orders where status = ?", r -> r.getLong(1), "open"),
+                Collections.singletonList(601L));
+    }
+
+    @Test
+    public void rollsBackTheWholeBatchOnFailure() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 700; i++)
+            rows.add(new Object[]{i, "open"});
+        rows.add(new Object[]{0, "duplicate"});
+
+        expectThrows(RuntimeException.class, () -> db.batch(INSERT, rows));
+
+        assertEquals(count(), 0L);
+    }
+
+    @Test
+    public void queriesRowsAsMaps() {
+        db.update(INSERT, 1, "open");
+        db.update(INSERT, 2, "closed");
+
+        List<Map<String, Object>> rows = db.query("select id, status from orders where id > ? order by id",
+                DBConnection::toMap, 0);
+
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("ID", 1);
+        first.put("STATUS", "open");
+        assertEquals(rows.size(), 2);
+        assertEquals(rows.get(0), first);
+    }
+
+    @Test
+    public void returnsTheConnectionWhenTheStreamIsClosed() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 250; i++)
+            rows.add(new Object[]{i, "open"});
+        db.batch(INSERT, rows);
+
+        try (Stream<Integer> ids = db.stream("select id from orders order by id", r -> r.getInt(1))) {
+            assertEquals(ids.limit(3).collect(Collectors.toList()), Arrays.asList(0, 1, 2));
+            Future<Connection> waiting = executor.submit(db::getConnection);
+            expectThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+            waiting.cancel(true);
+        }
+
+        Future<Connection> next = executor.submit(db::getConnection);
+        next.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void refusesConnectionsOnceClosed() {
+        db.close();
+
+        expectThrows(SQLException.class, db::getConnection);
+        db = new DBConnection(URL, "sa", "", 1, null, TimeUnit.MINUTES.toMillis(5), 8);
+    }
+
+    private long count() {
+        return db.query("select count(*) from orders", r -> r.getLong(1)).get(0);
+    }
+}
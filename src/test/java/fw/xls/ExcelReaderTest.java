@@ -0,0 +1,148 @@
+package fw.xls;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Reads a workbook written by POI: shared strings, styled dates, blank and missing
+ * cells, headers looked up ignoring case.
+ */
+public class ExcelReaderTest {
+    private static final Date JOINED = new GregorianCalendar(2019, Calendar.MARCH, 4, 10, 30, 0).getTime();
+
+    private Path file;
+
+    @BeforeClass
+    public void writeWorkbook() throws IOException {
+        file = Files.createTempFile("reader", ".xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            XSSFSheet users = workbook.createSheet("Users");
+            Row header = users.createRow(0);
+            String[] headers = {"Name", "Joined", "Active", "Score", "Note", "NAME"};
+            for (int i = 0; i < headers.length; i++)
+                header.createCell(i).setCellValue(headers[i]);
+
+            Row ann = users.createRow(1);
+            ann.createCell(0).setCellValue("ann");
+            ann.createCell(1).setCellValue(JOINED);
+            ann.getCell(1).setCellStyle(dateStyle);
+            ann.createCell(2).setCellValue(true);
+            ann.createCell(3).setCellValue(42);
+            ann.createCell(4);
+            ann.createCell(5).setCellValue("ann");
+
+            // no cells for Joined, Score and Note
+            Row bob = users.createRow(3);
+            bob.createCell(0).setCellValue("bob");
+            bob.createCell(2).setCellValue(false);
+            bob.createCell(5).setCellValue("second name");
+
+            workbook.createSheet("Empty");
+            workbook.write(out);
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteWorkbook() throws IOException {
+        if (file != null)
+            Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void listsAndOpensSheetsIgnoringCase() {
+        try (ExcelReader reader = new ExcelReader(file.toString())) {
+            assertEquals(reader.getSheetNames(), Arrays.asList("Users", "Empty"));
+            assertEquals(reader.getSheet("users").getName(), "Users");
+            assertEquals(reader.getSheet(1).getName(), "Empty");
+            assertEquals(reader.getSheet("Empty").getHeaders(), Arrays.asList());
+            expectThrows(RuntimeException.class, () -> reader.getSheet("Orders"));
+        }
+    }
+
+    @Test
+    public void looksUpHeadersIgnoringCaseFirstHeaderFirst() {
+        try (ExcelReader reader = new ExcelReader(file.toString())) {
+            ExcelSheet users = reader.getSheet("Users");
+
+            assertEquals(users.getHeaders(), Arrays.asList("Name", "Joined", "Active", "Score", "Note", "NAME"));
+            assertEquals(users.getColumnIndex("name"), 0);
+            assertEquals(users.getColumnIndex("SCORE"), 3);
+            assertEquals(users.getColumnIndex("Amount"), -1);
+            ExcelRow bob = rows(users).get(1);
+            assertEquals(bob.getString("NAME"), "bob");
+            assertEquals(bob.get(5), "second name");
+        }
+    }
+
+    @Test
+    public void readsSharedStringsNumbersBooleansAndDates() {
+        try (ExcelReader reader = new ExcelReader(file.toString())) {
+            ExcelRow ann = rows(reader.getSheet("Users")).get(0);
+
+            assertEquals(ann.getRowNum(), 2);
+            assertEquals(ann.getString("name"), "ann");
+            assertEquals(ann.get(5), "ann");
+            assertEquals(ann.getDate("joined"), JOINED);
+            assertEquals(ann.getBoolean("active"), Boolean.TRUE);
+            assertEquals(ann.getDouble("score"), 42.0);
+            assertEquals(ann.getString("score"), "42");
+        }
+    }
+
+    @Test
+    public void readsBlankAndMissingCellsAsNull() {
+        try (ExcelReader reader = new ExcelReader(file.toString())) {
+            List<ExcelRow> rows = rows(reader.getSheet("Users"));
+            ExcelRow bob = rows.get(1);
+
+            assertEquals(rows.size(), 2);
+            assertNull(rows.get(0).get("Note"));
+            assertTrue(rows.get(0).containsKey("note"));
+            assertEquals(bob.getRowNum(), 4);
+            assertNull(bob.getDate("Joined"));
+            assertNull(bob.getDouble("Score"));
+            assertEquals(bob.getBoolean("Active"), Boolean.FALSE);
+            assertFalse(bob.containsKey("Amount"));
+        }
+    }
+
+    @Test
+    public void filtersRowsWhileParsing() {
+        try (ExcelReader reader = new ExcelReader(file.toString());
+                Stream<ExcelRow> rows = reader.getSheet("Users").rows(row -> Boolean.FALSE.equals(row.getBoolean("Active")))) {
+            assertEquals(rows.map(row -> row.getString("Name")).collect(Collectors.toList()), Arrays.asList("bob"));
+        }
+    }
+
+    private static List<ExcelRow> rows(ExcelSheet sheet) {
+        try (Stream<ExcelRow> rows = sheet.rows()) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+}
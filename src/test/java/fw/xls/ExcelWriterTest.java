@@ -0,0 +1,135 @@
+package fw.xls;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class ExcelWriterTest {
+    private final List<Path> files = new ArrayList<>();
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFiles() throws IOException {
+        for (Path file : files)
+            Files.deleteIfExists(file);
+        files.clear();
+    }
+
+    @Test
+    public void writesRowsThatExcelReaderReadsBack() throws IOException {
+        Path file = newFile();
+        Date finished = new GregorianCalendar(2019, Calendar.MARCH, 4, 10, 30, 15).getTime();
+
+        try (ExcelWriter writer = new ExcelWriter(file.toString(), "Results",
+                Arrays.asList("Test", "Passed", "Duration", "Finished", "Screenshot"), 2)) {
+            writer.append("login", true, 1250, finished, null);
+            for (int i = 0; i < 5; i++)
+                writer.append("search " + i, false, 10.5, null, "search-" + i + ".png");
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("screenshot", "ignored, headers are matched exactly");
+            row.put("Test", "logout");
+            row.put("Unknown", "dropped");
+            writer.append(row);
+        }
+
+        try (ExcelReader reader = new ExcelReader(file.toString())) {
+            ExcelSheet results = reader.getSheet("Results");
+            assertEquals(results.getHeaders(), Arrays.asList("Test", "Passed", "Duration", "Finished", "Screenshot"));
+            List<ExcelRow> rows = new ArrayList<>();
+            results.forEach(rows::add);
+
+            assertEquals(rows.size(), 7);
+            ExcelRow login = rows.get(0);
+            assertEquals(login.getString("test"), "login");
+            assertEquals(login.getBoolean("passed"), Boolean.TRUE);
+            assertEquals(login.getDouble("duration"), 1250.0);
+            assertEquals(login.getDate("finished"), finished);
+            assertEquals(login.get("screenshot"), null);
+            assertEquals(rows.get(5).getString("Screenshot"), "search-4.png");
+            assertEquals(rows.get(5).getDouble("Duration"), 10.5);
+            assertEquals(rows.get(6).getString("Test"), "logout");
+            assertEquals(rows.get(6).get("Screenshot"), null);
+        }
+    }
+
+    @Test
+    public void reportsAFailedRowOnThatRowAndWritesTheRest() throws IOException {
+        Path file = newFile();
+        char[] tooLong = new char[32768];
+        Arrays.fill(tooLong, 'x');
+
+        try (ExcelWriter writer = new ExcelWriter(file.toString(), "Results", Arrays.asList("Test", "Output"))) {
+            writer.append("first", "ok");
+            writer.append("second", new String(tooLong));
+            writer.append("third", "ok");
+        }
+
+        try (InputStream in = Files.newInputStream(file); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheet("Results");
+            assertEquals(sheet.getLastRowNum(), 3);
+            assertEquals(sheet.getRow(1).getCell(0).getStringCellValue(), "first");
+            assertTrue(sheet.getRow(2).getCell(0).getStringCellValue().startsWith("Row could not be written: "));
+            assertEquals(sheet.getRow(3).getCell(0).getStringCellValue(), "third");
+        }
+    }
+
+    @Test
+    public void writesEveryRowAcceptedBeforeClose() throws Exception {
+        Path file = newFile();
+        ExcelWriter writer = new ExcelWriter(file.toString(), "Results", Arrays.asList("Thread", "Row"));
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; ; i++) {
+                        writer.append(id, i);
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        Thread.sleep(50);
+        writer.close();
+        for (Thread thread : threads)
+            thread.join();
+
+        expectThrows(IllegalStateException.class, () -> writer.append("late", 0));
+        try (InputStream in = Files.newInputStream(file); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(workbook.getSheet("Results").getLastRowNum(), accepted.get());
+        }
+    }
+
+    private Path newFile() throws IOException {
+        Path file = Files.createTempFile("results", ".xlsx");
+        files.add(file);
+        return file;
+    }
+}
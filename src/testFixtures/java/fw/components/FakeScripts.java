@@ -0,0 +1,260 @@
+package fw.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jsoup.nodes.Element;
+
+import fw.core.FakeDom;
+import fw.core.FakeDriver;
+
+/**
+ * Java versions of the component scripts, so that DropDown, WebTable, CheckBox and
+ * Radio work on a {@link FakeDriver} with the same number of round-trips as in a
+ * browser. Found by FakeDriver through META-INF/services. The component tests run
+ * against a browser engine as well, which keeps these versions in line with the scripts.
+ */
+public final class FakeScripts implements FakeDriver.ScriptLibrary {
+
+	@Override
+	public void register() {
+		FakeDriver.registerScript(DropDown.OPTIONS_SCRIPT, (driver, args) -> options(element(args, 0)));
+		FakeDriver.registerScript(DropDown.SELECT_SCRIPT, (driver, args) -> select(element(args, 0),
+				(List<?>) args.get(1), (List<?>) args.get(2), Boolean.TRUE.equals(args.get(3))));
+		FakeDriver.registerScript(WebTable.READ_SCRIPT, (driver, args) -> readTable(element(args, 0), names(args)));
+		// there is no MutationObserver, which the script answers with a full read
+		FakeDriver.registerScript(WebTable.SYNC_SCRIPT, (driver, args) -> {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("full", readTable(element(args, 0), names(args)));
+			result.put("observed", false);
+			return result;
+		});
+		FakeDriver.registerScript(InputGroup.GROUP_SCRIPT, (driver, args) -> group(element(args, 0),
+				(List<?>) args.get(1), String.valueOf(args.get(2)), (Map<?, ?>) args.get(3),
+				Boolean.TRUE.equals(args.get(4))));
+	}
+
+	private static List<Object> options(Element select) {
+		List<Object> result = new ArrayList<>();
+		Set<Element> selected = FakeDom.selectedOptions(select);
+		for (Element option : FakeDom.options(select)) {
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("value", FakeDom.value(option));
+			item.put("text", FakeDom.normalize(option.text()));
+			item.put("selected", selected.contains(option));
+			item.put("disabled", option.hasAttr("disabled"));
+			result.add(item);
+		}
+		return result;
+	}
+
+	private static Object select(Element select, List<?> indexes, List<?> values, boolean exclusive) {
+		if (!FakeDom.isEnabled(select))
+			return "disabled";
+		if (!FakeDom.isDisplayed(select))
+			return "hidden";
+		List<Element> options = FakeDom.options(select);
+		List<Element> chosen = new ArrayList<>();
+		for (int i = 0; i < indexes.size(); i++) {
+			int index = ((Number) indexes.get(i)).intValue();
+			if (index < 0 || index >= options.size() || !FakeDom.value(options.get(index)).equals(values.get(i)))
+				return false;
+			chosen.add(options.get(index));
+		}
+		if (exclusive) {
+			for (Element option : options) {
+				if (!chosen.contains(option))
+					option.removeAttr("selected");
+			}
+		}
+		for (Element option : chosen)
+			FakeDom.setSelected(option, true);
+		return true;
+	}
+
+	private static Map<String, Object> readTable(Element table, List<String> names) {
+		Element head = null;
+		List<Element> body = new ArrayList<>();
+		List<Element> headRows = new ArrayList<>();
+		for (Element child : table.children()) {
+			switch (child.tagName()) {
+				case "tr":
+					body.add(child);
+					break;
+				case "thead":
+					if (head == null)
+						head = child;
+					addRows(child, child == head ? headRows : body);
+					break;
+				case "tbody":
+					addRows(child, body);
+					break;
+				case "tfoot":
+				default:
+					break;
+			}
+		}
+
+		Element headerRow = headRows.isEmpty() ? null : headRows.get(headRows.size() - 1);
+		if (headerRow == null && !body.isEmpty() && body.get(0).getElementsByTag("td").isEmpty()
+				&& !body.get(0).getElementsByTag("th").isEmpty())
+			headerRow = body.remove(0);
+
+		List<String> headers = new ArrayList<>();
+		if (headerRow != null) {
+			for (Element cell : cells(headerRow))
+				headers.add(FakeDom.cellText(cell));
+		}
+
+		List<Object> rows = new ArrayList<>();
+		List<Object> attributes = new ArrayList<>();
+		for (Element row : body) {
+			List<String> texts = new ArrayList<>();
+			List<Object> attributeRow = new ArrayList<>();
+			for (Element cell : cells(row)) {
+				texts.add(FakeDom.cellText(cell));
+				if (!names.isEmpty()) {
+					Map<String, Object> values = new LinkedHashMap<>();
+					for (String name : names)
+						values.put(name, cell.hasAttr(name) ? cell.attr(name) : null);
+					attributeRow.add(values);
+				}
+			}
+			rows.add(texts);
+			attributes.add(attributeRow);
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("headers", headers);
+		result.put("rows", rows);
+		result.put("attributes", names.isEmpty() ? null : attributes);
+		return result;
+	}
+
+	private static Map<String, Object> group(Element root, List<?> list, String type, Map<?, ?> desired,
+			boolean qualified) {
+		if (desired == null)
+			desired = Collections.emptyMap();
+		List<Element> inputs = new ArrayList<>();
+		if (list != null && !list.isEmpty()) {
+			for (Object input : list)
+				inputs.add((Element) input);
+		} else if (root.tagName().equals("input")) {
+			inputs.add(root);
+		} else {
+			for (Element input : root.getElementsByTag("input")) {
+				if (type.equals(FakeDom.type(input)))
+					inputs.add(input);
+			}
+		}
+
+		List<Map<String, Object>> state = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		List<Integer> toClick = new ArrayList<>();
+		List<String> blocked = new ArrayList<>();
+		List<String> hidden = new ArrayList<>();
+		for (int i = 0; i < inputs.size(); i++) {
+			Element input = inputs.get(i);
+			String key = keyOf(input, i);
+			String name = input.attr("name");
+			String lookup = qualified || desired.containsKey(name + "=" + key) ? name + "=" + key : key;
+			boolean disabled = input.hasAttr("disabled");
+			boolean checked = FakeDom.isSelected(input);
+
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("key", key);
+			item.put("name", name);
+			item.put("checked", checked);
+			item.put("disabled", disabled);
+			state.add(item);
+
+			boolean explicit = desired.containsKey(lookup);
+			Object want = explicit ? desired.get(lookup)
+					: desired.containsKey(InputGroup.ALL) ? desired.get(InputGroup.ALL) : null;
+			if (want == null)
+				continue;
+			String refused = explicit && want.equals(checked) ? null
+					: !FakeDom.isEnabled(input) ? "disabled" : !FakeDom.isDisplayed(input) ? "hidden" : null;
+			if (!explicit && refused != null)
+				continue;
+			seen.add(explicit ? lookup : InputGroup.ALL);
+			if (want.equals(checked))
+				continue;
+			if ("disabled".equals(refused))
+				blocked.add(lookup);
+			else if (refused != null)
+				hidden.add(lookup);
+			else
+				toClick.add(i);
+		}
+
+		List<String> missing = new ArrayList<>();
+		for (Object key : desired.keySet()) {
+			if (!InputGroup.ALL.equals(key) && !seen.contains(String.valueOf(key)))
+				missing.add(String.valueOf(key));
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("inputs", state);
+		result.put("missing", missing);
+		result.put("blocked", blocked);
+		result.put("hidden", hidden);
+		if (!missing.isEmpty() || !blocked.isEmpty() || !hidden.isEmpty()) {
+			result.put("clicked", 0);
+			return result;
+		}
+
+		for (int index : toClick)
+			FakeDom.click(inputs.get(index));
+		// clicking a radio button also clears the others of its group
+		for (int i = 0; i < inputs.size(); i++)
+			state.get(i).put("checked", FakeDom.isSelected(inputs.get(i)));
+		result.put("clicked", toClick.size());
+		return result;
+	}
+
+	private static String keyOf(Element input, int index) {
+		String value = input.attr("value");
+		if (!value.isEmpty())
+			return value;
+		if (!input.id().isEmpty())
+			return input.id();
+		Element label = FakeDom.labelOf(input);
+		if (label != null && !FakeDom.normalize(label.wholeText()).isEmpty())
+			return FakeDom.normalize(label.wholeText());
+		return String.valueOf(index);
+	}
+
+	private static void addRows(Element section, List<Element> rows) {
+		for (Element row : section.children()) {
+			if (row.tagName().equals("tr"))
+				rows.add(row);
+		}
+	}
+
+	private static List<Element> cells(Element row) {
+		List<Element> cells = new ArrayList<>();
+		for (Element cell : row.children()) {
+			if (cell.tagName().equals("td") || cell.tagName().equals("th"))
+				cells.add(cell);
+		}
+		return cells;
+	}
+
+	private static Element element(List<Object> args, int index) {
+		return (Element) args.get(index);
+	}
+
+	private static List<String> names(List<Object> args) {
+		List<String> names = new ArrayList<>();
+		if (args.size() > 1 && args.get(1) != null) {
+			for (Object name : (List<?>) args.get(1))
+				names.add(String.valueOf(name));
+		}
+		return names;
+	}
+}
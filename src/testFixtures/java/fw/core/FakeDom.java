@@ -0,0 +1,361 @@
+package fw.core;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Browser behaviour of the parsed DOM behind {@link FakeDriver}: visibility, visible
+ * text, form control state and what a click changes. State lives in the attributes
+ * (checked, selected, value), so the page source always shows the current state.
+ * No page JavaScript runs and no events are fired.
+ */
+public final class FakeDom {
+    private static final Set<String> HIDDEN_TAGS = new HashSet<>(Arrays.asList(
+            "head", "script", "style", "template", "title", "meta", "link", "base", "noscript"));
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "caption", "dd", "div", "dl", "dt", "fieldset",
+            "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr",
+            "li", "main", "nav", "ol", "option", "p", "pre", "section", "table", "tbody", "tfoot", "thead",
+            "tr", "ul"));
+
+    private FakeDom() {
+    }
+
+    /**
+     * Trims and collapses whitespace, including non-breaking spaces, into one space
+     *
+     * @param text
+     * @return
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : text.replaceAll("[\\s\\u00A0]+", " ").trim();
+    }
+
+    /**
+     * False if the element or one of its ancestors is hidden by its tag, the hidden
+     * attribute, type=hidden or an inline display:none / visibility:hidden
+     *
+     * @param element
+     * @return
+     */
+    public static boolean isDisplayed(Element element) {
+        for (Element e = element; e != null; e = e.parent()) {
+            if (isHiddenItself(e))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Text as a browser renders it: hidden parts left out, block elements on their own
+     * lines, whitespace collapsed within lines
+     *
+     * @param element
+     * @return
+     */
+    public static String visibleText(Element element) {
+        if (!isDisplayed(element))
+            return "";
+        StringBuilder text = new StringBuilder();
+        appendVisible(element, text);
+
+        StringBuilder result = new StringBuilder();
+        for (String line : text.toString().split("\n")) {
+            line = normalize(line);
+            if (line.isEmpty())
+                continue;
+            if (result.length() > 0)
+                result.append('\n');
+            result.append(line);
+        }
+        return result.toString();
+    }
+
+    /**
+     * innerText of an element, or its textContent when that is empty, on one line
+     *
+     * @param element
+     * @return
+     */
+    public static String cellText(Element element) {
+        String text = normalize(visibleText(element));
+        return text.isEmpty() ? normalize(element.wholeText()) : text;
+    }
+
+    public static boolean isEnabled(Element element) {
+        for (Element e = element; e != null; e = e.parent()) {
+            if (e.hasAttr("disabled") && (e == element || e.tagName().equals("select")
+                    || e.tagName().equals("optgroup") || e.tagName().equals("fieldset")))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checked state of checkboxes and radios, selectedness of options
+     *
+     * @param element
+     * @return
+     */
+    public static boolean isSelected(Element element) {
+        if (element.tagName().equals("option"))
+            return isOptionSelected(element);
+        if (isCheckable(element))
+            return element.hasAttr("checked");
+        return false;
+    }
+
+    /**
+     * The value property: the text for options without a value attribute, the content
+     * of a textarea, "on" for checkboxes and radios without a value
+     *
+     * @param element
+     * @return
+     */
+    public static String value(Element element) {
+        switch (element.tagName()) {
+            case "option":
+                return element.hasAttr("value") ? element.attr("value") : normalize(element.text());
+            case "textarea":
+                return element.hasAttr("value") ? element.attr("value") : element.wholeText();
+            case "input":
+                if (element.hasAttr("value"))
+                    return element.attr("value");
+                return isCheckable(element) ? "on" : "";
+            case "select":
+                for (Element option : options(element)) {
+                    if (isOptionSelected(option))
+                        return value(option);
+                }
+                return "";
+            default:
+                return element.hasAttr("value") ? element.attr("value") : null;
+        }
+    }
+
+    public static void setValue(Element element, String value) {
+        element.attr("value", value);
+    }
+
+    /**
+     * Options of a select, including those in option groups, in document order
+     *
+     * @param select
+     * @return
+     */
+    public static Elements options(Element select) {
+        return select.getElementsByTag("option");
+    }
+
+    public static boolean isMultiple(Element select) {
+        return select.hasAttr("multiple");
+    }
+
+    /**
+     * Selects the option; in a single select every other option is deselected
+     *
+     * @param option
+     * @param selected
+     */
+    public static void setSelected(Element option, boolean selected) {
+        Element select = selectOf(option);
+        if (selected && select != null && !isMultiple(select)) {
+            for (Element other : options(select))
+                other.removeAttr("selected");
+        }
+        if (selected)
+            option.attr("selected", true);
+        else
+            option.removeAttr("selected");
+    }
+
+    /**
+     * Sets the checked state; checking a radio unchecks the others of its group
+     *
+     * @param input
+     * @param checked
+     */
+    public static void setChecked(Element input, boolean checked) {
+        if (checked && "radio".equals(type(input)) && !input.attr("name").isEmpty()) {
+            Element scope = input.closest("form");
+            if (scope == null)
+                scope = input.ownerDocument() != null ? input.ownerDocument() : input;
+            for (Element other : scope.getElementsByTag("input")) {
+                if (other != input && "radio".equals(type(other)) && other.attr("name").equals(input.attr("name")))
+                    other.removeAttr("checked");
+            }
+        }
+        if (checked)
+            input.attr("checked", true);
+        else
+            input.removeAttr("checked");
+    }
+
+    /**
+     * What a click changes in the DOM: checkboxes toggle, radios are checked, options
+     * are selected (toggled in a multi-select) and labels click their control. Clicks on
+     * disabled elements change nothing.
+     *
+     * @param element
+     */
+    public static void click(Element element) {
+        if (!isEnabled(element))
+            return;
+        if (element.tagName().equals("option")) {
+            Element select = selectOf(element);
+            setSelected(element, select == null || !isMultiple(select) || !isOptionSelected(element));
+        } else if ("checkbox".equals(type(element))) {
+            setChecked(element, !element.hasAttr("checked"));
+        } else if ("radio".equals(type(element))) {
+            setChecked(element, true);
+        } else if (element.tagName().equals("label")) {
+            Element control = controlOf(element);
+            if (control != null)
+                click(control);
+        }
+    }
+
+    /**
+     * Label of a form control: a label pointing at its id, or the label around it
+     *
+     * @param control
+     * @return
+     */
+    public static Element labelOf(Element control) {
+        if (!control.id().isEmpty() && control.ownerDocument() != null) {
+            for (Element label : control.ownerDocument().getElementsByTag("label")) {
+                if (label.attr("for").equals(control.id()))
+                    return label;
+            }
+        }
+        return control.closest("label");
+    }
+
+    /**
+     * The control a label is for: the element with the id given by its for attribute,
+     * or the first form control inside it
+     *
+     * @param label
+     * @return
+     */
+    public static Element controlOf(Element label) {
+        if (label.hasAttr("for"))
+            return label.ownerDocument() == null ? null : label.ownerDocument().getElementById(label.attr("for"));
+        Elements controls = label.select("input, select, textarea, button");
+        return controls.isEmpty() ? null : controls.first();
+    }
+
+    public static String type(Element element) {
+        if (!element.tagName().equals("input"))
+            return null;
+        String type = element.attr("type").trim().toLowerCase(Locale.ROOT);
+        return type.isEmpty() ? "text" : type;
+    }
+
+    /**
+     * Inline style declarations with lower case property names
+     *
+     * @param element
+     * @return
+     */
+    public static Map<String, String> style(Element element) {
+        Map<String, String> style = new HashMap<>();
+        for (String declaration : element.attr("style").split(";")) {
+            int colon = declaration.indexOf(':');
+            if (colon > 0)
+                style.put(declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        declaration.substring(colon + 1).trim());
+        }
+        return style;
+    }
+
+    private static boolean isCheckable(Element element) {
+        String type = type(element);
+        return "checkbox".equals(type) || "radio".equals(type);
+    }
+
+    /**
+     * Selected options of a select, computed in one pass over the options
+     *
+     * @param select
+     * @return
+     */
+    public static Set<Element> selectedOptions(Element select) {
+        Set<Element> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        Element first = null;
+        Element last = null;
+        for (Element option : options(select)) {
+            if (option.hasAttr("selected")) {
+                selected.add(option);
+                last = option;
+            }
+            if (first == null && !option.hasAttr("disabled"))
+                first = option;
+        }
+        if (isMultiple(select))
+            return selected;
+        // a single select shows its first enabled option when none is selected; with several, the last one wins
+        selected.clear();
+        if (last != null || first != null)
+            selected.add(last != null ? last : first);
+        return selected;
+    }
+
+    private static boolean isOptionSelected(Element option) {
+        Element select = selectOf(option);
+        if (select == null || isMultiple(select))
+            return option.hasAttr("selected");
+        return selectedOptions(select).contains(option);
+    }
+
+    private static Element selectOf(Element option) {
+        return option.closest("select");
+    }
+
+    private static boolean isHiddenItself(Element element) {
+        String tag = element.tagName();
+        if (HIDDEN_TAGS.contains(tag) || element.hasAttr("hidden") || "hidden".equals(type(element)))
+            return true;
+        if (!element.hasAttr("style"))
+            return false;
+        Map<String, String> style = style(element);
+        return "none".equalsIgnoreCase(style.get("display")) || "hidden".equalsIgnoreCase(style.get("visibility"));
+    }
+
+    private static void appendVisible(Node node, StringBuilder text) {
+        if (node instanceof TextNode) {
+            text.append(((TextNode) node).getWholeText());
+            return;
+        }
+        if (!(node instanceof Element))
+            return;
+        Element element = (Element) node;
+        if (isHiddenItself(element))
+            return;
+        String tag = element.tagName();
+        if (tag.equals("br")) {
+            text.append('\n');
+            return;
+        }
+        boolean block = BLOCK_TAGS.contains(tag);
+        if (block)
+            text.append('\n');
+        for (Node child : element.childNodes())
+            appendVisible(child, text);
+        if (block)
+            text.append('\n');
+        else if (tag.equals("td") || tag.equals("th"))
+            text.append(' ');
+    }
+}
@@ -0,0 +1,812 @@
+package fw.core;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
+import org.openqa.selenium.Alert;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoAlertPresentException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchFrameException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.WrapsElement;
+import org.openqa.selenium.logging.Logs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process WebDriver over a parsed HTML document, selected with
+ * selenium.browser.name=fake. Component logic can be tested in milliseconds without a
+ * browser or grid:
+ *
+ * <pre>
+ * FakeDriver driver = new FakeDriver();
+ * driver.loadHtml("&lt;select id='s'&gt;&lt;option&gt;A&lt;/option&gt;&lt;/select&gt;");
+ * new DropDown(driver.findElement(By.id("s"))).selectByVisibleText("A", true);
+ * long roundTrips = driver.getCommandCount();
+ * </pre>
+ * <p>
+ * Pages come from {@link #loadHtml(String)} or from http, file and data URLs, e.g.
+ * a {@link FixtureServer}; relative URLs resolve against the current page or the
+ * base URL. Every WebDriver and WebElement call counts as one command, see
+ * {@link #getCommandCount()}.
+ * <p>
+ * Page JavaScript does not run. executeScript answers only scripts with a Java
+ * handler: the scripts of Waiter, a few common one-liners (document.readyState,
+ * arguments[0].click()...), those of every {@link ScriptLibrary} such as the
+ * fw.components scripts, and whatever is added with
+ * {@link #registerScript(String, ScriptHandler)}. Implicit waits are accepted but never
+ * needed, as the page only changes through the driver. There is a single window, no
+ * frames, alerts or layout. Elements are found with the standard By locators;
+ * composite ones such as ByChained are not supported.
+ */
+public class FakeDriver implements WebDriver, JavascriptExecutor, HasCapabilities {
+    private static final Map<String, ScriptHandler> SCRIPTS = new ConcurrentHashMap<>();
+    private static final Map<String, String> LOCATORS = new HashMap<>();
+
+    static {
+        LOCATORS.put("By.id", "id");
+        LOCATORS.put("By.name", "name");
+        LOCATORS.put("By.className", "class name");
+        LOCATORS.put("By.tagName", "tag name");
+        LOCATORS.put("By.cssSelector", "css selector");
+        LOCATORS.put("By.xpath", "xpath");
+        LOCATORS.put("By.linkText", "link text");
+        LOCATORS.put("By.partialLinkText", "partial link text");
+    }
+
+    static {
+        registerScript(Waiter.READY_SCRIPT, (driver, args) -> true);
+        registerScript("return document.readyState", (driver, args) -> "complete");
+        registerScript("return document.title", (driver, args) -> driver.document.title());
+        registerScript("arguments[0].click()", (driver, args) -> {
+            FakeDom.click((Element) args.get(0));
+            return null;
+        });
+        registerScript("arguments[0].scrollIntoView()", (driver, args) -> null);
+        registerScript("arguments[0].scrollIntoView(true)", (driver, args) -> null);
+        for (ScriptLibrary library : ServiceLoader.load(ScriptLibrary.class))
+            library.register();
+    }
+
+    private final String handle = UUID.randomUUID().toString();
+    private final String baseUrl;
+    private final AtomicLong commands = new AtomicLong();
+    private final Map<Element, FakeElement> elements = new IdentityHashMap<>();
+    private final List<String> history = new ArrayList<>();
+    private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+    private int historyIndex = -1;
+    private Document document;
+    private String currentUrl;
+    private Dimension windowSize = new Dimension(1366, 768);
+    private Point windowPosition = new Point(0, 0);
+    private long pageLoadTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private volatile long implicitWaitMillis;
+    private volatile boolean quit;
+
+    public FakeDriver() {
+        this(null);
+    }
+
+    /**
+     * @param baseUrl relative URLs passed to {@link #get(String)} resolve against it
+     *                while no page is loaded; may be null
+     */
+    public FakeDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+        show("about:blank", Jsoup.parse(""));
+    }
+
+    /**
+     * Adds a Java implementation of a script for all fake drivers. Handlers get the
+     * arguments with elements as DOM nodes and may return DOM nodes, which reach the
+     * caller as WebElements. Scripts match exactly, or after trimming whitespace and a
+     * trailing semicolon.
+     *
+     * @param script
+     * @param handler
+     */
+    public static void registerScript(String script, ScriptHandler handler) {
+        SCRIPTS.put(script, handler);
+        SCRIPTS.put(normalizeScript(script), handler);
+    }
+
+    /**
+     * Replaces the page with the given markup without counting a command
+     *
+     * @param html
+     */
+    public void loadHtml(String html) {
+        checkSession();
+        navigated("about:blank", Jsoup.parse(html, baseUrl == null ? "" : baseUrl));
+    }
+
+    /**
+     * The parsed page; changes to it are visible to the driver immediately
+     *
+     * @return
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * WebDriver and WebElement calls since creation or the last reset
+     *
+     * @return
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Implicit wait last set; the fake driver never waits for elements
+     *
+     * @return
+     */
+    public long getImplicitWaitMillis() {
+        return implicitWaitMillis;
+    }
+
+    public void resetCommandCount() {
+        commands.set(0);
+    }
+
+    @Override
+    public void get(String url) {
+        command();
+        load(url);
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        command();
+        return currentUrl;
+    }
+
+    @Override
+    public String getTitle() {
+        command();
+        return document.title();
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return findAll(null, by);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        return findOne(null, by);
+    }
+
+    @Override
+    public String getPageSource() {
+        command();
+        return document.outerHtml();
+    }
+
+    /**
+     * Closes the only window, which ends the session
+     */
+    @Override
+    public void close() {
+        quit();
+    }
+
+    @Override
+    public void quit() {
+        if (quit)
+            return;
+        commands.incrementAndGet();
+        quit = true;
+        elements.clear();
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        command();
+        return Collections.singleton(handle);
+    }
+
+    @Override
+    public String getWindowHandle() {
+        command();
+        return handle;
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        return new FakeTargetLocator();
+    }
+
+    @Override
+    public Navigation navigate() {
+        return new FakeNavigation();
+    }
+
+    @Override
+    public Options manage() {
+        return new FakeOptions();
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+        return new ImmutableCapabilities("browserName", "fake");
+    }
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+        command();
+        ScriptHandler handler = SCRIPTS.get(script);
+        if (handler == null)
+            handler = SCRIPTS.get(normalizeScript(script));
+        if (handler == null)
+            throw new UnsupportedCommandException("The fake driver has no handler for script '"
+                    + (script.length() > 80 ? script.substring(0, 80) + "..." : script)
+                    + "'. Add one with FakeDriver.registerScript().");
+
+        List<Object> arguments = new ArrayList<>();
+        if (args != null) {
+            for (Object arg : args)
+                arguments.add(toDom(arg));
+        }
+        return toResult(handler.execute(this, arguments));
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+        command();
+        throw new UnsupportedCommandException("The fake driver does not run asynchronous scripts.");
+    }
+
+    @Override
+    public String toString() {
+        return "FakeDriver (" + currentUrl + ")";
+    }
+
+    WebElement findOne(FakeElement context, By by) {
+        String[] locator = locator(by);
+        if (locator != null)
+            return findOne(context, locator[0], locator[1]);
+        try {
+            return by.findElement(context == null ? this : context);
+        } catch (ClassCastException e) {
+            throw unsupported(by);
+        }
+    }
+
+    List<WebElement> findAll(FakeElement context, By by) {
+        String[] locator = locator(by);
+        if (locator != null)
+            return findAll(context, locator[0], locator[1]);
+        try {
+            return by.findElements(context == null ? this : context);
+        } catch (ClassCastException e) {
+            throw unsupported(by);
+        }
+    }
+
+    WebElement findOne(FakeElement context, String how, String using) {
+        List<Element> found = search(context, how, using);
+        if (found.isEmpty())
+            throw new NoSuchElementException("Unable to locate element by " + how + " '" + using + "'.");
+        return element(found.get(0));
+    }
+
+    List<WebElement> findAll(FakeElement context, String how, String using) {
+        List<WebElement> result = new ArrayList<>();
+        for (Element node : search(context, how, using))
+            result.add(element(node));
+        return result;
+    }
+
+    void command() {
+        checkSession();
+        commands.incrementAndGet();
+    }
+
+    void checkAttached(FakeElement element) {
+        if (element.getWrappedDriver() != this || element.getNode().ownerDocument() != document)
+            throw new StaleElementReferenceException("Element " + element + " is no longer attached to the page.");
+    }
+
+    /**
+     * Loads the URL, resolved against the current page, as a new history entry
+     */
+    void load(String url) {
+        String resolved = resolve(url);
+        navigated(resolved, fetch(resolved));
+    }
+
+    /**
+     * Strategy and value of one of the standard locators, taken from its description
+     * (e.g. "By.cssSelector: .item"), or null for other kinds of By
+     */
+    private static String[] locator(By by) {
+        String description = by.toString();
+        int colon = description.indexOf(": ");
+        if (colon < 0)
+            return null;
+        String how = LOCATORS.get(description.substring(0, colon));
+        return how == null ? null : new String[] { how, description.substring(colon + 2) };
+    }
+
+    /**
+     * Locators such as ByChained pass the standard ones a search context directly, which
+     * in this Selenium version only works with the deprecated FindsBy interfaces
+     */
+    private static InvalidSelectorException unsupported(By by) {
+        return new InvalidSelectorException("The fake driver does not support locator '" + by
+                + "'; use a standard locator such as By.cssSelector or By.xpath.");
+    }
+
+    private FakeElement element(Element node) {
+        return elements.computeIfAbsent(node, key -> new FakeElement(this, key));
+    }
+
+    private List<Element> search(FakeElement context, String how, String using) {
+        command();
+        Element root = document;
+        if (context != null) {
+            checkAttached(context);
+            root = context.getNode();
+        }
+
+        Elements found;
+        try {
+            switch (how) {
+                case "id":
+                    found = root.getElementsByAttributeValue("id", using);
+                    break;
+                case "name":
+                    found = root.getElementsByAttributeValue("name", using);
+                    break;
+                case "class name":
+                    found = root.getElementsByClass(using);
+                    break;
+                case "tag name":
+                    found = root.getElementsByTag(using);
+                    break;
+                case "css selector":
+                    found = root.select(using);
+                    break;
+                case "xpath":
+                    found = root.selectXpath(using);
+                    break;
+                case "link text":
+                case "partial link text":
+                    found = new Elements();
+                    for (Element link : root.getElementsByTag("a")) {
+                        String text = FakeDom.visibleText(link).trim();
+                        if (how.equals("link text") ? text.equals(using.trim()) : text.contains(using))
+                            found.add(link);
+                    }
+                    break;
+                default:
+                    throw new InvalidSelectorException("Unknown locator strategy '" + how + "'.");
+            }
+        } catch (Selector.SelectorParseException | IllegalArgumentException e) {
+            throw new InvalidSelectorException("Invalid " + how + " '" + using + "': " + e.getMessage());
+        }
+        // lookups inside an element only search its descendants
+        List<Element> result = new ArrayList<>(found);
+        result.remove(root);
+        return result;
+    }
+
+    private void navigated(String url, Document page) {
+        while (history.size() > historyIndex + 1)
+            history.remove(history.size() - 1);
+        history.add(url);
+        historyIndex++;
+        show(url, page);
+    }
+
+    private void show(String url, Document page) {
+        this.currentUrl = url;
+        this.document = page;
+        this.elements.clear();
+    }
+
+    private String resolve(String url) {
+        if (url == null || url.trim().isEmpty())
+            throw new WebDriverException("URL must not be empty.");
+        url = url.trim();
+        if (url.startsWith("about:") || url.startsWith("data:"))
+            return url;
+        String base = currentUrl != null && !currentUrl.startsWith("about:") && !currentUrl.startsWith("data:")
+                ? currentUrl : baseUrl;
+        try {
+            return base == null ? new URL(url).toString() : new URL(new URL(base), url).toString();
+        } catch (MalformedURLException e) {
+            throw new WebDriverException("Invalid URL '" + url + "'.", e);
+        }
+    }
+
+    private Document fetch(String url) {
+        if (url.startsWith("about:"))
+            return Jsoup.parse("", "");
+        try {
+            if (url.startsWith("data:")) {
+                int comma = url.indexOf(',');
+                if (comma < 0)
+                    throw new WebDriverException("Invalid data URL '" + url + "'.");
+                String content = url.substring(comma + 1);
+                byte[] bytes = url.substring(0, comma).endsWith(";base64")
+                        ? Base64.getDecoder().decode(content)
+                        : URLDecoder.decode(content.replace("+", "%2B"), "UTF-8").getBytes(StandardCharsets.UTF_8);
+                return Jsoup.parse(new ByteArrayInputStream(bytes), "UTF-8", "");
+            }
+
+            URLConnection connection = new URL(url).openConnection();
+            connection.setConnectTimeout((int) Math.min(Integer.MAX_VALUE, pageLoadTimeoutMillis));
+            connection.setReadTimeout((int) Math.min(Integer.MAX_VALUE, pageLoadTimeoutMillis));
+            InputStream in;
+            if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() >= 400)
+                // browsers show error pages too
+                in = ((HttpURLConnection) connection).getErrorStream();
+            else
+                in = connection.getInputStream();
+            if (in == null)
+                return Jsoup.parse("", url);
+            try (InputStream body = in) {
+                return Jsoup.parse(body, charsetOf(connection.getContentType()), url);
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new WebDriverException("Invalid data URL '" + url + "'.", e);
+        } catch (IOException e) {
+            throw new WebDriverException("Unable to load '" + url + "'.", e);
+        }
+    }
+
+    private static String charsetOf(String contentType) {
+        if (contentType == null)
+            return null;
+        for (String part : contentType.split(";")) {
+            part = part.trim();
+            if (part.toLowerCase().startsWith("charset="))
+                return part.substring("charset=".length()).replace("\"", "").trim();
+        }
+        return null;
+    }
+
+    private void checkSession() {
+        if (quit)
+            throw new NoSuchSessionException("The fake driver session was quit.");
+    }
+
+    /**
+     * Elements become DOM nodes for the script handlers; collections and maps are
+     * converted element by element
+     */
+    private Object toDom(Object value) {
+        if (value instanceof FakeElement) {
+            checkAttached((FakeElement) value);
+            return ((FakeElement) value).getNode();
+        }
+        if (value instanceof WrapsElement)
+            return toDom(((WrapsElement) value).getWrappedElement());
+        if (value instanceof WebElement)
+            throw new WebDriverException("Element " + value + " does not belong to the fake driver.");
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (Collection<?>) value)
+                list.add(toDom(item));
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                map.put(entry.getKey(), toDom(entry.getValue()));
+            return map;
+        }
+        return value;
+    }
+
+    /**
+     * Converts script results the way the wire protocol does: whole numbers become
+     * Long, other numbers Double and DOM nodes WebElements
+     */
+    private Object toResult(Object value) {
+        if (value instanceof Element)
+            return element((Element) value);
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+        if (value instanceof Float)
+            return ((Number) value).doubleValue();
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (Collection<?>) value)
+                list.add(toResult(item));
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                map.put(String.valueOf(entry.getKey()), toResult(entry.getValue()));
+            return map;
+        }
+        return value;
+    }
+
+    private static String normalizeScript(String script) {
+        String normalized = script.trim();
+        while (normalized.endsWith(";"))
+            normalized = normalized.substring(0, normalized.length() - 1).trim();
+        return normalized;
+    }
+
+    /**
+     * Script handlers of another package, e.g. for its components. Implementations are
+     * listed in META-INF/services and register their handlers when the FakeDriver
+     * class is initialized.
+     */
+    public interface ScriptLibrary {
+        void register();
+    }
+
+    /**
+     * Java implementation of a script run by {@link FakeDriver#executeScript(String, Object...)}
+     */
+    public interface ScriptHandler {
+        /**
+         * @param driver the driver running the script; {@link #getDocument()} is the page
+         * @param args   script arguments, elements given as DOM nodes
+         * @return
+         */
+        Object execute(FakeDriver driver, List<Object> args);
+    }
+
+    private final class FakeNavigation implements Navigation {
+        @Override
+        public void back() {
+            command();
+            if (historyIndex > 0) {
+                historyIndex--;
+                show(history.get(historyIndex), fetch(history.get(historyIndex)));
+            }
+        }
+
+        @Override
+        public void forward() {
+            command();
+            if (historyIndex < history.size() - 1) {
+                historyIndex++;
+                show(history.get(historyIndex), fetch(history.get(historyIndex)));
+            }
+        }
+
+        @Override
+        public void to(String url) {
+            get(url);
+        }
+
+        @Override
+        public void to(URL url) {
+            get(url.toString());
+        }
+
+        /**
+         * Loads the URL again; pages given with loadHtml stay as they are
+         */
+        @Override
+        public void refresh() {
+            command();
+            if (!currentUrl.startsWith("about:"))
+                show(currentUrl, fetch(currentUrl));
+        }
+    }
+
+    private final class FakeTargetLocator implements TargetLocator {
+        @Override
+        public WebDriver frame(int index) {
+            command();
+            throw new NoSuchFrameException("The fake driver does not support frames.");
+        }
+
+        @Override
+        public WebDriver frame(String nameOrId) {
+            command();
+            throw new NoSuchFrameException("The fake driver does not support frames.");
+        }
+
+        @Override
+        public WebDriver frame(WebElement frameElement) {
+            command();
+            throw new NoSuchFrameException("The fake driver does not support frames.");
+        }
+
+        @Override
+        public WebDriver parentFrame() {
+            command();
+            return FakeDriver.this;
+        }
+
+        @Override
+        public WebDriver window(String nameOrHandle) {
+            command();
+            if (!handle.equals(nameOrHandle))
+                throw new NoSuchWindowException("No window '" + nameOrHandle + "'.");
+            return FakeDriver.this;
+        }
+
+        @Override
+        public WebDriver defaultContent() {
+            command();
+            return FakeDriver.this;
+        }
+
+        @Override
+        public WebElement activeElement() {
+            command();
+            Elements focused = document.select("[autofocus]");
+            return element(!focused.isEmpty() ? focused.first() : document.body() != null ? document.body() : document);
+        }
+
+        @Override
+        public Alert alert() {
+            command();
+            throw new NoAlertPresentException("The fake driver has no alerts.");
+        }
+    }
+
+    private final class FakeOptions implements Options {
+        @Override
+        public void addCookie(Cookie cookie) {
+            command();
+            cookies.put(cookie.getName(), cookie);
+        }
+
+        @Override
+        public void deleteCookieNamed(String name) {
+            command();
+            cookies.remove(name);
+        }
+
+        @Override
+        public void deleteCookie(Cookie cookie) {
+            deleteCookieNamed(cookie.getName());
+        }
+
+        @Override
+        public void deleteAllCookies() {
+            command();
+            cookies.clear();
+        }
+
+        @Override
+        public Set<Cookie> getCookies() {
+            command();
+            return new LinkedHashSet<>(cookies.values());
+        }
+
+        @Override
+        public Cookie getCookieNamed(String name) {
+            command();
+            return cookies.get(name);
+        }
+
+        @Override
+        public Timeouts timeouts() {
+            return new FakeTimeouts();
+        }
+
+        @Override
+        public ImeHandler ime() {
+            throw new UnsupportedCommandException("The fake driver has no input method editor.");
+        }
+
+        @Override
+        public Window window() {
+            return new FakeWindow();
+        }
+
+        @Override
+        public Logs logs() {
+            throw new UnsupportedCommandException("The fake driver has no logs.");
+        }
+    }
+
+    private final class FakeTimeouts implements Timeouts {
+        @Override
+        public Timeouts implicitlyWait(long time, TimeUnit unit) {
+            command();
+            implicitWaitMillis = unit.toMillis(time);
+            return this;
+        }
+
+        @Override
+        public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+            command();
+            return this;
+        }
+
+        /**
+         * Used as connect and read timeout when loading pages
+         */
+        @Override
+        public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+            command();
+            pageLoadTimeoutMillis = unit.toMillis(time);
+            return this;
+        }
+    }
+
+    private final class FakeWindow implements Window {
+        @Override
+        public void setSize(Dimension targetSize) {
+            command();
+            windowSize = targetSize;
+        }
+
+        @Override
+        public void setPosition(Point targetPosition) {
+            command();
+            windowPosition = targetPosition;
+        }
+
+        @Override
+        public Dimension getSize() {
+            command();
+            return windowSize;
+        }
+
+        @Override
+        public Point getPosition() {
+            command();
+            return windowPosition;
+        }
+
+        @Override
+        public void maximize() {
+            command();
+        }
+
+        @Override
+        public void fullscreen() {
+            command();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package fw.core;
+
+import org.jsoup.nodes.Element;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.InvalidElementStateException;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Element of a {@link FakeDriver} page. Every method counts as one command, like a
+ * round-trip to a browser; lookups inside the element only search its descendants.
+ * Using an element after its page was replaced throws StaleElementReferenceException.
+ */
+public class FakeElement implements WebElement, WrapsDriver {
+    private static final Set<String> BOOLEAN_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "async", "autofocus", "autoplay", "checked", "controls", "default", "defer", "disabled",
+            "formnovalidate", "hidden", "ismap", "loop", "multiple", "muted", "nomodule", "novalidate",
+            "open", "readonly", "required", "reversed", "selected"));
+
+    private final FakeDriver driver;
+    private final Element node;
+
+    FakeElement(FakeDriver driver, Element node) {
+        this.driver = driver;
+        this.node = node;
+    }
+
+    /**
+     * The parsed DOM node behind this element
+     *
+     * @return
+     */
+    public Element getNode() {
+        return node;
+    }
+
+    @Override
+    public WebDriver getWrappedDriver() {
+        return driver;
+    }
+
+    @Override
+    public void click() {
+        command();
+        if (!FakeDom.isDisplayed(node))
+            throw new ElementNotInteractableException("Element " + this + " is not displayed.");
+        FakeDom.click(node);
+        if (node.tagName().equals("a") && FakeDom.isEnabled(node)) {
+            String href = node.attr("href").trim();
+            if (!href.isEmpty() && !href.startsWith("#") && !href.toLowerCase(Locale.ROOT).startsWith("javascript:"))
+                driver.load(href);
+        }
+    }
+
+    @Override
+    public void submit() {
+        command();
+        if (node.closest("form") == null && !node.tagName().equals("form"))
+            throw new UnsupportedCommandException("Element " + this + " is not in a form.");
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        command();
+        checkEditable();
+        StringBuilder value = new StringBuilder(FakeDom.value(node));
+        for (CharSequence keys : keysToSend) {
+            for (int i = 0; i < keys.length(); i++) {
+                char c = keys.charAt(i);
+                if (c == Keys.BACK_SPACE.charAt(0)) {
+                    if (value.length() > 0)
+                        value.setLength(value.length() - 1);
+                } else if (c < '\uE000' || c > '\uF8FF') {
+                    // other special keys (enter, tab, arrows...) do not change the value
+                    value.append(c);
+                }
+            }
+        }
+        FakeDom.setValue(node, value.toString());
+    }
+
+    @Override
+    public void clear() {
+        command();
+        checkEditable();
+        FakeDom.setValue(node, "");
+    }
+
+    @Override
+    public String getTagName() {
+        command();
+        return node.tagName();
+    }
+
+    /**
+     * Attribute or property as Selenium reports it: "true" or null for boolean
+     * attributes, the current value for "value", the text for "textContent" and
+     * "innerText", markup for "innerHTML" and "outerHTML"
+     */
+    @Override
+    public String getAttribute(String name) {
+        command();
+        String key = name.toLowerCase(Locale.ROOT);
+        switch (key) {
+            case "value":
+                return FakeDom.value(node);
+            case "checked":
+            case "selected":
+                return FakeDom.isSelected(node) ? "true" : null;
+            case "class":
+            case "classname":
+                return node.hasAttr("class") ? node.attr("class") : null;
+            case "textcontent":
+                return node.wholeText();
+            case "innertext":
+                return FakeDom.visibleText(node);
+            case "innerhtml":
+                return node.html();
+            case "outerhtml":
+                return node.outerHtml();
+            case "index":
+                if (node.tagName().equals("option") && node.closest("select") != null)
+                    return String.valueOf(FakeDom.options(node.closest("select")).indexOf(node));
+                break;
+            case "href":
+            case "src":
+                if (node.hasAttr(key))
+                    return node.absUrl(key).isEmpty() ? node.attr(key) : node.absUrl(key);
+                return null;
+            default:
+                break;
+        }
+        if (BOOLEAN_ATTRIBUTES.contains(key))
+            return node.hasAttr(key) ? "true" : null;
+        return node.hasAttr(name) ? node.attr(name) : null;
+    }
+
+    @Override
+    public boolean isSelected() {
+        command();
+        return FakeDom.isSelected(node);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        command();
+        return FakeDom.isEnabled(node);
+    }
+
+    @Override
+    public String getText() {
+        command();
+        return FakeDom.visibleText(node);
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        command();
+        return FakeDom.isDisplayed(node);
+    }
+
+    /**
+     * Inline style value of the property, or an empty string
+     */
+    @Override
+    public String getCssValue(String propertyName) {
+        command();
+        String value = FakeDom.style(node).get(propertyName.toLowerCase(Locale.ROOT));
+        return value == null ? "" : value;
+    }
+
+    /**
+     * The fake driver does no layout; location and size are always zero
+     */
+    @Override
+    public Point getLocation() {
+        command();
+        return new Point(0, 0);
+    }
+
+    @Override
+    public Dimension getSize() {
+        command();
+        return new Dimension(0, 0);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        command();
+        return new Rectangle(0, 0, 0, 0);
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        throw new UnsupportedCommandException("The fake driver cannot take screenshots.");
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return driver.findAll(this, by);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        return driver.findOne(this, by);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("<").append(node.tagName());
+        if (!node.id().isEmpty())
+            description.append(" id=\"").append(node.id()).append('"');
+        if (node.hasAttr("name"))
+            description.append(" name=\"").append(node.attr("name")).append('"');
+        return description.append('>').toString();
+    }
+
+    private void command() {
+        driver.command();
+        driver.checkAttached(this);
+    }
+
+    private void checkEditable() {
+        String tag = node.tagName();
+        String type = FakeDom.type(node);
+        if (!tag.equals("textarea") && (type == null || type.equals("checkbox") || type.equals("radio")
+                || type.equals("submit") || type.equals("button") || type.equals("reset")))
+            throw new InvalidElementStateException("Element " + this + " is not editable.");
+        if (!FakeDom.isDisplayed(node) || !FakeDom.isEnabled(node))
+            throw new ElementNotInteractableException("Element " + this + " is hidden or disabled.");
+        if (node.hasAttr("readonly"))
+            throw new InvalidElementStateException("Element " + this + " is read-only.");
+    }
+}